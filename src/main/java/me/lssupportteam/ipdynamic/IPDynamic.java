@@ -8,13 +8,22 @@ import me.lssupportteam.ipdynamic.managers.ConfigMigrator;
 import me.lssupportteam.ipdynamic.nms.NMSVersion;
 import me.lssupportteam.ipdynamic.services.GeoIPService;
 import me.lssupportteam.ipdynamic.services.WebhookService;
+import me.lssupportteam.ipdynamic.storage.JsonStorageBackend;
+import me.lssupportteam.ipdynamic.storage.PersistenceWriter;
+import me.lssupportteam.ipdynamic.storage.SqliteStorageBackend;
+import me.lssupportteam.ipdynamic.storage.StorageBackend;
 import me.lssupportteam.ipdynamic.utils.ColorUtils;
+import me.lssupportteam.ipdynamic.utils.JsonUtils;
 import me.lssupportteam.ipdynamic.utils.PaginationManager;
+import me.lssupportteam.ipdynamic.utils.StartupStages;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -28,6 +37,8 @@ public final class IPDynamic extends JavaPlugin {
 
 
     private ConfigManager configManager;
+    private StorageBackend storageBackend;
+    private PersistenceWriter persistenceWriter;
     private DataManager dataManager;
     private BanManager banManager;
     private WhitelistManager whitelistManager;
@@ -40,12 +51,13 @@ public final class IPDynamic extends JavaPlugin {
 
     private GeoIPService geoIPService;
     private WebhookService webhookService;
-    private DiscordManager discordManager;
+    private volatile DiscordManager discordManager; // Lo asigna su etapa de arranque
 
 
     private BukkitTask autosaveTask;
     private BukkitTask banProcessTask;
     private BukkitTask unbanProcessTask;
+    private BukkitTask retentionTask;
 
     @Override
     public void onEnable() {
@@ -68,15 +80,10 @@ public final class IPDynamic extends JavaPlugin {
 
         printEnableMessage();
 
+        StartupStages startup = new StartupStages(4, getLogger());
+        initializeManagers(startup);
 
-        initializeManagers();
-
-
-
-
-        loadAllData();
-
-
+        // Baneos y whitelist listos, los logins se comprueban desde aquí
         registerListeners();
 
 
@@ -85,6 +92,11 @@ public final class IPDynamic extends JavaPlugin {
 
         setupTasks();
 
+        // Jugadores, índices y grupos de alts acaban en segundo plano, los logins los esperan
+        startup.startInBackground("jugadores", this::loadPlayerData);
+        startup.startInBackground("discord", this::initializeDiscord);
+        startup.finish();
+
         getLogger().info(ColorUtils.translateColor(langManager.getMessage("system.plugin-enabled")));
     }
 
@@ -102,9 +114,9 @@ public final class IPDynamic extends JavaPlugin {
         if (unbanProcessTask != null && !unbanProcessTask.isCancelled()) {
             unbanProcessTask.cancel();
         }
-
-
-        saveAllData();
+        if (retentionTask != null && !retentionTask.isCancelled()) {
+            retentionTask.cancel();
+        }
 
 
         if (discordManager != null) {
@@ -122,66 +134,169 @@ public final class IPDynamic extends JavaPlugin {
             }
         }
 
+        // Tras acabar las tareas async y los cambios que encolaron, así el guardado los incluye
+        if (persistenceWriter != null) {
+            if (dataManager != null) {
+                dataManager.flushPendingChanges(TimeUnit.SECONDS.toMillis(5));
+            }
+            saveAllData();
+            persistenceWriter.close(TimeUnit.SECONDS.toMillis(configManager.getShutdownSaveTimeoutSeconds()));
+        }
+
+        if (dataManager != null) {
+            dataManager.shutdown();
+        }
+        if (storageBackend != null) {
+            storageBackend.close();
+        }
+
         getLogger().info(langManager.getMessage("system.plugin-disabled"));
         instance = null;
     }
 
-    private void initializeManagers() {
+    /**
+     * Ejecuta en etapas paralelas lo que necesitan los listeners, vuelve con baneos y whitelist cargados
+     */
+    private void initializeManagers(StartupStages startup) {
 
-        if (!getDataFolder().exists()) {
-            getDataFolder().mkdirs();
-        }
+        startup.run("configuración", () -> {
+            if (!getDataFolder().exists()) {
+                getDataFolder().mkdirs();
+            }
 
-        // Initialize migrator first to update configurations
-        configMigrator = new ConfigMigrator(this);
-        configMigrator.migrateAllConfigs();
+            // Initialize migrator first to update configurations
+            configMigrator = new ConfigMigrator(this);
+            configMigrator.migrateAllConfigs();
 
-        configManager = new ConfigManager(this);
-        configManager.loadConfig();
+            configManager = new ConfigManager(this);
+            configManager.loadConfig();
+            JsonUtils.setCompactOutput(configManager.isCompactJson());
+            JsonUtils.configureBackups(configManager.isBackupsEnabled(), configManager.getBackupKeepHourly(),
+                configManager.getBackupKeepDaily(), configManager.isBackupCompression(), getLogger());
+        });
 
-        webhookConfigManager = new WebhookConfigManager(this);
-        webhookConfigManager.loadConfig();
+        startup.start("idioma", () -> {
+            langManager = new LangManager(this);
+            langManager.loadLanguageFile(configManager.getLangFileName());
+        }, "configuración");
 
-        addonsManager = new AddonsManager(this);
-        addonsManager.initialize();
+        startup.start("webhooks", () -> {
+            webhookConfigManager = new WebhookConfigManager(this);
+            webhookConfigManager.loadConfig();
+        }, "configuración");
 
-        langManager = new LangManager(this);
-        langManager.loadLanguageFile(configManager.getLangFileName());
+        startup.start("addons", () -> {
+            addonsManager = new AddonsManager(this);
+            addonsManager.initialize();
+        }, "configuración");
+
+        startup.start("almacenamiento", () -> {
+            persistenceWriter = new PersistenceWriter(configManager.getSaveCoalesceMs(), getLogger());
+            persistenceWriter.start();
+            storageBackend = createStorageBackend();
+        }, "configuración");
+
+        startup.start("baneos", () -> {
+            banManager = new BanManager(this);
+            banManager.loadBans();
+        }, "almacenamiento", "idioma");
+
+        startup.start("whitelist", () -> {
+            whitelistManager = new WhitelistManager(this);
+            whitelistManager.loadWhitelist();
+        }, "almacenamiento", "idioma");
 
+        startup.await("idioma", "webhooks", "addons", "almacenamiento", "baneos", "whitelist");
+
+        // Solo abre sus archivos, los jugadores se cargan en una etapa en segundo plano
         dataManager = new DataManager(this);
-        banManager = new BanManager(this);
-        whitelistManager = new WhitelistManager(this);
         paginationManager = new PaginationManager();
 
 
         webhookService = new WebhookService(this);
 
+        String geoIpProvider = configManager.getGeoIpProvider().toLowerCase();
+        if ("ip-api.com".equals(geoIpProvider)) {
+            geoIPService = new GeoIPService(this);
+        }
+    }
+
+    private void loadPlayerData() {
+        try {
+            dataManager.loadAllData();
+            getLogger().info(langManager.getMessage("system.data-loaded"));
+        } catch (RuntimeException e) {
+            // Los guardados siguen desactivados, escribir una carga parcial perdería el resto
+            getLogger().log(Level.SEVERE, "No se pudieron cargar los datos de jugadores, desactivando el plugin", e);
+            Bukkit.getScheduler().runTask(this, () -> getServer().getPluginManager().disablePlugin(this));
+            throw e;
+        }
+    }
+
+    private void initializeDiscord() {
         // Initialize Discord Manager only if properly configured
         if (DiscordManager.shouldInitialize(this)) {
             try {
-                discordManager = new DiscordManager(this);
-                discordManager.initialize();
+                DiscordManager manager = new DiscordManager(this);
+                manager.initialize();
+                discordManager = manager;
             } catch (Exception e) {
                 getLogger().warning("⚠️ Discord Manager no se pudo inicializar: " + e.getMessage());
                 discordManager = null;
+                return;
             }
         } else {
             getLogger().info("⚠️ Discord Bot no configurado - omitiendo inicialización");
             discordManager = null;
+            return;
         }
 
-        String geoIpProvider = configManager.getGeoIpProvider().toLowerCase();
-        if ("ip-api.com".equals(geoIpProvider)) {
-            geoIPService = new GeoIPService(this);
+        // Las estadísticas leen jugadores, empiezan cuando están cargados
+        dataManager.whenLoaded().thenRun(() -> {
+            DiscordManager manager = discordManager;
+            if (manager != null) {
+                manager.scheduleStatsUpdate();
+            }
+        });
+    }
+
+    private StorageBackend createStorageBackend() {
+        File dataDir = new File(getPluginDataFolder(), "data");
+        JsonStorageBackend json = new JsonStorageBackend(dataDir,
+            "binary".equalsIgnoreCase(configManager.getPlayerFormat()), persistenceWriter, getLogger());
+
+        if ("sqlite".equalsIgnoreCase(configManager.getStorageType())) {
+            SqliteStorageBackend sqlite = new SqliteStorageBackend(new File(dataDir, "ipdynamic.db"),
+                configManager.getConnectionHistorySize(), JsonUtils.getGson(), persistenceWriter, getLogger());
+            try {
+                sqlite.open();
+                if (sqlite.isEmpty() && !json.isEmpty()) {
+                    sqlite.importFrom(json);
+                }
+                return sqlite;
+            } catch (IOException e) {
+                getLogger().log(Level.SEVERE, "No se pudo abrir SQLite, usando almacenamiento JSON", e);
+            }
         }
+
+        json.open();
+        return json;
     }
 
-    private void loadAllData() {
-        dataManager.loadAllData();
-        banManager.loadBans();
-        whitelistManager.loadWhitelist();
+    /**
+     * Relee solo lo que cambió en disco, en el hilo de guardado, así que nunca espera a la primera carga
+     */
+    private void reloadChangedData() {
+        long start = System.nanoTime();
+
+        List<String> reread = new ArrayList<>(dataManager.reloadChangedData());
+        if (banManager.reloadBans()) reread.add("baneos");
+        if (whitelistManager.reloadWhitelist()) reread.add("whitelist");
 
-        getLogger().info(langManager.getMessage("system.data-loaded"));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        getLogger().info(reread.isEmpty()
+            ? "Datos sin cambios en disco, nada que releer (" + elapsed + " ms)"
+            : "Datos releídos desde disco en " + elapsed + " ms: " + String.join(", ", reread));
     }
 
     private void registerListeners() {
@@ -219,13 +334,17 @@ public final class IPDynamic extends JavaPlugin {
                 () -> banManager.processPendingUnbans(), processInterval, processInterval);
         }
 
-        if (discordManager != null) {
-            discordManager.scheduleStatsUpdate();
+        if (configManager.isRetentionEnabled()) {
+            // Un tramo corto por tick, una pasada solo empieza al cumplirse el intervalo
+            retentionTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this,
+                dataManager::runRetentionSlice, 20L, 1L);
         }
+
     }
 
     public void saveAllData() {
-        executorService.submit(() -> {
+        // Lo piden el autoguardado, un diario lleno y el apagado, las peticiones seguidas comparten guardado
+        persistenceWriter.submit("all-data", () -> {
             dataManager.saveAllData();
             banManager.saveBans();
             whitelistManager.saveWhitelist();
@@ -236,7 +355,11 @@ public final class IPDynamic extends JavaPlugin {
         });
     }
 
-    public void reloadPlugin() {
+    /**
+     * Recarga la configuración y relee lo cambiado en disco. false si los guardados pendientes no
+     * acabaron a tiempo, entonces se relee cuando acaben
+     */
+    public boolean reloadPlugin() {
 
         if (autosaveTask != null && !autosaveTask.isCancelled()) {
             autosaveTask.cancel();
@@ -247,15 +370,33 @@ public final class IPDynamic extends JavaPlugin {
         if (unbanProcessTask != null && !unbanProcessTask.isCancelled()) {
             unbanProcessTask.cancel();
         }
+        if (retentionTask != null && !retentionTask.isCancelled()) {
+            retentionTask.cancel();
+        }
 
 
         configManager.loadConfig();
+        JsonUtils.setCompactOutput(configManager.isCompactJson());
+        JsonUtils.configureBackups(configManager.isBackupsEnabled(), configManager.getBackupKeepHourly(),
+            configManager.getBackupKeepDaily(), configManager.isBackupCompression(), getLogger());
         webhookConfigManager.loadConfig();
         addonsManager.reloadAllAddons();
         langManager.loadLanguageFile(configManager.getLangFileName());
 
-
-        loadAllData();
+        // En el hilo de guardado tras lo pendiente, así ningún guardado cae en medio
+        boolean flushed = true;
+        if (dataManager.isLoaded()) {
+            long timeoutMs = TimeUnit.SECONDS.toMillis(configManager.getShutdownSaveTimeoutSeconds());
+            flushed = persistenceWriter.flush(timeoutMs);
+            persistenceWriter.execute(this::reloadChangedData);
+            flushed &= persistenceWriter.flush(timeoutMs);
+            if (!flushed) {
+                getLogger().warning("Los guardados pendientes no terminaron a tiempo, los datos se releerán cuando terminen");
+            }
+        } else {
+            // Aún se está leyendo todo, no hay nada que comparar
+            getLogger().info("Los datos aún se están cargando, no se releen desde disco");
+        }
 
         // Handle Discord Manager reload or initialization
         if (DiscordManager.shouldInitialize(this)) {
@@ -294,6 +435,7 @@ public final class IPDynamic extends JavaPlugin {
         setupTasks();
 
         getLogger().info(langManager.getMessage("system.plugin-reloaded"));
+        return flushed;
     }
 
 
@@ -337,6 +479,8 @@ public final class IPDynamic extends JavaPlugin {
     public NMSVersion getNMSVersion() { return nmsVersion; }
     public ExecutorService getExecutorService() { return executorService; }
     public ConfigManager getConfigManager() { return configManager; }
+    public StorageBackend getStorageBackend() { return storageBackend; }
+    public PersistenceWriter getPersistenceWriter() { return persistenceWriter; }
     public DataManager getDataManager() { return dataManager; }
     public BanManager getBanManager() { return banManager; }
     public WhitelistManager getWhitelistManager() { return whitelistManager; }
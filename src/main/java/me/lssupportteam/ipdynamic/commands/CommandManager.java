@@ -1,9 +1,13 @@
 package me.lssupportteam.ipdynamic.commands;
 
 import me.lssupportteam.ipdynamic.IPDynamic;
+import me.lssupportteam.ipdynamic.index.AltNetworkResolver;
+import me.lssupportteam.ipdynamic.index.SubnetSimilarityIndex;
 import me.lssupportteam.ipdynamic.managers.BanManager;
 import me.lssupportteam.ipdynamic.models.BanEntry;
 import me.lssupportteam.ipdynamic.models.PlayerData;
+import me.lssupportteam.ipdynamic.storage.ConnectionRingBuffer;
+import me.lssupportteam.ipdynamic.storage.SegmentedConnectionLog;
 import me.lssupportteam.ipdynamic.utils.ColorUtils;
 import me.lssupportteam.ipdynamic.utils.IPUtils;
 import me.lssupportteam.ipdynamic.utils.PaginationManager;
@@ -20,6 +24,7 @@ import org.bukkit.util.StringUtil;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -31,13 +36,20 @@ public class CommandManager implements CommandExecutor, TabCompleter {
 
 
     private static final String[] COMMANDS = {
-        "help", "reload", "ban", "unban", "alts", "info", "stats", "version", "discord", "migrate", "whitelist", "page"
+        "help", "reload", "ban", "unban", "alts", "info", "stats", "version", "discord", "migrate", "whitelist", "page", "history"
     };
 
     private static final String[] BAN_TYPES = {
         "op1", "op2", "single"
     };
 
+    private static final String[] ALTS_FLAGS = {
+        "--similar", "--range", "--depth"
+    };
+
+    private static final int MAX_NAME_COMPLETIONS = 50;
+    private static final int MAX_HISTORY_ENTRIES = 20;
+
     public CommandManager(IPDynamic plugin) {
         this.plugin = plugin;
         this.dateFormat = plugin.getConfigManager().getDateFormat();
@@ -95,6 +107,9 @@ public class CommandManager implements CommandExecutor, TabCompleter {
             case "page":
                 handlePageCommand(sender, args);
                 break;
+            case "history":
+                handleHistory(sender, args);
+                break;
             default:
                 sendMessage(sender, plugin.getLangManager().getMessage("errors.unknown-command"));
                 break;
@@ -150,8 +165,8 @@ public class CommandManager implements CommandExecutor, TabCompleter {
         sendMessage(sender, plugin.getLangManager().getMessage("system.reloading"));
 
         CompletableFuture.runAsync(() -> {
-            plugin.reloadPlugin();
-            sendMessage(sender, plugin.getLangManager().getMessage("reload-success"));
+            boolean flushed = plugin.reloadPlugin();
+            sendMessage(sender, plugin.getLangManager().getMessage(flushed ? "reload-success" : "reload-save-timeout"));
         }, plugin.getExecutorService());
     }
 
@@ -281,6 +296,27 @@ public class CommandManager implements CommandExecutor, TabCompleter {
         }
 
         String targetName = args[1];
+        boolean similar = hasFlag(args, "--similar");
+        boolean range = hasFlag(args, "--range");
+        String rangeValue = getFlagValue(args, "--range");
+        int rangePrefix;
+        if (rangeValue == null) {
+            rangePrefix = plugin.getConfigManager().getSubnetAltPrefix();
+        } else if (rangeValue.equals("16") || rangeValue.equals("24")) {
+            rangePrefix = Integer.parseInt(rangeValue);
+        } else {
+            sendMessage(sender, plugin.getLangManager().getMessage("command.alts-invalid-range"));
+            return;
+        }
+        int depth = 0;
+        if (hasFlag(args, "--depth")) {
+            try {
+                depth = Integer.parseInt(getFlagValue(args, "--depth"));
+            } catch (NumberFormatException e) {
+                depth = plugin.getConfigManager().getAltNetworkMaxDepth();
+            }
+        }
+        final int networkDepth = depth;
 
         CompletableFuture.runAsync(() -> {
             OfflinePlayer target = Bukkit.getOfflinePlayer(targetName);
@@ -291,12 +327,57 @@ public class CommandManager implements CommandExecutor, TabCompleter {
                 return;
             }
 
+            if (similar) {
+                List<SubnetSimilarityIndex.SimilarityMatch> matches =
+                    plugin.getDataManager().findSimilarAlts(target.getUniqueId(), 50);
+                sendSimilarAltsMenu(sender, playerData, matches);
+                return;
+            }
+
+            if (networkDepth > 0) {
+                // Se abandona (y cancela el recorrido) si el executor está demasiado ocupado
+                long timeoutMs = plugin.getConfigManager().getAltNetworkTimeBudgetMs() * 4;
+                plugin.getDataManager().findAltNetwork(target.getUniqueId(), networkDepth)
+                    .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                    .thenAccept(network -> sendAltNetworkMenu(sender, playerData, network))
+                    .exceptionally(throwable -> {
+                        sendMessage(sender, plugin.getLangManager().getMessage("errors.unexpected-error")
+                            .replace("{error}", String.valueOf(throwable.getMessage())));
+                        return null;
+                    });
+                return;
+            }
+
+            if (range) {
+                List<PlayerData> rangeAlts = plugin.getDataManager().findRangeAlts(target.getUniqueId(), rangePrefix);
+                sendAltsMenu(sender, playerData, rangeAlts);
+                return;
+            }
+
             List<PlayerData> alts = plugin.getDataManager().findAlts(target.getUniqueId());
             sendAltsMenu(sender, playerData, alts);
 
         }, plugin.getExecutorService());
     }
 
+    private boolean hasFlag(String[] args, String flag) {
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getFlagValue(String[] args, String flag) {
+        for (int i = 2; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag) && !args[i + 1].startsWith("--")) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
     private void handleInfo(CommandSender sender, String[] args) {
         if (!sender.hasPermission("ipdynamic.info")) {
             sendMessage(sender, plugin.getLangManager().getMessage("no-permission"));
@@ -324,6 +405,97 @@ public class CommandManager implements CommandExecutor, TabCompleter {
         }, plugin.getExecutorService());
     }
 
+    private void handleHistory(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("ipdynamic.history")) {
+            sendMessage(sender, plugin.getLangManager().getMessage("no-permission"));
+            return;
+        }
+
+        if (args.length < 2) {
+            sendMessage(sender, plugin.getLangManager().getMessage("command.history-usage"));
+            return;
+        }
+
+        if (!plugin.getDataManager().isConnectionLogEnabled()) {
+            sendMessage(sender, plugin.getLangManager().getMessage("command.history-disabled"));
+            return;
+        }
+
+        String ip = args[1];
+        if (!IPUtils.isValidIpAddress(ip)) {
+            sendMessage(sender, plugin.getLangManager().getMessage("invalid-ip"));
+            return;
+        }
+
+        int hours = 24;
+        if (args.length > 2) {
+            try {
+                hours = Math.max(1, Integer.parseInt(args[2]));
+            } catch (NumberFormatException e) {
+                sendMessage(sender, plugin.getLangManager().getMessage("command.history-usage"));
+                return;
+            }
+        }
+
+        int period = hours;
+        CompletableFuture.runAsync(() -> {
+            List<SegmentedConnectionLog.Entry> entries =
+                plugin.getDataManager().getConnectionLogForIP(ip, period, MAX_HISTORY_ENTRIES);
+            sendHistoryMenu(sender, ip, period, entries);
+        }, plugin.getExecutorService());
+    }
+
+    private void sendHistoryMenu(CommandSender sender, String ip, int hours, List<SegmentedConnectionLog.Entry> entries) {
+        List<String> headerLines = plugin.getLangManager().getMessageLines("menus.history.header");
+        for (String line : headerLines) {
+            String processedLine = line
+                .replace("{ip}", ip)
+                .replace("{hours}", String.valueOf(hours));
+            sender.sendMessage(ColorUtils.translateColor(processedLine));
+        }
+
+        if (entries.isEmpty()) {
+            List<String> noneLines = plugin.getLangManager().getMessageLines("menus.history.none");
+            for (String line : noneLines) {
+                sender.sendMessage(ColorUtils.translateColor(line));
+            }
+        } else {
+            String connectLabel = plugin.getLangManager().getMessage("menus.history.connect");
+            String disconnectLabel = plugin.getLangManager().getMessage("menus.history.disconnect");
+            String durationFormat = plugin.getLangManager().getMessage("menus.history.duration");
+            List<String> entryLines = plugin.getLangManager().getMessageLines("menus.history.entry");
+
+            for (SegmentedConnectionLog.Entry entry : entries) {
+                PlayerData data = plugin.getDataManager().peekPlayerData(entry.uuid);
+                String name = data != null ? data.getUsername() : entry.uuid.toString();
+                boolean disconnect = entry.type == ConnectionRingBuffer.DISCONNECT;
+                String duration = disconnect
+                    ? durationFormat.replace("{minutes}", String.valueOf(TimeUnit.MILLISECONDS.toMinutes(entry.duration)))
+                    : "";
+
+                for (String line : entryLines) {
+                    String processedLine = line
+                        .replace("{date}", dateFormat.format(new Date(entry.timestamp)))
+                        .replace("{type}", disconnect ? disconnectLabel : connectLabel)
+                        .replace("{name}", name)
+                        .replace("{duration}", duration);
+                    sender.sendMessage(ColorUtils.translateColor(processedLine));
+                }
+            }
+
+            List<String> totalLines = plugin.getLangManager().getMessageLines("menus.history.total");
+            for (String line : totalLines) {
+                String processedLine = line.replace("{count}", String.valueOf(entries.size()));
+                sender.sendMessage(ColorUtils.translateColor(processedLine));
+            }
+        }
+
+        List<String> footerLines = plugin.getLangManager().getMessageLines("menus.history.footer");
+        for (String line : footerLines) {
+            sender.sendMessage(ColorUtils.translateColor(line));
+        }
+    }
+
     private void handleStats(CommandSender sender) {
         if (!sender.hasPermission("ipdynamic.stats")) {
             sendMessage(sender, plugin.getLangManager().getMessage("no-permission"));
@@ -628,10 +800,15 @@ public class CommandManager implements CommandExecutor, TabCompleter {
                     country = alt.getGeoLocation().getCountry();
                 }
 
+                // Un relevo de sesión en la IP es más fuerte que solo compartirla
+                String handoff = plugin.getDataManager().isSessionHandoff(playerData.getUuid(), alt.getUuid())
+                    ? plugin.getLangManager().getRawString("menus.alts.handoff-tag") : "";
+
                 List<String> altEntryLines = plugin.getLangManager().getMessageLines("menus.alts.alt-entry");
                 for (String line : altEntryLines) {
                     String processedLine = line
                             .replace("{name}", alt.getUsername())
+                            .replace("{handoff}", handoff)
                             .replace("{connections}", String.valueOf(alt.getTotalConnections()))
                             .replace("{ip}", alt.getLastIp())
                             .replace("{country}", country);
@@ -654,6 +831,118 @@ public class CommandManager implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void sendSimilarAltsMenu(CommandSender sender, PlayerData playerData,
+                                     List<SubnetSimilarityIndex.SimilarityMatch> matches) {
+        List<String> headerLines = plugin.getLangManager().getMessageLines("menus.alts.header");
+        for (String line : headerLines) {
+            sender.sendMessage(ColorUtils.translateColor(line));
+        }
+
+        List<String> playerInfoLines = plugin.getLangManager().getMessageLines("menus.alts.player-info");
+        for (String line : playerInfoLines) {
+            String processedLine = line
+                .replace("{player}", playerData.getUsername())
+                .replace("{connections}", String.valueOf(playerData.getTotalConnections()))
+                .replace("{last}", dateFormat.format(new Date(playerData.getLastLogin())));
+            sender.sendMessage(ColorUtils.translateColor(processedLine));
+        }
+
+        if (matches.isEmpty()) {
+            List<String> noAltsLines = plugin.getLangManager().getMessageLines("menus.alts.no-alts");
+            for (String line : noAltsLines) {
+                sender.sendMessage(ColorUtils.translateColor(line));
+            }
+        } else {
+            int count = 0;
+            for (SubnetSimilarityIndex.SimilarityMatch match : matches) {
+                if (count >= 10) break;
+
+                PlayerData alt = plugin.getDataManager().peekPlayerData(match.uuid);
+                if (alt == null) continue;
+
+                List<String> entryLines = plugin.getLangManager().getMessageLines("menus.alts.similar-entry");
+                for (String line : entryLines) {
+                    String processedLine = line
+                            .replace("{name}", alt.getUsername())
+                            .replace("{similarity}", String.valueOf(Math.round(match.similarity * 100)))
+                            .replace("{ip}", alt.getLastIp());
+                    sender.sendMessage(ColorUtils.translateColor(processedLine));
+                }
+                count++;
+            }
+
+            List<String> totalLines = plugin.getLangManager().getMessageLines("menus.alts.total");
+            for (String line : totalLines) {
+                String processedLine = line.replace("{count}", String.valueOf(matches.size()));
+                sender.sendMessage(ColorUtils.translateColor(processedLine));
+            }
+        }
+
+        List<String> footerLines = plugin.getLangManager().getMessageLines("menus.alts.footer");
+        for (String line : footerLines) {
+            sender.sendMessage(ColorUtils.translateColor(line));
+        }
+    }
+
+    private void sendAltNetworkMenu(CommandSender sender, PlayerData playerData, AltNetworkResolver.AltNetwork network) {
+        List<String> headerLines = plugin.getLangManager().getMessageLines("menus.alts.header");
+        for (String line : headerLines) {
+            sender.sendMessage(ColorUtils.translateColor(line));
+        }
+
+        List<String> playerInfoLines = plugin.getLangManager().getMessageLines("menus.alts.player-info");
+        for (String line : playerInfoLines) {
+            String processedLine = line
+                .replace("{player}", playerData.getUsername())
+                .replace("{connections}", String.valueOf(playerData.getTotalConnections()))
+                .replace("{last}", dateFormat.format(new Date(playerData.getLastLogin())));
+            sender.sendMessage(ColorUtils.translateColor(processedLine));
+        }
+
+        if (network.depths.isEmpty()) {
+            List<String> noAltsLines = plugin.getLangManager().getMessageLines("menus.alts.no-alts");
+            for (String line : noAltsLines) {
+                sender.sendMessage(ColorUtils.translateColor(line));
+            }
+        } else {
+            int count = 0;
+            for (Map.Entry<UUID, Integer> entry : network.depths.entrySet()) {
+                if (count >= 10) break;
+
+                PlayerData alt = plugin.getDataManager().peekPlayerData(entry.getKey());
+                if (alt == null) continue;
+
+                List<String> entryLines = plugin.getLangManager().getMessageLines("menus.alts.network-entry");
+                for (String line : entryLines) {
+                    String processedLine = line
+                            .replace("{name}", alt.getUsername())
+                            .replace("{depth}", String.valueOf(entry.getValue()))
+                            .replace("{ip}", alt.getLastIp());
+                    sender.sendMessage(ColorUtils.translateColor(processedLine));
+                }
+                count++;
+            }
+
+            List<String> totalLines = plugin.getLangManager().getMessageLines("menus.alts.total");
+            for (String line : totalLines) {
+                String processedLine = line.replace("{count}", String.valueOf(network.depths.size()));
+                sender.sendMessage(ColorUtils.translateColor(processedLine));
+            }
+        }
+
+        if (network.truncated) {
+            List<String> truncatedLines = plugin.getLangManager().getMessageLines("menus.alts.network-truncated");
+            for (String line : truncatedLines) {
+                sender.sendMessage(ColorUtils.translateColor(line));
+            }
+        }
+
+        List<String> footerLines = plugin.getLangManager().getMessageLines("menus.alts.footer");
+        for (String line : footerLines) {
+            sender.sendMessage(ColorUtils.translateColor(line));
+        }
+    }
+
     private void sendPlayerInfoMenu(CommandSender sender, PlayerData playerData) {
         String country = "Desconocido";
         String flag = "";
@@ -860,13 +1149,7 @@ public class CommandManager implements CommandExecutor, TabCompleter {
             if (subCommand.equals("ban") || subCommand.equals("unban")) {
                 StringUtil.copyPartialMatches(args[1], Arrays.asList(BAN_TYPES), completions);
             } else if (subCommand.equals("alts") || subCommand.equals("info")) {
-
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    if (sender.hasPermission("ipdynamic.see.all") ||
-                        (sender instanceof Player && ((Player) sender).canSee(player))) {
-                        completions.add(player.getName());
-                    }
-                }
+                addPlayerCompletions(sender, args[1], completions);
             } else if (subCommand.equals("discord")) {
                 StringUtil.copyPartialMatches(args[1], Arrays.asList("status", "stats"), completions);
             } else if (subCommand.equals("whitelist")) {
@@ -880,18 +1163,15 @@ public class CommandManager implements CommandExecutor, TabCompleter {
 
             if (subCommand.equals("whitelist")) {
                 if (action.equals("add")) {
-                    // For add, suggest online players
-                    for (Player player : Bukkit.getOnlinePlayers()) {
-                        if (sender.hasPermission("ipdynamic.see.all") ||
-                            (sender instanceof Player && ((Player) sender).canSee(player))) {
-                            completions.add(player.getName());
-                        }
-                    }
+                    // Para add, jugadores online y los ya vistos
+                    addPlayerCompletions(sender, args[2], completions);
                 } else if (action.equals("remove")) {
                     // For remove, suggest whitelisted players
                     Set<String> whitelistedPlayers = plugin.getWhitelistManager().getAllWhitelistedPlayers();
                     StringUtil.copyPartialMatches(args[2], whitelistedPlayers, completions);
                 }
+            } else if (subCommand.equals("alts")) {
+                StringUtil.copyPartialMatches(args[2], Arrays.asList(ALTS_FLAGS), completions);
             } else if (subCommand.equals("page")) {
                 // For page command, suggest online players
                 for (Player player : Bukkit.getOnlinePlayers()) {
@@ -907,6 +1187,30 @@ public class CommandManager implements CommandExecutor, TabCompleter {
         return completions;
     }
 
+    private void addPlayerCompletions(CommandSender sender, String prefix, List<String> completions) {
+        boolean seeAll = sender.hasPermission("ipdynamic.see.all");
+        Set<String> added = new HashSet<>();
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if ((seeAll || (sender instanceof Player && ((Player) sender).canSee(player)))
+                && StringUtil.startsWithIgnoreCase(player.getName(), prefix)) {
+                completions.add(player.getName());
+                added.add(player.getName().toLowerCase());
+            }
+        }
+
+        for (String name : plugin.getDataManager().completeUsernames(prefix, MAX_NAME_COMPLETIONS)) {
+            if (added.contains(name.toLowerCase())) continue;
+
+            // No mostrar jugadores online que el emisor no puede ver
+            Player online = Bukkit.getPlayerExact(name);
+            if (online != null && !seeAll && !(sender instanceof Player && ((Player) sender).canSee(online))) {
+                continue;
+            }
+            completions.add(name);
+        }
+    }
+
     private void handlePageCommand(CommandSender sender, String[] args) {
         if (!(sender instanceof Player)) {
             sendMessage(sender, plugin.getLangManager().getMessage("errors.player-only"));
@@ -102,23 +102,22 @@ public class DiscordStatsService {
     private Map<String, CountryStats> calculateCountryStats() {
         Map<String, CountryStats> countryStatsMap = new HashMap<>();
 
-        Collection<PlayerData> allPlayers = plugin.getDataManager().getAllPlayers();
-        int totalConnections = 0;
+        int[] totalConnections = new int[1];
 
-        for (PlayerData player : allPlayers) {
+        plugin.getDataManager().forEachPlayer(player -> {
             GeoLocation geoLocation = player.getGeoLocation();
             if (geoLocation != null && geoLocation.getCountry() != null) {
                 String country = geoLocation.getCountry();
                 int playerConnections = player.getTotalConnections();
-                totalConnections += playerConnections;
+                totalConnections[0] += playerConnections;
 
                 countryStatsMap.computeIfAbsent(country, k -> new CountryStats(country))
                     .addPlayer(playerConnections);
             }
-        }
+        });
 
         for (CountryStats stats : countryStatsMap.values()) {
-            stats.calculatePercentage(totalConnections);
+            stats.calculatePercentage(totalConnections[0]);
         }
 
         return countryStatsMap;
@@ -0,0 +1,278 @@
+package me.lssupportteam.ipdynamic.index;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * Recorrido en anchura acotado del grafo jugador/IP, encuentra cadenas de alts (A comparte IP con B,
+ * B con C). Los resultados se memorizan y se descartan cuando una de sus IPs o jugadores gana una arista
+ */
+public class AltNetworkResolver {
+
+    private final Function<UUID, Collection<String>> ipsOfPlayer;
+    private final Function<String, Set<UUID>> playersOfIp;
+
+    // Todo protegido por this, un resultado nunca se memoriza tras una arista que lo invalida
+    private final LinkedHashMap<CacheKey, AltNetwork> cache;
+    private final Map<String, Set<CacheKey>> ipDependents;
+    private final Map<UUID, Set<CacheKey>> playerDependents;
+    private long generation;
+
+    public AltNetworkResolver(Function<UUID, Collection<String>> ipsOfPlayer,
+                              Function<String, Set<UUID>> playersOfIp, int maxCached) {
+        this.ipsOfPlayer = ipsOfPlayer;
+        this.playersOfIp = playersOfIp;
+        this.ipDependents = new HashMap<>();
+        this.playerDependents = new HashMap<>();
+        // Por orden de acceso, se descarta primero la red menos consultada
+        this.cache = new LinkedHashMap<CacheKey, AltNetwork>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, AltNetwork> eldest) {
+                if (size() <= maxCached) return false;
+                forgetDependents(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Resuelve la red de alts de {@code root} en el executor dado. Cancelar el future para el recorrido
+     */
+    public CompletableFuture<AltNetwork> resolve(UUID root, Limits limits, ExecutorService executor) {
+        CacheKey key = new CacheKey(root, limits);
+        long startGeneration;
+        synchronized (this) {
+            AltNetwork cached = cache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            startGeneration = generation;
+        }
+
+        CompletableFuture<AltNetwork> future = new CompletableFuture<>();
+        executor.submit(() -> {
+            try {
+                AltNetwork network = traverse(root, limits, future);
+                if (network == null) return;
+
+                // Los resultados cortados por el límite de tiempo no se memorizan
+                if (!network.timedOut) {
+                    remember(key, network, startGeneration);
+                }
+                future.complete(network);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Descarta las redes memorizadas que tocaron esta IP o jugador, llamar al añadir una arista
+     */
+    public synchronized void invalidate(String ip, UUID player) {
+        generation++;
+
+        Set<CacheKey> byIp = ipDependents.remove(ip);
+        if (byIp != null) {
+            byIp.forEach(this::drop);
+        }
+
+        Set<CacheKey> byPlayer = playerDependents.remove(player);
+        if (byPlayer != null) {
+            byPlayer.forEach(this::drop);
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        cache.clear();
+        ipDependents.clear();
+        playerDependents.clear();
+    }
+
+    public synchronized int getCachedCount() {
+        return cache.size();
+    }
+
+    private AltNetwork traverse(UUID root, Limits limits, CompletableFuture<AltNetwork> future) {
+        long start = System.nanoTime();
+        long deadline = start + limits.timeBudgetMs * 1_000_000L;
+
+        Map<UUID, Integer> depths = new LinkedHashMap<>();
+        Set<String> seenIps = new HashSet<>();
+        Set<String> visitedIps = new HashSet<>();
+        ArrayDeque<UUID> queue = new ArrayDeque<>();
+        boolean truncated = false;
+        boolean timedOut = false;
+
+        depths.put(root, 0);
+        queue.add(root);
+
+        traversal:
+        while (!queue.isEmpty()) {
+            if (future.isDone()) {
+                return null;
+            }
+            if (System.nanoTime() > deadline) {
+                truncated = true;
+                timedOut = true;
+                break;
+            }
+
+            UUID current = queue.poll();
+            int depth = depths.get(current);
+            if (depth >= limits.maxDepth) continue;
+
+            Collection<String> ips = ipsOfPlayer.apply(current);
+            if (ips == null) continue;
+
+            for (String ip : ips) {
+                if (!seenIps.add(ip)) continue;
+
+                Set<UUID> neighbours = playersOfIp.apply(ip);
+                if (neighbours == null) continue;
+
+                // Las IPs compartidas (wifi pública, salidas de VPN) arrastrarían jugadores sin relación
+                if (neighbours.size() > limits.maxFanOut) {
+                    truncated = true;
+                    continue;
+                }
+                visitedIps.add(ip);
+
+                for (UUID neighbour : neighbours) {
+                    if (depths.containsKey(neighbour)) continue;
+
+                    if (depths.size() >= limits.maxNodes) {
+                        truncated = true;
+                        break traversal;
+                    }
+
+                    depths.put(neighbour, depth + 1);
+                    queue.add(neighbour);
+                }
+            }
+        }
+
+        depths.remove(root);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        return new AltNetwork(root, depths, visitedIps, truncated, timedOut, elapsedMs);
+    }
+
+    private synchronized void remember(CacheKey key, AltNetwork network, long startGeneration) {
+        // Una arista añadida durante el recorrido puede no estar en el resultado
+        if (generation != startGeneration) return;
+
+        AltNetwork previous = cache.put(key, network);
+        if (previous != null) {
+            forgetDependents(key, previous);
+        }
+
+        for (String ip : network.visitedIps) {
+            ipDependents.computeIfAbsent(ip, k -> new HashSet<>()).add(key);
+        }
+        playerDependents.computeIfAbsent(network.root, k -> new HashSet<>()).add(key);
+        for (UUID member : network.depths.keySet()) {
+            playerDependents.computeIfAbsent(member, k -> new HashSet<>()).add(key);
+        }
+    }
+
+    // Protegido por this
+    private void drop(CacheKey key) {
+        AltNetwork network = cache.remove(key);
+        if (network != null) {
+            forgetDependents(key, network);
+        }
+    }
+
+    // Protegido por this, deja los mapas de dependencias tan pequeños como la caché
+    private void forgetDependents(CacheKey key, AltNetwork network) {
+        for (String ip : network.visitedIps) {
+            removeDependent(ipDependents, ip, key);
+        }
+        removeDependent(playerDependents, network.root, key);
+        for (UUID member : network.depths.keySet()) {
+            removeDependent(playerDependents, member, key);
+        }
+    }
+
+    private static <K> void removeDependent(Map<K, Set<CacheKey>> dependents, K node, CacheKey key) {
+        Set<CacheKey> keys = dependents.get(node);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            dependents.remove(node);
+        }
+    }
+
+
+    public static class Limits {
+        public final int maxDepth;
+        public final int maxFanOut;
+        public final int maxNodes;
+        public final long timeBudgetMs;
+
+        public Limits(int maxDepth, int maxFanOut, int maxNodes, long timeBudgetMs) {
+            this.maxDepth = maxDepth;
+            this.maxFanOut = maxFanOut;
+            this.maxNodes = maxNodes;
+            this.timeBudgetMs = timeBudgetMs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Limits)) return false;
+            Limits other = (Limits) o;
+            return maxDepth == other.maxDepth && maxFanOut == other.maxFanOut
+                && maxNodes == other.maxNodes && timeBudgetMs == other.timeBudgetMs;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(maxDepth, maxFanOut, maxNodes, timeBudgetMs);
+        }
+    }
+
+    private static final class CacheKey {
+        private final UUID root;
+        private final Limits limits;
+
+        CacheKey(UUID root, Limits limits) {
+            this.root = root;
+            this.limits = limits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey) o;
+            return root.equals(other.root) && limits.equals(other.limits);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * root.hashCode() + limits.hashCode();
+        }
+    }
+
+    public static class AltNetwork {
+        public final UUID root;
+        public final Map<UUID, Integer> depths; // Alt -> saltos desde la raíz, en orden BFS
+        public final Set<String> visitedIps; // IPs expandidas, sin las compartidas por encima del límite
+        public final boolean truncated;
+        public final boolean timedOut;
+        public final long elapsedMs;
+
+        AltNetwork(UUID root, Map<UUID, Integer> depths, Set<String> visitedIps,
+                   boolean truncated, boolean timedOut, long elapsedMs) {
+            this.root = root;
+            this.depths = Collections.unmodifiableMap(depths);
+            this.visitedIps = Collections.unmodifiableSet(visitedIps);
+            this.truncated = truncated;
+            this.timedOut = timedOut;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+}
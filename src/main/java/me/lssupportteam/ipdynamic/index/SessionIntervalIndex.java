@@ -0,0 +1,84 @@
+package me.lssupportteam.ipdynamic.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Sesiones cerradas hace poco por IP, ordenadas por hora de salida. Sirve para detectar relevos:
+ * la cuenta A sale y la B entra desde la misma IP poco después
+ */
+public class SessionIntervalIndex {
+
+    private static final Comparator<Session> BY_END = Comparator
+        .comparingLong((Session s) -> s.end)
+        .thenComparing(s -> s.uuid, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<Session>> sessionsByIp;
+    private final LongSupplier retentionMs; // Se lee en cada uso, sigue las recargas de config
+
+    public SessionIntervalIndex(LongSupplier retentionMs) {
+        this.sessionsByIp = new ConcurrentHashMap<>();
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Registra una sesión cerrada y quita las de la misma IP que pasaron la retención
+     */
+    public void recordSession(String ip, UUID uuid, long start, long end) {
+        ConcurrentSkipListSet<Session> sessions = sessionsByIp.computeIfAbsent(ip, k -> new ConcurrentSkipListSet<>(BY_END));
+        sessions.add(new Session(uuid, start, end));
+        sessions.headSet(new Session(null, 0, end - retentionMs.getAsLong())).clear();
+    }
+
+    /**
+     * Otras cuentas cuya sesión en {@code ip} acabó como mucho {@code windowMs} antes de {@code loginTime}
+     */
+    public Set<UUID> findHandoffs(String ip, UUID uuid, long loginTime, long windowMs) {
+        ConcurrentSkipListSet<Session> sessions = sessionsByIp.get(ip);
+        if (sessions == null) return Collections.emptySet();
+
+        Set<UUID> result = new HashSet<>();
+        for (Session session : sessions.tailSet(new Session(null, 0, loginTime - windowMs))) {
+            if (session.end > loginTime) break;
+            if (!session.uuid.equals(uuid)) {
+                result.add(session.uuid);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Quita las IPs cuyas sesiones pasaron todas la retención
+     */
+    public void prune(long now) {
+        sessionsByIp.entrySet().removeIf(entry -> {
+            ConcurrentSkipListSet<Session> sessions = entry.getValue();
+            sessions.headSet(new Session(null, 0, now - retentionMs.getAsLong())).clear();
+            return sessions.isEmpty();
+        });
+    }
+
+    public void clear() {
+        sessionsByIp.clear();
+    }
+
+    public int getTrackedIps() {
+        return sessionsByIp.size();
+    }
+
+
+    private static class Session {
+        // Un uuid null va primero con la misma hora de salida, así sirve de límite en los rangos
+        final UUID uuid;
+        final long start;
+        final long end;
+
+        Session(UUID uuid, long start, long end) {
+            this.uuid = uuid;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package me.lssupportteam.ipdynamic.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Agrupa cada IP registrada por su prefijo /24 y /16 con la última vez que se vio a cada cuenta
+ */
+public class SubnetPrefixIndex {
+
+    // Tamaños aproximados: entrada con su Long y hueco en la tabla, y cada cubo con su mapa
+    private static final int ENTRY_BYTES = 56;
+    private static final int BUCKET_BYTES = 200;
+
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<UUID, Long>> slash24Buckets;
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<UUID, Long>> slash16Buckets;
+
+    public SubnetPrefixIndex() {
+        this.slash24Buckets = new ConcurrentHashMap<>();
+        this.slash16Buckets = new ConcurrentHashMap<>();
+    }
+
+    public void record(UUID uuid, int ip, long timestamp) {
+        // Dentro de compute para que un remove a la vez no borre el cubo bajo la escritura
+        slash24Buckets.compute(ip >>> 8, (key, bucket) -> {
+            ConcurrentHashMap<UUID, Long> target = bucket != null ? bucket : new ConcurrentHashMap<>();
+            target.merge(uuid, timestamp, Math::max);
+            return target;
+        });
+        slash16Buckets.compute(ip >>> 16, (key, bucket) -> {
+            ConcurrentHashMap<UUID, Long> target = bucket != null ? bucket : new ConcurrentHashMap<>();
+            target.merge(uuid, timestamp, Math::max);
+            return target;
+        });
+    }
+
+    /**
+     * Quita una cuenta de los cubos de una IP olvidada, salvo los que mantiene por sus IPs {@code remaining}
+     */
+    public void remove(UUID uuid, int ip, int[] remaining) {
+        boolean keep24 = false;
+        boolean keep16 = false;
+        for (int other : remaining) {
+            keep24 |= other >>> 8 == ip >>> 8;
+            keep16 |= other >>> 16 == ip >>> 16;
+        }
+
+        if (!keep24) removeFrom(slash24Buckets, ip >>> 8, uuid);
+        if (!keep16) removeFrom(slash16Buckets, ip >>> 16, uuid);
+    }
+
+    private static void removeFrom(ConcurrentHashMap<Integer, ConcurrentHashMap<UUID, Long>> buckets, int key, UUID uuid) {
+        buckets.computeIfPresent(key, (k, bucket) -> {
+            bucket.remove(uuid);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    /**
+     * Cuentas vistas en la misma /24 o /16 que {@code ip} desde {@code since}
+     */
+    public Set<UUID> findRecent(int ip, int prefix, long since) {
+        Map<UUID, Long> bucket = prefix == 16
+            ? slash16Buckets.get(ip >>> 16)
+            : slash24Buckets.get(ip >>> 8);
+
+        if (bucket == null) return Collections.emptySet();
+
+        Set<UUID> result = new HashSet<>();
+        for (Map.Entry<UUID, Long> entry : bucket.entrySet()) {
+            if (entry.getValue() >= since) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        slash24Buckets.clear();
+        slash16Buckets.clear();
+    }
+
+    /**
+     * Memoria aproximada del índice, recorre los cubos
+     */
+    public long getEstimatedBytes() {
+        return estimate(slash24Buckets) + estimate(slash16Buckets);
+    }
+
+    private static long estimate(ConcurrentHashMap<Integer, ConcurrentHashMap<UUID, Long>> buckets) {
+        long bytes = 0;
+        for (ConcurrentHashMap<UUID, Long> bucket : buckets.values()) {
+            bytes += BUCKET_BYTES + (long) bucket.size() * ENTRY_BYTES;
+        }
+        return bytes;
+    }
+
+    public int getSlash24Count() {
+        return slash24Buckets.size();
+    }
+
+    public int getSlash16Count() {
+        return slash16Buckets.size();
+    }
+}
@@ -0,0 +1,218 @@
+package me.lssupportteam.ipdynamic.index;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice MinHash/LSH de las subredes /24 de cada cuenta, solo compara cuentas que comparten una banda
+ */
+public class SubnetSimilarityIndex {
+
+    // 16 bandas de 4 filas ponen el umbral LSH en (1/16)^(1/4) = 0.5 de Jaccard
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int SIGNATURE_SIZE = BANDS * ROWS;
+
+    // Tamaños aproximados con oops comprimidos: entrada, UUID e int[] de la firma,
+    // cada hueco en un cubo y cada cubo con su clave Long y su HashSet
+    private static final int SIGNATURE_BYTES = 32 + 32 + 16 + SIGNATURE_SIZE * 4;
+    private static final int MEMBERSHIP_BYTES = 40;
+    private static final int BUCKET_BYTES = 200;
+
+    private final int[] seeds;
+    private final Map<UUID, int[]> signatures;
+    private final Map<Long, Set<UUID>> buckets;
+    private final ReadWriteLock lock;
+
+    public SubnetSimilarityIndex() {
+        this.seeds = new int[SIGNATURE_SIZE];
+        this.signatures = new HashMap<>();
+        this.buckets = new HashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+
+        // Semilla fija para que las firmas sirvan entre reinicios
+        Random random = new Random(0x49504479L);
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            seeds[i] = random.nextInt();
+        }
+    }
+
+    /**
+     * Añade una subred /24 a la cuenta, actualizando solo las bandas cuyo mínimo cambió
+     */
+    public void addSubnet(UUID uuid, int subnet) {
+        lock.writeLock().lock();
+        try {
+            int[] signature = signatures.get(uuid);
+            boolean isNew = signature == null;
+            long[] oldKeys = null;
+
+            if (isNew) {
+                signature = new int[SIGNATURE_SIZE];
+                Arrays.fill(signature, Integer.MAX_VALUE);
+                signatures.put(uuid, signature);
+            } else {
+                oldKeys = bandKeys(signature);
+            }
+
+            boolean changed = false;
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                int hash = mix(subnet ^ seeds[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                    changed = true;
+                }
+            }
+
+            if (!changed && !isNew) {
+                return;
+            }
+
+            long[] newKeys = bandKeys(signature);
+            for (int band = 0; band < BANDS; band++) {
+                if (oldKeys != null) {
+                    if (oldKeys[band] == newKeys[band]) continue;
+                    removeFromBucket(oldKeys[band], uuid);
+                }
+                buckets.computeIfAbsent(newKeys[band], k -> new HashSet<>()).add(uuid);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cuentas con una similitud de Jaccard estimada de al menos {@code minSimilarity}, de más a menos parecidas
+     */
+    public List<SimilarityMatch> findSimilar(UUID uuid, double minSimilarity, int limit) {
+        lock.readLock().lock();
+        try {
+            int[] signature = signatures.get(uuid);
+            if (signature == null) return Collections.emptyList();
+
+            Set<UUID> candidates = new HashSet<>();
+            for (long key : bandKeys(signature)) {
+                Set<UUID> bucket = buckets.get(key);
+                if (bucket != null) {
+                    candidates.addAll(bucket);
+                }
+            }
+            candidates.remove(uuid);
+
+            List<SimilarityMatch> matches = new ArrayList<>();
+            for (UUID candidate : candidates) {
+                double similarity = estimate(signature, signatures.get(candidate));
+                if (similarity >= minSimilarity) {
+                    matches.add(new SimilarityMatch(candidate, similarity));
+                }
+            }
+
+            matches.sort((a, b) -> Double.compare(b.similarity, a.similarity));
+            return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Quita una cuenta y su firma. Una subred no se puede sacar de una firma MinHash,
+     * las cuentas que solo olvidan algunas IPs la conservan hasta reiniciar
+     */
+    public void remove(UUID uuid) {
+        lock.writeLock().lock();
+        try {
+            int[] signature = signatures.remove(uuid);
+            if (signature == null) return;
+
+            for (long key : bandKeys(signature)) {
+                removeFromBucket(key, uuid);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            signatures.clear();
+            buckets.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return signatures.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Memoria aproximada del índice, hasta unos 4 KB por cuenta si casi no comparte cubos
+     */
+    public long getEstimatedBytes() {
+        lock.readLock().lock();
+        try {
+            // Cada cuenta está en exactamente un cubo por banda
+            return (long) signatures.size() * (SIGNATURE_BYTES + BANDS * MEMBERSHIP_BYTES)
+                + (long) buckets.size() * BUCKET_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeFromBucket(long key, UUID uuid) {
+        Set<UUID> bucket = buckets.get(key);
+        if (bucket != null && bucket.remove(uuid) && bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+    }
+
+    private long[] bandKeys(int[] signature) {
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            int hash = 1;
+            for (int row = 0; row < ROWS; row++) {
+                hash = 31 * hash + signature[band * ROWS + row];
+            }
+            keys[band] = ((long) band << 32) | (hash & 0xFFFFFFFFL);
+        }
+        return keys;
+    }
+
+    private static double estimate(int[] a, int[] b) {
+        if (b == null) return 0;
+
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (a[i] == b[i]) equal++;
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    // Finalizador de Murmur3, con semilla vale como familia de hashes independientes
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+
+    public static class SimilarityMatch {
+        public final UUID uuid;
+        public final double similarity;
+
+        public SimilarityMatch(UUID uuid, double similarity) {
+            this.uuid = uuid;
+            this.similarity = similarity;
+        }
+    }
+}
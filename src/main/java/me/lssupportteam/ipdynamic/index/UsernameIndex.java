@@ -0,0 +1,196 @@
+package me.lssupportteam.ipdynamic.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Búsqueda de nombres sin distinguir mayúsculas y trie compacto de prefijos para el tabulador
+ */
+public class UsernameIndex {
+
+    // Tamaños aproximados: entrada del mapa con la clave en minúsculas, y cada nodo del trie
+    // con su hueco en los arrays del padre
+    private static final int NAME_BYTES = 96;
+    private static final int NODE_BYTES = 64;
+
+    private final ConcurrentHashMap<String, UUID> uuidsByName;
+    private final Node root;
+    private final ReadWriteLock trieLock;
+    private int nodeCount; // Protegido por trieLock
+
+    public UsernameIndex() {
+        this.uuidsByName = new ConcurrentHashMap<>();
+        this.root = new Node();
+        this.trieLock = new ReentrantReadWriteLock();
+    }
+
+    public UUID get(String username) {
+        if (username == null) return null;
+        return uuidsByName.get(username.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Asigna un nombre a la cuenta, quitándoselo a la que lo usara antes
+     */
+    public void put(UUID uuid, String username) {
+        if (username == null || username.isEmpty()) return;
+
+        String key = username.toLowerCase(Locale.ROOT);
+        uuidsByName.put(key, uuid);
+
+        trieLock.writeLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.getChild(key.charAt(i));
+                if (child == null) {
+                    child = node.addChild(key.charAt(i));
+                    nodeCount++;
+                }
+                node = child;
+            }
+            node.displayName = username;
+        } finally {
+            trieLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita el nombre, salvo que otra cuenta lo haya tomado después
+     */
+    public void remove(UUID uuid, String username) {
+        if (username == null || username.isEmpty()) return;
+
+        String key = username.toLowerCase(Locale.ROOT);
+        if (!uuidsByName.remove(key, uuid)) return;
+
+        trieLock.writeLock().lock();
+        try {
+            Node node = find(key);
+            if (node != null && !uuidsByName.containsKey(key)) {
+                node.displayName = null;
+            }
+        } finally {
+            trieLock.writeLock().unlock();
+        }
+    }
+
+    public void rename(UUID uuid, String oldName, String newName) {
+        if (oldName != null && oldName.equalsIgnoreCase(newName)) {
+            // Solo cambian las mayúsculas, se mantiene y se actualiza el nombre mostrado
+            put(uuid, newName);
+            return;
+        }
+        remove(uuid, oldName);
+        put(uuid, newName);
+    }
+
+    /**
+     * Hasta {@code limit} nombres que empiezan por {@code prefix}, en orden alfabético
+     */
+    public List<String> complete(String prefix, int limit) {
+        String key = prefix == null ? "" : prefix.toLowerCase(Locale.ROOT);
+        List<String> results = new ArrayList<>();
+
+        trieLock.readLock().lock();
+        try {
+            Node start = find(key);
+            if (start != null) {
+                collect(start, results, limit);
+            }
+        } finally {
+            trieLock.readLock().unlock();
+        }
+        return results;
+    }
+
+    public void clear() {
+        trieLock.writeLock().lock();
+        try {
+            uuidsByName.clear();
+            root.keys = Node.NO_KEYS;
+            root.children = Node.NO_CHILDREN;
+            root.displayName = null;
+            nodeCount = 0;
+        } finally {
+            trieLock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return uuidsByName.size();
+    }
+
+    /**
+     * Memoria aproximada del índice, los nodos del trie no se borran hasta reiniciar
+     */
+    public long getEstimatedBytes() {
+        trieLock.readLock().lock();
+        try {
+            return (long) uuidsByName.size() * NAME_BYTES + (long) nodeCount * NODE_BYTES;
+        } finally {
+            trieLock.readLock().unlock();
+        }
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.getChild(key.charAt(i));
+        }
+        return node;
+    }
+
+    private void collect(Node start, List<String> results, int limit) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(start);
+
+        while (!stack.isEmpty() && results.size() < limit) {
+            Node node = stack.pop();
+            if (node.displayName != null) {
+                results.add(node.displayName);
+            }
+            // Al revés para visitar los hijos en orden
+            for (int i = node.children.length - 1; i >= 0; i--) {
+                stack.push(node.children[i]);
+            }
+        }
+    }
+
+
+    /**
+     * Nodo con arrays paralelos ordenados en vez de un mapa, para que millones de nombres ocupen poco
+     */
+    private static final class Node {
+        static final char[] NO_KEYS = new char[0];
+        static final Node[] NO_CHILDREN = new Node[0];
+
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        String displayName;
+
+        Node getChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char c) {
+            int insertAt = -Arrays.binarySearch(keys, c) - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+            Node child = new Node();
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
@@ -16,7 +16,6 @@ import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.net.InetAddress;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 
 public class PlayerConnectionListener implements Listener {
 
@@ -75,12 +74,13 @@ public class PlayerConnectionListener implements Listener {
         Player player = event.getPlayer();
         String ip = player.getAddress() != null ?
             player.getAddress().getAddress().getHostAddress() : "UNKNOWN";
+        long timestamp = System.currentTimeMillis();
 
 
-        CompletableFuture.runAsync(() -> {
+        plugin.getDataManager().runAfterLoad(() -> {
             try {
 
-                PlayerData playerData = plugin.getDataManager().registerConnection(player);
+                PlayerData playerData = plugin.getDataManager().registerConnection(player, timestamp);
                 boolean isFirstJoin = playerData.getTotalConnections() == 1;
 
 
@@ -111,21 +111,22 @@ public class PlayerConnectionListener implements Listener {
                 plugin.getLogger().severe("Error procesando conexión de " + player.getName() + ": " + e.getMessage());
                 e.printStackTrace();
             }
-        }, plugin.getExecutorService());
+        });
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
+        long timestamp = System.currentTimeMillis();
 
 
-        CompletableFuture.runAsync(() -> {
+        plugin.getDataManager().runAfterLoad(() -> {
             try {
-                plugin.getDataManager().registerDisconnection(player);
+                plugin.getDataManager().registerDisconnection(player, timestamp);
             } catch (Exception e) {
                 plugin.getLogger().severe("Error procesando desconexión de " + player.getName() + ": " + e.getMessage());
             }
-        }, plugin.getExecutorService());
+        });
     }
 
     private void detectAndNotifyAlts(Player player, PlayerData playerData, String ip) {
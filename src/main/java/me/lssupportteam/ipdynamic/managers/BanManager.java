@@ -1,27 +1,28 @@
 package me.lssupportteam.ipdynamic.managers;
 
-import com.google.gson.reflect.TypeToken;
 import me.lssupportteam.ipdynamic.IPDynamic;
 import me.lssupportteam.ipdynamic.models.BanEntry;
+import me.lssupportteam.ipdynamic.storage.DerivedIndexFile;
+import me.lssupportteam.ipdynamic.storage.StorageBackend;
 import me.lssupportteam.ipdynamic.utils.IPUtils;
-import me.lssupportteam.ipdynamic.utils.JsonUtils;
 import org.bukkit.Bukkit;
 
+import java.io.DataInputStream;
 import java.io.File;
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 public class BanManager {
 
     private final IPDynamic plugin;
-    private final File op1BansFile;
-    private final File op2BansFile;
-    private final File singleBansFile;
+    private final StorageBackend storage;
 
 
     private final ConcurrentHashMap<String, BanEntry> singleBans;
@@ -35,6 +36,9 @@ public class BanManager {
 
     private final Set<String> bannedIpCache;
     private final ReadWriteLock cacheLock;
+    private final DerivedIndexFile cacheFile; // IPs expandidas de baneos simples y OP1
+    private volatile String savedCacheStamp;
+    private volatile String knownBansStamp; // Baneos guardados en la última carga o guardado
 
 
     private int totalBansProcessed = 0;
@@ -42,9 +46,7 @@ public class BanManager {
 
     public BanManager(IPDynamic plugin) {
         this.plugin = plugin;
-        this.op1BansFile = new File(plugin.getPluginDataFolder(), "data/op1-bans.json");
-        this.op2BansFile = new File(plugin.getPluginDataFolder(), "data/op2-bans.json");
-        this.singleBansFile = new File(plugin.getPluginDataFolder(), "data/single-bans.json");
+        this.storage = plugin.getStorageBackend();
 
         this.singleBans = new ConcurrentHashMap<>();
         this.op1Bans = new ConcurrentHashMap<>();
@@ -57,6 +59,7 @@ public class BanManager {
         this.cacheLock = new ReentrantReadWriteLock();
 
         ensureDataDirectory();
+        this.cacheFile = new DerivedIndexFile(new File(plugin.getPluginDataFolder(), "data/banned-ips.dat"), plugin.getLogger());
     }
 
     private void ensureDataDirectory() {
@@ -67,10 +70,16 @@ public class BanManager {
     }
 
     public void loadBans() {
+        knownBansStamp = storage.getBansStamp();
         loadSingleBans();
         loadOp1Bans();
         loadOp2Bans();
-        rebuildCache();
+        String stamp = cacheStamp();
+        if (loadCache(stamp)) {
+            savedCacheStamp = stamp;
+        } else {
+            rebuildCache();
+        }
 
         plugin.getLogger().info(plugin.getLangManager().getMessage("bans.loaded")
             .replace("{single}", String.valueOf(singleBans.size()))
@@ -79,33 +88,115 @@ public class BanManager {
     }
 
     private void loadSingleBans() {
-        Type type = JsonUtils.getTypeTokenMap(String.class, BanEntry.class);
-        Map<String, BanEntry> loaded = JsonUtils.loadData(singleBansFile, type, plugin.getLogger());
-        if (loaded != null) {
-            singleBans.putAll(loaded);
-        }
+        replace(singleBans, storage.loadBans(BanEntry.BanType.SINGLE));
     }
 
     private void loadOp1Bans() {
-        Type type = JsonUtils.getTypeTokenMap(String.class, BanEntry.class);
-        Map<String, BanEntry> loaded = JsonUtils.loadData(op1BansFile, type, plugin.getLogger());
-        if (loaded != null) {
-            op1Bans.putAll(loaded);
-        }
+        replace(op1Bans, storage.loadBans(BanEntry.BanType.OP1));
     }
 
     private void loadOp2Bans() {
-        Type type = JsonUtils.getTypeTokenMap(String.class, BanEntry.class);
-        Map<String, BanEntry> loaded = JsonUtils.loadData(op2BansFile, type, plugin.getLogger());
-        if (loaded != null) {
-            op2Bans.putAll(loaded);
+        replace(op2Bans, storage.loadBans(BanEntry.BanType.OP2));
+    }
+
+    // Los que ya no están guardados se quitan, los demás nunca faltan del mapa entre tanto
+    private static void replace(Map<String, BanEntry> bans, Map<String, BanEntry> stored) {
+        bans.keySet().retainAll(stored.keySet());
+        bans.putAll(stored);
+    }
+
+    /**
+     * Relee los baneos para /ipdy reload si cambiaron, false si no hubo que leer nada
+     */
+    public boolean reloadBans() {
+        String stamp = storage.getBansStamp();
+        if (stamp != null && stamp.equals(knownBansStamp)) return false;
+
+        String cacheBefore = cacheStamp();
+        knownBansStamp = stamp;
+        loadSingleBans();
+        loadOp1Bans();
+        loadOp2Bans();
+        if (!cacheBefore.equals(cacheStamp())) {
+            rebuildCache();
         }
+        return true;
     }
 
     public void saveBans() {
-        JsonUtils.saveData(singleBansFile, new HashMap<>(singleBans), plugin.getLogger());
-        JsonUtils.saveData(op1BansFile, new HashMap<>(op1Bans), plugin.getLogger());
-        JsonUtils.saveData(op2BansFile, new HashMap<>(op2Bans), plugin.getLogger());
+        storage.saveBans(BanEntry.BanType.SINGLE, singleBans);
+        storage.saveBans(BanEntry.BanType.OP1, op1Bans);
+        storage.saveBans(BanEntry.BanType.OP2, op2Bans);
+        knownBansStamp = storage.getBansStamp();
+        saveCache();
+    }
+
+    /**
+     * Identifica por contenido los baneos simples y OP1 de los que sale la caché, con cualquier backend
+     */
+    private String cacheStamp() {
+        List<String> singles = new ArrayList<>(singleBans.keySet());
+        List<String> ranges = new ArrayList<>(op1Bans.keySet());
+        Collections.sort(singles);
+        Collections.sort(ranges);
+
+        CRC32 crc = new CRC32();
+        for (String ip : singles) {
+            crc.update(ip.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        crc.update(0);
+        for (String pattern : ranges) {
+            crc.update(pattern.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return "bans:" + singles.size() + ":" + ranges.size() + ":" + Long.toHexString(crc.getValue());
+    }
+
+    private boolean loadCache(String stamp) {
+        List<String> ips = new ArrayList<>();
+        return cacheFile.load(stamp, new DerivedIndexFile.IndexReader() {
+            @Override
+            public void read(DataInputStream in) throws IOException {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    ips.add(in.readUTF());
+                }
+            }
+
+            @Override
+            public void apply() {
+                cacheLock.writeLock().lock();
+                try {
+                    bannedIpCache.clear();
+                    bannedIpCache.addAll(ips);
+                } finally {
+                    cacheLock.writeLock().unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Guarda la caché expandida para el próximo arranque si sus baneos cambiaron.
+     * Se expande aparte de la caché en uso, que también tiene las direcciones OP2
+     */
+    private void saveCache() {
+        String stamp = cacheStamp();
+        if (stamp.equals(savedCacheStamp)) return;
+
+        Set<String> expanded = expandCache();
+        // Un baneo añadido al expandir faltaría del conjunto, se guarda en el siguiente guardado
+        if (!stamp.equals(cacheStamp())) return;
+
+        if (cacheFile.save(stamp, out -> {
+            out.writeInt(expanded.size());
+            for (String ip : expanded) {
+                out.writeUTF(ip);
+            }
+        })) {
+            savedCacheStamp = stamp;
+        }
     }
 
 
@@ -141,8 +232,8 @@ public class BanManager {
         bannedIpCache.add(ip);
         totalBansProcessed++;
 
-        // Save to JSON file immediately
-        JsonUtils.saveData(singleBansFile, new HashMap<>(singleBans), plugin.getLogger());
+        // Se guarda al momento
+        storage.saveBan(entry, singleBans);
 
         plugin.getLogger().info(String.format("IP baneada: %s por %s", ip, entry.getBannedBy()));
         return new BanResult(true, "IP baneada exitosamente", 1);
@@ -156,8 +247,8 @@ public class BanManager {
 
         op1Bans.put(pattern, entry);
 
-        // Save to JSON file immediately
-        JsonUtils.saveData(op1BansFile, new HashMap<>(op1Bans), plugin.getLogger());
+        // Se guarda al momento
+        storage.saveBan(entry, op1Bans);
 
         List<String> ips = IPUtils.generateIpRange(pattern);
         int count = 0;
@@ -188,8 +279,8 @@ public class BanManager {
 
         op2Bans.put(pattern, entry);
 
-        // Save to JSON file immediately
-        JsonUtils.saveData(op2BansFile, new HashMap<>(op2Bans), plugin.getLogger());
+        // Se guarda al momento
+        storage.saveBan(entry, op2Bans);
 
         pendingOp2Bans.offer(entry);
 
@@ -274,8 +365,8 @@ public class BanManager {
         bannedIpCache.remove(ip);
         totalUnbansProcessed++;
 
-        // Save to JSON file immediately
-        JsonUtils.saveData(singleBansFile, new HashMap<>(singleBans), plugin.getLogger());
+        // Se guarda al momento
+        storage.deleteBan(BanEntry.BanType.SINGLE, ip, singleBans);
 
         return new UnbanResult(true, "IP desbaneada exitosamente", 1);
     }
@@ -286,8 +377,8 @@ public class BanManager {
             return new UnbanResult(false, "Patrón OP1 no está baneado");
         }
 
-        // Save to JSON file immediately
-        JsonUtils.saveData(op1BansFile, new HashMap<>(op1Bans), plugin.getLogger());
+        // Se guarda al momento
+        storage.deleteBan(BanEntry.BanType.OP1, pattern, op1Bans);
 
         pendingUnbans.offer(new UnbanRequest(pattern, BanEntry.BanType.OP1));
 
@@ -300,8 +391,8 @@ public class BanManager {
             return new UnbanResult(false, "Patrón OP2 no está baneado");
         }
 
-        // Save to JSON file immediately
-        JsonUtils.saveData(op2BansFile, new HashMap<>(op2Bans), plugin.getLogger());
+        // Se guarda al momento
+        storage.deleteBan(BanEntry.BanType.OP2, pattern, op2Bans);
 
         pendingUnbans.offer(new UnbanRequest(pattern, BanEntry.BanType.OP2));
 
@@ -410,18 +501,21 @@ public class BanManager {
         cacheLock.writeLock().lock();
         try {
             bannedIpCache.clear();
-            bannedIpCache.addAll(singleBans.keySet());
+            bannedIpCache.addAll(expandCache());
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+    }
 
+    private Set<String> expandCache() {
+        Set<String> expanded = new HashSet<>(singleBans.keySet());
 
-            for (String pattern : op1Bans.keySet()) {
-                List<String> ips = IPUtils.generateIpRange(pattern);
-                bannedIpCache.addAll(ips);
-            }
 
-
-        } finally {
-            cacheLock.writeLock().unlock();
+        for (String pattern : op1Bans.keySet()) {
+            List<String> ips = IPUtils.generateIpRange(pattern);
+            expanded.addAll(ips);
         }
+        return expanded;
     }
 
     public boolean hasPendingOp2Bans() {
@@ -14,7 +14,7 @@ public class ConfigManager {
 
     private final IPDynamic plugin;
     private final File configFile;
-    private YamlConfiguration config;
+    private volatile YamlConfiguration config;
 
     public ConfigManager(IPDynamic plugin) {
         this.plugin = plugin;
@@ -26,10 +26,10 @@ public class ConfigManager {
             saveDefaultConfig();
         }
 
-        config = YamlConfiguration.loadConfiguration(configFile);
-
-
-        addDefaultValues();
+        YamlConfiguration loaded = YamlConfiguration.loadConfiguration(configFile);
+        addDefaultValues(loaded);
+        // Se cambia entero, una recarga nunca muestra un archivo a medio leer o sin sus valores por defecto
+        config = loaded;
 
         plugin.getLogger().info(plugin.getLangManager() != null ? plugin.getLangManager().getMessage("config.loaded") : "Configuración cargada correctamente.");
     }
@@ -66,6 +66,30 @@ public class ConfigManager {
 
 
         config.set("data.max-ip-history", 50);
+        config.set("data.storage-type", "json");
+        config.set("data.compact-json", false);
+        config.set("data.player-format", "json");
+        config.set("data.save-coalesce-ms", 200);
+        config.set("data.shutdown-save-timeout-seconds", 30);
+        config.set("data.backups.enabled", true);
+        config.set("data.backups.keep-hourly", 24);
+        config.set("data.backups.keep-daily", 7);
+        config.set("data.backups.compress", false);
+        config.set("data.connection-history-size", 10000);
+        config.set("data.max-hot-players", 10000);
+        config.set("data.connection-log.enabled", true);
+        config.set("data.connection-log.segment-size-mb", 8);
+        config.set("data.connection-log.retention-days", 90);
+        config.set("data.connection-log.max-size-mb", 512);
+        config.set("data.retention.enabled", false);
+        config.set("data.retention.interval-hours", 24);
+        config.set("data.retention.slice-ms", 5);
+        config.set("data.retention.player-max-age-days", 365);
+        config.set("data.retention.player-min-connections", 3);
+        config.set("data.retention.ip-max-age-days", 180);
+        config.set("data.journal.enabled", true);
+        config.set("data.journal.sync-interval-ms", 20);
+        config.set("data.journal.max-size-mb", 16);
         config.set("data.player-data-file", "playerConnections.json");
         config.set("data.single-bans-file", "single-bans.json");
         config.set("data.op1-bans-file", "op1-bans.json");
@@ -85,6 +109,16 @@ public class ConfigManager {
         config.set("alt-detection.min-shared-ips", 1);
         config.set("alt-detection.ignore-local-ips", true);
         config.set("alt-detection.whitelist-immune", true);
+        config.set("alt-detection.similarity.min-similarity", 0.5);
+        config.set("alt-detection.subnet.enabled", false);
+        config.set("alt-detection.subnet.prefix", 24);
+        config.set("alt-detection.subnet.max-age-days", 7);
+        config.set("alt-detection.network.max-depth", 3);
+        config.set("alt-detection.network.max-fan-out", 50);
+        config.set("alt-detection.network.max-nodes", 500);
+        config.set("alt-detection.network.time-budget-ms", 250);
+        config.set("alt-detection.session-handoff.enabled", true);
+        config.set("alt-detection.session-handoff.window-seconds", 60);
 
 
         config.set("geoip.enabled", true);
@@ -97,6 +131,7 @@ public class ConfigManager {
 
         config.set("performance.async-processing", true);
         config.set("performance.thread-pool-size", 4);
+        config.set("performance.mutation-shards", 0);
         config.set("performance.cache-enabled", true);
         config.set("performance.cache-size", 10000);
 
@@ -118,33 +153,33 @@ public class ConfigManager {
         }
     }
 
-    private void addDefaultValues() {
+    private void addDefaultValues(YamlConfiguration loaded) {
         boolean modified = false;
 
 
-        if (!config.contains("general.timezone")) {
-            config.set("general.timezone", "America/Mexico_City");
+        if (!loaded.contains("general.timezone")) {
+            loaded.set("general.timezone", "America/Mexico_City");
             modified = true;
         }
 
-        if (!config.contains("performance.thread-pool-size")) {
-            config.set("performance.thread-pool-size", 4);
+        if (!loaded.contains("performance.thread-pool-size")) {
+            loaded.set("performance.thread-pool-size", 4);
             modified = true;
         }
 
-        if (!config.contains("bans.max-ips-per-cycle")) {
-            config.set("bans.max-ips-per-cycle", 1000);
+        if (!loaded.contains("bans.max-ips-per-cycle")) {
+            loaded.set("bans.max-ips-per-cycle", 1000);
             modified = true;
         }
 
-        if (!config.contains("alt-detection.whitelist-immune")) {
-            config.set("alt-detection.whitelist-immune", true);
+        if (!loaded.contains("alt-detection.whitelist-immune")) {
+            loaded.set("alt-detection.whitelist-immune", true);
             modified = true;
         }
 
         if (modified) {
             try {
-                config.save(configFile);
+                loaded.save(configFile);
                 plugin.getLogger().info("Configuración actualizada con nuevos valores.");
             } catch (IOException e) {
                 plugin.getLogger().severe("Error actualizando configuración: " + e.getMessage());
@@ -179,6 +214,102 @@ public class ConfigManager {
         return config.getInt("data.max-ip-history", 50);
     }
 
+    public int getConnectionHistorySize() {
+        return Math.max(100, config.getInt("data.connection-history-size", 10000));
+    }
+
+    public String getStorageType() {
+        return config.getString("data.storage-type", "json");
+    }
+
+    public boolean isCompactJson() {
+        return config.getBoolean("data.compact-json", false);
+    }
+
+    public String getPlayerFormat() {
+        return config.getString("data.player-format", "json");
+    }
+
+    public int getSaveCoalesceMs() {
+        return config.getInt("data.save-coalesce-ms", 200);
+    }
+
+    public int getShutdownSaveTimeoutSeconds() {
+        return config.getInt("data.shutdown-save-timeout-seconds", 30);
+    }
+
+    public boolean isBackupsEnabled() {
+        return config.getBoolean("data.backups.enabled", true);
+    }
+
+    public int getBackupKeepHourly() {
+        return config.getInt("data.backups.keep-hourly", 24);
+    }
+
+    public int getBackupKeepDaily() {
+        return config.getInt("data.backups.keep-daily", 7);
+    }
+
+    public boolean isBackupCompression() {
+        return config.getBoolean("data.backups.compress", false);
+    }
+
+    public boolean isJournalEnabled() {
+        return config.getBoolean("data.journal.enabled", true);
+    }
+
+    public int getJournalSyncIntervalMs() {
+        return Math.max(0, config.getInt("data.journal.sync-interval-ms", 20));
+    }
+
+    public int getJournalMaxSizeMb() {
+        return Math.max(1, config.getInt("data.journal.max-size-mb", 16));
+    }
+
+    public int getMaxHotPlayers() {
+        return Math.max(100, config.getInt("data.max-hot-players", 10000));
+    }
+
+    public boolean isConnectionLogEnabled() {
+        return config.getBoolean("data.connection-log.enabled", true);
+    }
+
+    public int getConnectionLogSegmentSizeMb() {
+        return Math.max(1, config.getInt("data.connection-log.segment-size-mb", 8));
+    }
+
+    public int getConnectionLogRetentionDays() {
+        return config.getInt("data.connection-log.retention-days", 90);
+    }
+
+    public int getConnectionLogMaxSizeMb() {
+        return config.getInt("data.connection-log.max-size-mb", 512);
+    }
+
+    public boolean isRetentionEnabled() {
+        return config.getBoolean("data.retention.enabled", false);
+    }
+
+    public int getRetentionIntervalHours() {
+        return Math.max(1, config.getInt("data.retention.interval-hours", 24));
+    }
+
+    public int getRetentionSliceMs() {
+        return Math.max(1, config.getInt("data.retention.slice-ms", 5));
+    }
+
+    public int getRetentionPlayerMaxAgeDays() {
+        return config.getInt("data.retention.player-max-age-days", 365);
+    }
+
+    public int getRetentionPlayerMinConnections() {
+        return config.getInt("data.retention.player-min-connections", 3);
+    }
+
+    public int getRetentionIpMaxAgeDays() {
+        return config.getInt("data.retention.ip-max-age-days", 180);
+    }
+
     public String getPlayerDataFileName() {
         return config.getString("data.player-data-file", "playerConnections.json");
     }
@@ -242,6 +373,46 @@ public class ConfigManager {
         return config.getBoolean("alt-detection.whitelist-immune", true);
     }
 
+    public double getSimilarityThreshold() {
+        return config.getDouble("alt-detection.similarity.min-similarity", 0.5);
+    }
+
+    public boolean isSubnetAltDetectionEnabled() {
+        return config.getBoolean("alt-detection.subnet.enabled", false);
+    }
+
+    public int getSubnetAltPrefix() {
+        return config.getInt("alt-detection.subnet.prefix", 24) == 16 ? 16 : 24;
+    }
+
+    public int getSubnetAltMaxAgeDays() {
+        return config.getInt("alt-detection.subnet.max-age-days", 7);
+    }
+
+    public int getAltNetworkMaxDepth() {
+        return config.getInt("alt-detection.network.max-depth", 3);
+    }
+
+    public int getAltNetworkMaxFanOut() {
+        return config.getInt("alt-detection.network.max-fan-out", 50);
+    }
+
+    public int getAltNetworkMaxNodes() {
+        return config.getInt("alt-detection.network.max-nodes", 500);
+    }
+
+    public long getAltNetworkTimeBudgetMs() {
+        return config.getLong("alt-detection.network.time-budget-ms", 250);
+    }
+
+    public boolean isSessionHandoffEnabled() {
+        return config.getBoolean("alt-detection.session-handoff.enabled", true);
+    }
+
+    public int getSessionHandoffWindowSeconds() {
+        return Math.max(0, config.getInt("alt-detection.session-handoff.window-seconds", 60));
+    }
+
 
     public boolean isGeoIpEnabled() {
         return config.getBoolean("geoip.enabled", true);
@@ -276,6 +447,10 @@ public class ConfigManager {
         return config.getInt("performance.thread-pool-size", 4);
     }
 
+    public int getMutationShards() {
+        return Math.max(0, config.getInt("performance.mutation-shards", 0));
+    }
+
     public boolean isCacheEnabled() {
         return config.getBoolean("performance.cache-enabled", true);
     }
@@ -1,6 +1,7 @@
 package me.lssupportteam.ipdynamic.managers;
 
 import me.lssupportteam.ipdynamic.IPDynamic;
+import me.lssupportteam.ipdynamic.storage.JsonStorageBackend;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -40,6 +41,7 @@ public class ConfigMigrator {
         migrateWebhookConfig();
         migrateLangFiles();
         migrateAddonConfigs();
+        migratePlayerData();
 
         plugin.getLogger().info("✅ Verificación de configuraciones completada");
     }
@@ -193,6 +195,55 @@ public class ConfigMigrator {
         }
     }
 
+    /**
+     * Convierte playerConnections.json a players.dat si el formato binario está configurado,
+     * antes de abrir el almacenamiento, que es dueño de los archivos
+     */
+    private void migratePlayerData() {
+        if (plugin.getStorageBackend() != null) return;
+
+        File configFile = new File(plugin.getDataFolder(), "config.yml");
+        if (!configFile.exists()) return;
+
+        FileConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+        if (!"json".equalsIgnoreCase(config.getString("data.storage-type", "json"))
+            || !"binary".equalsIgnoreCase(config.getString("data.player-format", "json"))) {
+            return;
+        }
+
+        File dataDir = new File(plugin.getDataFolder(), "data");
+        JsonStorageBackend storage = new JsonStorageBackend(dataDir, true, null, plugin.getLogger());
+        File jsonFile = storage.getPlayerConnectionsFile();
+        File binaryFile = storage.getPlayersFile();
+
+        // Un JSON más nuevo que players.dat se escribió tras volver al formato JSON
+        if (!jsonFile.exists() || (binaryFile.exists() && binaryFile.lastModified() >= jsonFile.lastModified())) {
+            return;
+        }
+
+        try {
+            plugin.getLogger().info("🔧 Convirtiendo " + jsonFile.getName() + " al formato binario...");
+            long start = System.currentTimeMillis();
+            int converted = storage.convertPlayersToBinary();
+            if (converted < 0) {
+                plugin.getLogger().warning("⚠️ No se pudo convertir " + jsonFile.getName() + ", se seguirá usando el JSON");
+                return;
+            }
+
+            // Sin copia el JSON es lo único que queda de los datos antes de convertir
+            if (!createBackup(jsonFile, jsonFile.getName())) {
+                plugin.getLogger().warning("⚠️ No se pudo respaldar " + jsonFile.getName() + ", se conservará junto a "
+                    + binaryFile.getName());
+            } else if (!jsonFile.delete()) {
+                plugin.getLogger().warning("No se pudo eliminar " + jsonFile.getName() + " tras convertirlo");
+            }
+            plugin.getLogger().info("✅ " + converted + " jugadores convertidos a " + binaryFile.getName()
+                + " en " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Error convirtiendo " + jsonFile.getName(), e);
+        }
+    }
+
     /**
      * Checks if a configuration file needs migration
      */
@@ -286,7 +337,7 @@ public class ConfigMigrator {
     /**
      * Creates a backup of the configuration file before migration
      */
-    private void createBackup(File originalFile, String fileName) {
+    private boolean createBackup(File originalFile, String fileName) {
         try {
             File backupDir = new File(plugin.getDataFolder(), "backups");
             if (!backupDir.exists()) {
@@ -294,14 +345,19 @@ public class ConfigMigrator {
             }
 
             String timestamp = dateFormat.format(new Date());
-            String backupName = fileName.replace(".yml", "_" + timestamp + ".yml.backup");
+            int dot = fileName.lastIndexOf('.');
+            String backupName = dot > 0
+                ? fileName.substring(0, dot) + "_" + timestamp + fileName.substring(dot) + ".backup"
+                : fileName + "_" + timestamp + ".backup";
             File backupFile = new File(backupDir, backupName);
 
             Files.copy(originalFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             plugin.getLogger().info("💾 Backup creado: " + backupName);
+            return true;
 
         } catch (IOException e) {
             plugin.getLogger().log(Level.WARNING, "Error creando backup de " + fileName, e);
+            return false;
         }
     }
 }
\ No newline at end of file
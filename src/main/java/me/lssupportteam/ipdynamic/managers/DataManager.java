@@ -1,42 +1,107 @@
 package me.lssupportteam.ipdynamic.managers;
 
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import me.lssupportteam.ipdynamic.IPDynamic;
+import me.lssupportteam.ipdynamic.index.AltNetworkResolver;
+import me.lssupportteam.ipdynamic.index.SessionIntervalIndex;
+import me.lssupportteam.ipdynamic.index.SubnetPrefixIndex;
+import me.lssupportteam.ipdynamic.index.SubnetSimilarityIndex;
+import me.lssupportteam.ipdynamic.index.UsernameIndex;
 import me.lssupportteam.ipdynamic.models.GeoLocation;
+import me.lssupportteam.ipdynamic.models.GeoLocationPool;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
+import me.lssupportteam.ipdynamic.models.IpStats;
 import me.lssupportteam.ipdynamic.models.PlayerData;
+import me.lssupportteam.ipdynamic.storage.ChangeTracker;
+import me.lssupportteam.ipdynamic.storage.ConnectionRingBuffer;
+import me.lssupportteam.ipdynamic.storage.DerivedIndexFile;
+import me.lssupportteam.ipdynamic.storage.MutationJournal;
+import me.lssupportteam.ipdynamic.storage.PlayerMutationShards;
+import me.lssupportteam.ipdynamic.storage.SegmentedConnectionLog;
+import me.lssupportteam.ipdynamic.storage.StorageBackend;
+import me.lssupportteam.ipdynamic.storage.TieredPlayerStore;
 import me.lssupportteam.ipdynamic.utils.IPUtils;
 import me.lssupportteam.ipdynamic.utils.JsonUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 public class DataManager {
 
+    // Ubicaciones y textos compartidos como máximo, los demás se leen sin compartir
+    private static final int LOCATION_POOL_SIZE = 65_536;
+    private static final long CHECKPOINT_FLUSH_TIMEOUT_MS = 5000;
+    // Redes de alts memorizadas, se descartan las menos consultadas
+    private static final int ALT_NETWORK_CACHE_SIZE = 256;
+
     private final IPDynamic plugin;
 
 
-    private final File playerConnectionsFile;
-    private final File playerRegisterFile;
-    private final File playerDisconnectFile;
+    private final StorageBackend storage;
     private final File adminLoginFile;
+    private final File ipMetadataFile;
+    private final DerivedIndexFile ipIndexFile; // IP -> jugadores y caché de alts, válido para una generación de los jugadores
 
 
-    private final ConcurrentHashMap<UUID, PlayerData> playerDataMap;
+    private final TieredPlayerStore playerStore;
+    private final PlayerMutationShards mutations; // Cada cambio de un PlayerData va al shard de su UUID
+    private final Set<UUID> changedPlayers; // Modificados desde el último guardado
+    private final Set<UUID> removedPlayers; // Eliminados por retención desde el último guardado
     private final ConcurrentHashMap<String, Set<UUID>> ipToPlayersMap; // IP -> Set de UUIDs
+    private final IpMetadataTable ipTable; // Geolocalización y contadores por IP, referenciada por los PlayerData
+    private long savedLocationVersion; // Solo lo tocan cargas y guardados
+    // Sellos de lo guardado en la última carga o guardado, /ipdy reload solo relee lo que ya no coincide
+    private volatile String knownPlayersStamp;
+    private String knownAdminLoginStamp; // Solo lo tocan cargas y guardados
+    private String knownIpMetadataStamp; // Solo lo tocan cargas y guardados
     private final ConcurrentHashMap<UUID, ConnectionInfo> activeConnections;
-    private final List<ConnectionLog> connectionHistory;
+    private final ConnectionRingBuffer connectionHistory;
+    private final SegmentedConnectionLog connectionLog; // null si está deshabilitado
+    private final MutationJournal journal; // null si está deshabilitado
     private final List<AdminLoginLog> adminLoginHistory;
+    private final ChangeTracker fileChanges;
 
 
     private final ConcurrentHashMap<String, List<UUID>> altAccountsCache;
+    private final SubnetSimilarityIndex subnetSimilarityIndex;
+    private final SubnetPrefixIndex subnetPrefixIndex;
+    private final AltNetworkResolver altNetworkResolver;
+    private final SessionIntervalIndex sessionIntervalIndex;
+    private final ConcurrentHashMap<UUID, Set<UUID>> sessionHandoffPairs; // Cuentas con un relevo de sesión entre ellas
+    private final AtomicInteger sessionHandoffs;
+    private final UsernameIndex usernameIndex;
+
+    private final AtomicLong indexChanges; // Crece con cada cambio del índice de IPs o de la caché de alts
+    private volatile long savedIndexVersion = -1; // Versión del índice que coincide con los jugadores guardados, -1 si no se sabe
+    private volatile boolean ipIndexFileCurrent; // Si el índice en disco coincide con los jugadores guardados
+    private final CompletableFuture<Void> firstLoad; // Termina al acabar la primera carga, bien o mal
+    private final Object eventLock = new Object();
+    private CompletableFuture<Void> queuedEvents; // Eventos llegados durante la primera carga, en orden. Protegido por eventLock
+    private volatile boolean loaded; // No se guarda hasta cargar bien, se escribiría un conjunto parcial
+
+    private final AtomicBoolean retentionRunning;
+    private RetentionPass retentionPass; // Protegido por retentionRunning
+    private long nextRetentionAt;
+    private volatile RetentionReport pendingRetentionReport; // Espera al guardado que lo escribe
+    private volatile RetentionReport lastRetentionReport;
 
     public DataManager(IPDynamic plugin) {
         this.plugin = plugin;
@@ -47,170 +112,708 @@ public class DataManager {
             dataDir.mkdirs();
         }
 
-        this.playerConnectionsFile = new File(dataDir, "playerConnections.json");
-        this.playerRegisterFile = new File(dataDir, "player-register.json");
-        this.playerDisconnectFile = new File(dataDir, "player-disconnect.json");
+        this.storage = plugin.getStorageBackend();
         this.adminLoginFile = new File(dataDir, "admin-login.json");
-
-
-        this.playerDataMap = new ConcurrentHashMap<>();
+        this.ipMetadataFile = new File(dataDir, "ip-metadata.json");
+        this.ipIndexFile = new DerivedIndexFile(new File(dataDir, "ip-index.dat"), plugin.getLogger());
+
+
+        this.ipTable = new IpMetadataTable(new GeoLocationPool(LOCATION_POOL_SIZE, LOCATION_POOL_SIZE));
+        this.playerStore = new TieredPlayerStore(new File(dataDir, "player-cache.dat"),
+            plugin.getConfigManager().getMaxHotPlayers(), JsonUtils.getPlayerGson(ipTable), plugin.getLogger());
+        try {
+            playerStore.open();
+        } catch (IOException e) {
+            // Sin archivo de volcado todos los jugadores se quedan en memoria
+            plugin.getLogger().log(Level.SEVERE, "No se pudo abrir el almacenamiento de jugadores inactivos", e);
+        }
+        this.mutations = new PlayerMutationShards(plugin.getConfigManager().getMutationShards(), plugin.getLogger());
+        mutations.start();
+        this.changedPlayers = ConcurrentHashMap.newKeySet();
+        this.removedPlayers = ConcurrentHashMap.newKeySet();
         this.ipToPlayersMap = new ConcurrentHashMap<>();
         this.activeConnections = new ConcurrentHashMap<>();
-        this.connectionHistory = Collections.synchronizedList(new ArrayList<>());
+        this.connectionHistory = new ConnectionRingBuffer(plugin.getConfigManager().getConnectionHistorySize());
         this.adminLoginHistory = Collections.synchronizedList(new ArrayList<>());
+        this.fileChanges = new ChangeTracker();
         this.altAccountsCache = new ConcurrentHashMap<>();
+        this.subnetSimilarityIndex = new SubnetSimilarityIndex();
+        this.subnetPrefixIndex = new SubnetPrefixIndex();
+        this.altNetworkResolver = new AltNetworkResolver(this::getIpsOfPlayer, ipToPlayersMap::get, ALT_NETWORK_CACHE_SIZE);
+        // Las sesiones cerradas se guardan lo que dura la ventana de relevo
+        this.sessionIntervalIndex = new SessionIntervalIndex(
+            () -> TimeUnit.SECONDS.toMillis(plugin.getConfigManager().getSessionHandoffWindowSeconds()));
+        this.sessionHandoffPairs = new ConcurrentHashMap<>();
+        this.sessionHandoffs = new AtomicInteger();
+        this.usernameIndex = new UsernameIndex();
+        this.indexChanges = new AtomicLong();
+        this.firstLoad = new CompletableFuture<>();
+        this.queuedEvents = firstLoad;
+        this.retentionRunning = new AtomicBoolean();
+        this.nextRetentionAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(5);
+        this.connectionLog = openConnectionLog(new File(dataDir, "connection-log"));
+        this.journal = openJournal(new File(dataDir, "journal"));
+    }
+
+    private MutationJournal openJournal(File directory) {
+        if (!plugin.getConfigManager().isJournalEnabled()) return null;
+
+        long maxBytes = plugin.getConfigManager().getJournalMaxSizeMb() * 1024L * 1024L;
+        // Un diario lleno adelanta el guardado, que lo cierra y empieza otro
+        MutationJournal journal = new MutationJournal(directory, plugin.getConfigManager().getJournalSyncIntervalMs(),
+            maxBytes, plugin::saveAllData, plugin.getLogger());
+        try {
+            journal.open();
+            return journal;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "No se pudo abrir el diario de cambios", e);
+            return null;
+        }
+    }
+
+    private SegmentedConnectionLog openConnectionLog(File directory) {
+        if (!plugin.getConfigManager().isConnectionLogEnabled()) return null;
+
+        long segmentBytes = plugin.getConfigManager().getConnectionLogSegmentSizeMb() * 1024L * 1024L;
+        SegmentedConnectionLog log = new SegmentedConnectionLog(directory, segmentBytes, plugin.getLogger());
+        try {
+            log.open();
+            return log;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "No se pudo abrir el registro de conexiones", e);
+            return null;
+        }
     }
 
+    /**
+     * Carga todos los jugadores y rehace los índices. Al arrancar va en segundo plano,
+     * logins y guardados esperan a que acabe
+     */
     public void loadAllData() {
-        loadPlayerData();
-        loadConnectionHistory();
-        loadAdminLogins();
-        rebuildCaches();
+        try {
+            ipTable.setHubThreshold(plugin.getConfigManager().getAltNetworkMaxFanOut());
+            loadConnectionHistory();
+            // Antes que los jugadores, la ubicación guardada en un jugador solo rellena IPs sin ella
+            loadIpMetadata();
+            // Antes de leer los jugadores, el índice guardado de esta generación es el que forman
+            String playersStamp = storage.getPlayersStamp();
+            boolean indexed = loadIpIndex(playersStamp);
+            loadPlayerData(indexed);
+            loadAdminLogins();
+            if (!indexed) {
+                rebuildCaches();
+            }
+            ipIndexFileCurrent = indexed;
+            savedIndexVersion = indexChanges.get();
+            knownPlayersStamp = playersStamp;
+            replayJournal();
+            loaded = true;
+        } finally {
+            firstLoad.complete(null);
+        }
 
         plugin.getLogger().info(plugin.getLangManager().getMessage("data.loaded")
-            .replace("{players}", String.valueOf(playerDataMap.size()))
+            .replace("{players}", String.valueOf(playerStore.size()))
             .replace("{ips}", String.valueOf(ipToPlayersMap.size()))
             .replace("{connections}", String.valueOf(connectionHistory.size())));
+        // Los índices de alts guardan a todos los jugadores, también los que están fuera de max-hot-players
+        plugin.getLogger().info(String.format(
+            "Índices de alts en memoria: ~%d KB para %d jugadores (similitud %d KB, subredes %d KB, nombres %d KB), " +
+            "aparte de los %d registros de max-hot-players",
+            getAltIndexBytes() / 1024, playerStore.size(), subnetSimilarityIndex.getEstimatedBytes() / 1024,
+            subnetPrefixIndex.getEstimatedBytes() / 1024, usernameIndex.getEstimatedBytes() / 1024,
+            plugin.getConfigManager().getMaxHotPlayers()));
     }
 
-    private void loadPlayerData() {
-        Type type = JsonUtils.getTypeTokenMap(UUID.class, PlayerData.class);
-        Map<UUID, PlayerData> loaded = JsonUtils.loadData(playerConnectionsFile, type, plugin.getLogger());
-
-        if (loaded != null) {
-            loaded.forEach((uuid, data) -> {
+    /**
+     * Memoria aproximada de los índices que cubren a todos los jugadores, residentes o no
+     */
+    public long getAltIndexBytes() {
+        return subnetSimilarityIndex.getEstimatedBytes() + subnetPrefixIndex.getEstimatedBytes()
+            + usernameIndex.getEstimatedBytes();
+    }
 
-                if (data.getUuid() == null) data.setUuid(uuid);
-                if (data.getIpHistory() == null) data.setIpHistory(new ArrayList<>());
-                if (data.getIpTimestamps() == null) data.setIpTimestamps(new HashMap<>());
-                if (data.getLinkedAccounts() == null) data.setLinkedAccounts(new ArrayList<>());
+    /**
+     * Termina al acabar la primera carga, bien o mal
+     */
+    public CompletableFuture<Void> whenLoaded() {
+        return firstLoad;
+    }
 
-                playerDataMap.put(uuid, data);
+    /**
+     * Ejecuta un evento de conexión tras la primera carga. Los que llegan durante la carga
+     * esperan en orden sin ocupar un hilo
+     */
+    public CompletableFuture<Void> runAfterLoad(Runnable event) {
+        synchronized (eventLock) {
+            if (queuedEvents.isDone()) {
+                return CompletableFuture.runAsync(event, plugin.getExecutorService());
+            }
+            // Un evento fallido no debe parar a los que esperan detrás
+            queuedEvents = queuedEvents.handle((ignored, error) -> null)
+                .thenRunAsync(event, plugin.getExecutorService());
+            return queuedEvents;
+        }
+    }
 
+    public boolean isLoaded() {
+        return loaded;
+    }
 
-                for (String ip : data.getIpHistory()) {
-                    ipToPlayersMap.computeIfAbsent(ip, k -> ConcurrentHashMap.newKeySet()).add(uuid);
+    /**
+     * Carga el índice de IPs y la caché de alts del último apagado si los jugadores no cambiaron.
+     * Devuelve false si hay que rehacerlos
+     */
+    private boolean loadIpIndex(String stamp) {
+        Map<String, UUID[]> players = new HashMap<>();
+        Map<String, List<UUID>> alts = new HashMap<>();
+
+        boolean loadedIndex = ipIndexFile.load(stamp, new DerivedIndexFile.IndexReader() {
+            @Override
+            public void read(DataInputStream in) throws IOException {
+                int ipCount = in.readInt();
+                for (int i = 0; i < ipCount; i++) {
+                    String ip = in.readUTF();
+                    players.put(ip, readUuids(in, in.readInt()));
                 }
-            });
+                int altCount = in.readInt();
+                for (int i = 0; i < altCount; i++) {
+                    String owner = in.readUTF();
+                    alts.put(owner, new ArrayList<>(Arrays.asList(readUuids(in, in.readInt()))));
+                }
+            }
+
+            @Override
+            public void apply() {
+                players.forEach((ip, uuids) -> {
+                    IpMetadataTable.Entry entry = ipTable.intern(ip);
+                    Set<UUID> set = ConcurrentHashMap.newKeySet(uuids.length);
+                    Collections.addAll(set, uuids);
+                    ipToPlayersMap.put(entry.getIp(), set);
+                    entry.setAccounts(set.size());
+                });
+                altAccountsCache.putAll(alts);
+            }
+        });
+
+        if (loadedIndex && plugin.getConfigManager().isDebugMode()) {
+            plugin.getLogger().info("Índice de IPs reutilizado: " + players.size() + " IPs, " + alts.size() + " alts");
+        }
+        return loadedIndex;
+    }
+
+    private static UUID[] readUuids(DataInputStream in, int count) throws IOException {
+        UUID[] uuids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            uuids[i] = new UUID(in.readLong(), in.readLong());
+        }
+        return uuids;
+    }
+
+    private static void writeUuids(DataOutputStream out, Collection<UUID> uuids) throws IOException {
+        // Los sets pueden cambiar mientras se escriben, se cuenta la copia escrita
+        UUID[] copy = uuids.toArray(new UUID[0]);
+        out.writeInt(copy.length);
+        for (UUID uuid : copy) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * Guarda el índice de IPs y la caché de alts para el próximo arranque, si coinciden
+     * con los jugadores guardados
+     */
+    private void saveIpIndex() {
+        if (!loaded || ipIndexFileCurrent) return;
+        long version = savedIndexVersion;
+        if (version != indexChanges.get() || !changedPlayers.isEmpty() || !removedPlayers.isEmpty()) return;
+
+        String stamp = storage.getPlayersStamp();
+        if (stamp == null) return;
+
+        boolean saved = ipIndexFile.save(stamp, out -> {
+            Map<String, Set<UUID>> players = new HashMap<>(ipToPlayersMap);
+            out.writeInt(players.size());
+            for (Map.Entry<String, Set<UUID>> entry : players.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeUuids(out, entry.getValue());
+            }
+            Map<String, List<UUID>> alts = new HashMap<>(altAccountsCache);
+            out.writeInt(alts.size());
+            for (Map.Entry<String, List<UUID>> entry : alts.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeUuids(out, entry.getValue());
+            }
+        });
+
+        if (saved && version != indexChanges.get()) {
+            // Cambió mientras se escribía, el próximo arranque lo rehace
+            ipIndexFile.invalidate();
+            return;
         }
+        ipIndexFileCurrent = saved;
+    }
+
+    private void loadPlayerData(boolean indexed) {
+        Map<UUID, Map<String, IpStats>> historyStats = new HashMap<>();
+        boolean[] historyCounted = new boolean[1];
+
+        storage.loadPlayers(ipTable, (uuid, data) -> {
+
+            if (data.getUuid() == null) data.setUuid(uuid);
+            if (data.getIpHistory() == null) data.setIpHistory(new ArrayList<>());
+            if (data.getIpTimestamps() == null) data.setIpTimestamps(new HashMap<>());
+            if (data.getIpStats() == null) data.setIpStats(new HashMap<>());
+            if (data.getLinkedAccounts() == null) data.setLinkedAccounts(new ArrayList<>());
+
+            // Jugadores guardados antes de los contadores por IP, salen del historial
+            if (data.getIpStats().isEmpty() && !data.getIpHistory().isEmpty()) {
+                if (!historyCounted[0]) {
+                    countHistoryByPlayer(historyStats);
+                    historyCounted[0] = true;
+                }
+                Map<String, IpStats> counted = historyStats.get(uuid);
+                if (counted != null) {
+                    counted.keySet().retainAll(data.getIpHistory());
+                    data.setIpStats(new HashMap<>(counted));
+                }
+            }
+
+            usernameIndex.put(uuid, data.getUsername());
+
+
+            for (String ip : data.getIpHistory()) {
+                // Solo la IP actual tiene última vez conocida, las demás usan la primera
+                long seen = ip.equals(data.getLastIp()) ? data.getLastLogin() : data.getIpFirstSeen(ip);
+                if (indexed) {
+                    // Los jugadores por IP vienen del índice guardado, el resto no se guarda
+                    ipTable.intern(ip).recordSeen(seen);
+                    indexSubnets(uuid, ip, seen);
+                } else {
+                    indexPlayerIp(uuid, ip, seen);
+                }
+            }
+
+            // Pasado el límite de la capa caliente va directo a disco
+            playerStore.put(uuid, data);
+        });
     }
 
     private void loadConnectionHistory() {
-        Type type = new TypeToken<List<ConnectionLog>>(){}.getType();
-        List<ConnectionLog> loaded = JsonUtils.loadData(playerRegisterFile, type, plugin.getLogger());
+        connectionHistory.clear();
+        storage.loadConnections(connectionHistory);
+    }
 
-        if (loaded != null) {
-            connectionHistory.addAll(loaded);
+    /**
+     * Relee para /ipdy reload solo lo que cambió en disco, reemplazando lo que hay en memoria.
+     * Va en el hilo de guardado tras las escrituras pendientes, ningún guardado se mezcla
+     */
+    public List<String> reloadChangedData() {
+        List<String> reread = new ArrayList<>();
+        if (!loaded) return reread;
+
+        String playersStamp = storage.getPlayersStamp();
+        if (playersStamp == null || !playersStamp.equals(knownPlayersStamp)) {
+            reloadPlayers(playersStamp);
+            reread.add("jugadores");
+        }
+        if (!JsonUtils.fileStamp(adminLoginFile).equals(knownAdminLoginStamp)) {
+            loadAdminLogins();
+            reread.add(adminLoginFile.getName());
+        }
+        if (!JsonUtils.fileStamp(ipMetadataFile).equals(knownIpMetadataStamp)) {
+            loadIpMetadata();
+            reread.add(ipMetadataFile.getName());
+        }
+        return reread;
+    }
+
+    /**
+     * Reemplaza los jugadores y todo lo derivado por lo guardado, los cambios sin guardar se pierden
+     */
+    private void reloadPlayers(String playersStamp) {
+        mutations.flush(TimeUnit.SECONDS.toMillis(5));
+
+        changedPlayers.clear();
+        removedPlayers.clear();
+        playerStore.clear();
+        usernameIndex.clear();
+        ipToPlayersMap.clear();
+        altAccountsCache.clear();
+        sessionHandoffPairs.clear();
+        sessionHandoffs.set(0);
+        altNetworkResolver.clear();
+        subnetSimilarityIndex.clear();
+        subnetPrefixIndex.clear();
+        // Las ubicaciones nuevas se escriben antes, se releen con el resto
+        saveIpMetadata();
+        ipTable.clear();
+        loadIpMetadata();
+        indexChanges.incrementAndGet();
+        ipIndexFile.invalidate();
+        ipIndexFileCurrent = false;
+
+        loadPlayerData(false);
+        rebuildCaches();
+        savedIndexVersion = indexChanges.get();
+        knownPlayersStamp = playersStamp;
+    }
+
+    /**
+     * Vuelve a aplicar las conexiones del diario posteriores al último guardado,
+     * las que ya están guardadas se saltan
+     */
+    private void replayJournal() {
+        if (journal == null) return;
+
+        long[] newestSaved = new long[1];
+        connectionHistory.forEach((type, player, ip, timestamp, duration) ->
+            newestSaved[0] = Math.max(newestSaved[0], timestamp));
+
+        int replayed = journal.replay(new MutationJournal.RecordVisitor() {
+            @Override
+            public void connect(UUID uuid, String username, String ip, long timestamp, boolean admin) {
+                mutations.submit(uuid, () -> applyConnection(uuid, username, ip, timestamp, admin, false)).join();
+            }
+
+            @Override
+            public void disconnect(UUID uuid, String ip, long timestamp, long duration) {
+                if (timestamp <= newestSaved[0]) return;
+
+                connectionHistory.append(ConnectionRingBuffer.DISCONNECT, uuid, ip, timestamp, duration);
+                storage.appendConnection(ConnectionRingBuffer.DISCONNECT, uuid, ip, timestamp, duration);
+            }
+        });
+
+        if (replayed > 0) {
+            plugin.getLogger().info("Cambios recuperados del diario tras un cierre inesperado: " + replayed);
         }
     }
 
+    private void countHistoryByPlayer(Map<UUID, Map<String, IpStats>> into) {
+        connectionHistory.forEach((type, player, ip, timestamp, duration) -> {
+            if (type != ConnectionRingBuffer.CONNECT) return;
+
+            into.computeIfAbsent(player, k -> new HashMap<>())
+                .computeIfAbsent(ip, k -> new IpStats())
+                .recordConnection(timestamp);
+        });
+    }
+
+    private void loadIpMetadata() {
+        TypeAdapter<GeoLocation> adapter = JsonUtils.getGson().getAdapter(GeoLocation.class);
+        JsonUtils.loadStreaming(ipMetadataFile, reader -> {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String ip = reader.nextName();
+                GeoLocation location = adapter.read(reader);
+                if (location != null) {
+                    ipTable.intern(ip).setGeoLocation(location);
+                }
+            }
+            reader.endObject();
+        }, plugin.getLogger());
+
+        savedLocationVersion = ipTable.getLocationVersion();
+        knownIpMetadataStamp = JsonUtils.fileStamp(ipMetadataFile);
+    }
+
     private void loadAdminLogins() {
-        Type type = new TypeToken<List<AdminLoginLog>>(){}.getType();
-        List<AdminLoginLog> loaded = JsonUtils.loadData(adminLoginFile, type, plugin.getLogger());
+        String stamp = JsonUtils.fileStamp(adminLoginFile);
+        List<AdminLoginLog> loaded = new ArrayList<>();
+        boolean read = JsonUtils.loadStreaming(adminLoginFile, reader -> {
+            loaded.clear();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                AdminLoginLog log = AdminLoginLog.read(reader);
+                if (log.uuid != null) {
+                    loaded.add(log);
+                }
+            }
+            reader.endArray();
+        }, plugin.getLogger());
 
-        if (loaded != null) {
-            adminLoginHistory.addAll(loaded);
+        if (read) {
+            synchronized (adminLoginHistory) {
+                adminLoginHistory.clear();
+                adminLoginHistory.addAll(loaded);
+            }
         }
+        knownAdminLoginStamp = stamp;
     }
 
     public void saveAllData() {
-        savePlayerData();
+        if (!loaded) return;
+
+        // Lo que llegue desde aquí va a un diario nuevo
+        long checkpoint = journal != null ? journal.beginCheckpoint() : -1;
+        // El diario viejo puede tener cambios aún en cola en un shard, se aplican antes de
+        // vaciar los jugadores o se conserva el archivo
+        boolean applied = journal == null || mutations.flush(CHECKPOINT_FLUSH_TIMEOUT_MS);
+        // Antes de vaciar los jugadores, un cambio posterior del índice llega con uno de jugador
+        long indexVersion = indexChanges.get();
+
+        sessionIntervalIndex.prune(System.currentTimeMillis());
+        maintainConnectionLog();
+        boolean saved = savePlayerData();
+        playerStore.compactIfNeeded();
         saveConnectionHistory();
-        saveAdminLogins();
+        saved &= saveAdminLogins();
+        saved &= saveIpMetadata();
+
+        if (saved && applied && journal != null) {
+            journal.completeCheckpoint(checkpoint);
+        }
+        savedIndexVersion = saved ? indexVersion : -1;
+
+        RetentionReport report = pendingRetentionReport;
+        if (report != null && saved) {
+            pendingRetentionReport = null;
+            report.freedDiskBytes = report.diskBytesBefore - storage.getPlayersDiskSize();
+            logRetention(report);
+        }
     }
 
-    private void savePlayerData() {
-        Map<UUID, PlayerData> dataToSave = new HashMap<>(playerDataMap);
-        JsonUtils.saveData(playerConnectionsFile, dataToSave, plugin.getLogger());
+    private void maintainConnectionLog() {
+        if (connectionLog == null) return;
+
+        connectionLog.flush();
+        long maxAgeMs = TimeUnit.DAYS.toMillis(plugin.getConfigManager().getConnectionLogRetentionDays());
+        long maxBytes = plugin.getConfigManager().getConnectionLogMaxSizeMb() * 1024L * 1024L;
+        int deleted = connectionLog.applyRetention(maxAgeMs, maxBytes, System.currentTimeMillis());
+
+        if (deleted > 0 && plugin.getConfigManager().isDebugMode()) {
+            plugin.getLogger().info("Segmentos del registro de conexiones eliminados por retención: " + deleted);
+        }
     }
 
-    private void saveConnectionHistory() {
+    /**
+     * Espera a los cambios en cola para que el último guardado los incluya
+     */
+    public boolean flushPendingChanges(long timeoutMs) {
+        return mutations.flush(timeoutMs);
+    }
 
-        List<ConnectionLog> toSave = connectionHistory;
-        if (connectionHistory.size() > 10000) {
-            toSave = connectionHistory.subList(connectionHistory.size() - 10000, connectionHistory.size());
+    /**
+     * Cierra el diario y el registro de conexiones, una vez al apagar tras el último guardado
+     */
+    public void shutdown() {
+        mutations.close(TimeUnit.SECONDS.toMillis(5));
+        saveIpIndex();
+        if (journal != null) {
+            journal.close();
         }
-        JsonUtils.saveData(playerRegisterFile, toSave, plugin.getLogger());
+        if (connectionLog != null) {
+            connectionLog.close();
+        }
+        playerStore.close();
+    }
 
+    private boolean savePlayerData() {
+        List<UUID> drained = new ArrayList<>();
+        List<PlayerData> changed = new ArrayList<>();
+        List<UUID> removed = new ArrayList<>();
 
-        List<ConnectionLog> disconnections = connectionHistory.stream()
-            .filter(log -> log.type == ConnectionLog.Type.DISCONNECT)
-            .collect(Collectors.toList());
+        for (Iterator<UUID> it = removedPlayers.iterator(); it.hasNext(); ) {
+            removed.add(it.next());
+            it.remove();
+        }
+
+        // Se quita antes de leer el registro, un cambio entre tanto lo vuelve a marcar
+        for (Iterator<UUID> it = changedPlayers.iterator(); it.hasNext(); ) {
+            UUID uuid = it.next();
+            it.remove();
+            drained.add(uuid);
+
+            PlayerData data = playerStore.peek(uuid);
+            if (data != null) {
+                changed.add(data);
+            }
+        }
+
+        if (ipIndexFileCurrent && (!changed.isEmpty() || !removed.isEmpty())) {
+            // El índice guardado solo coincide con los jugadores tal como están ahora
+            ipIndexFile.invalidate();
+            ipIndexFileCurrent = false;
+        }
 
-        if (disconnections.size() > 5000) {
-            disconnections = disconnections.subList(disconnections.size() - 5000, disconnections.size());
+        if (!storage.savePlayers(playerStore, changed, removed)) {
+            // Se reintenta en el siguiente guardado
+            changedPlayers.addAll(drained);
+            removedPlayers.addAll(removed);
+            return false;
+        }
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            knownPlayersStamp = storage.getPlayersStamp();
         }
-        JsonUtils.saveData(playerDisconnectFile, disconnections, plugin.getLogger());
+        return true;
+    }
+
+    private void markChanged(UUID uuid) {
+        changedPlayers.add(uuid);
+    }
+
+    private void saveConnectionHistory() {
+        storage.saveConnections(connectionHistory, uuid -> {
+            PlayerData data = playerStore.peek(uuid);
+            return data != null ? data.getUsername() : null;
+        });
     }
 
-    private void saveAdminLogins() {
-        List<AdminLoginLog> toSave = adminLoginHistory;
-        if (adminLoginHistory.size() > 5000) {
-            toSave = adminLoginHistory.subList(adminLoginHistory.size() - 5000, adminLoginHistory.size());
+    private boolean saveAdminLogins() {
+        String key = adminLoginFile.getName();
+        if (!fileChanges.isDirty(key)) return true;
+        long version = fileChanges.getVersion(key);
+
+        List<AdminLoginLog> toSave;
+        synchronized (adminLoginHistory) {
+            int from = Math.max(0, adminLoginHistory.size() - 5000);
+            toSave = new ArrayList<>(adminLoginHistory.subList(from, adminLoginHistory.size()));
+        }
+        boolean saved = JsonUtils.saveStreaming(adminLoginFile, writer -> {
+            writer.beginArray();
+            for (AdminLoginLog log : toSave) {
+                log.write(writer);
+            }
+            writer.endArray();
+        }, plugin.getLogger());
+
+        if (saved) {
+            fileChanges.markSaved(key, version);
+            knownAdminLoginStamp = JsonUtils.fileStamp(adminLoginFile);
+            return true;
         }
-        JsonUtils.saveData(adminLoginFile, toSave, plugin.getLogger());
+        return false;
     }
 
 
-    public PlayerData registerConnection(Player player) {
+    private boolean saveIpMetadata() {
+        long version = ipTable.getLocationVersion();
+        if (version == savedLocationVersion) return true;
+
+        List<IpMetadataTable.Entry> located = new ArrayList<>();
+        ipTable.forEach(entry -> {
+            if (entry.getGeoLocation() != null) located.add(entry);
+        });
+
+        TypeAdapter<GeoLocation> adapter = JsonUtils.getGson().getAdapter(GeoLocation.class);
+        boolean saved = JsonUtils.saveStreaming(ipMetadataFile, writer -> {
+            writer.beginObject();
+            for (IpMetadataTable.Entry entry : located) {
+                writer.name(entry.getIp());
+                adapter.write(writer, entry.getGeoLocation());
+            }
+            writer.endObject();
+        }, plugin.getLogger());
+
+        if (saved) {
+            savedLocationVersion = version;
+            knownIpMetadataStamp = JsonUtils.fileStamp(ipMetadataFile);
+        }
+        return saved;
+    }
+
+
+    /**
+     * Registra un login a través de {@link #runAfterLoad}, así uno durante la carga
+     * se aplica sobre el registro cargado
+     */
+    public PlayerData registerConnection(Player player, long timestamp) {
         UUID uuid = player.getUniqueId();
         String username = player.getName();
         String ip = player.getAddress() != null ? player.getAddress().getAddress().getHostAddress() : "UNKNOWN";
-        long timestamp = System.currentTimeMillis();
+        boolean admin = player.hasPermission("ipdynamic.admin") || player.isOp();
+
+
+        // Los jugadores online siguen en la capa caliente hasta desconectarse
+        playerStore.pin(uuid);
+        PlayerData data = mutations.submit(uuid, () -> {
+            // Al diario desde el shard, así un guardado que vació los shards tras su checkpoint lo incluye
+            if (journal != null) {
+                journal.appendConnect(uuid, username, ip, timestamp, admin);
+            }
+            return applyConnection(uuid, username, ip, timestamp, admin, true);
+        }).join();
+
+
+        activeConnections.put(uuid, new ConnectionInfo(uuid, username, ip, timestamp));
+
 
+        if (connectionLog != null) {
+            connectionLog.append(ConnectionRingBuffer.CONNECT, uuid, ip, timestamp, 0);
+        }
+
+
+        if (!ip.equals("UNKNOWN") && plugin.getConfigManager().isSessionHandoffEnabled()) {
+            long windowMs = plugin.getConfigManager().getSessionHandoffWindowSeconds() * 1000L;
+            for (UUID previous : sessionIntervalIndex.findHandoffs(ip, uuid, timestamp, windowMs)) {
+                linkSessionHandoff(uuid, previous, ip);
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Aplica una conexión al registro, los índices y el historial, en el shard del jugador.
+     * {@code live} es false al repetir el diario, sin geolocalización ni conexiones ya guardadas
+     */
+    private PlayerData applyConnection(UUID uuid, String username, String ip, long timestamp, boolean admin, boolean live) {
+        // Fijado en la capa caliente hasta aplicar el login, la repetición del diario no lo fija
+        return playerStore.update(uuid, stored -> applyConnection(uuid, username, ip, timestamp, admin, live, stored));
+    }
 
-        PlayerData data = playerDataMap.computeIfAbsent(uuid, k -> {
+    private PlayerData applyConnection(UUID uuid, String username, String ip, long timestamp, boolean admin, boolean live,
+                                       PlayerData stored) {
+        boolean[] created = new boolean[1];
+        PlayerData data = stored != null ? stored : playerStore.computeIfAbsent(uuid, k -> {
+            created[0] = true;
             plugin.getLogger().info(String.format(
                 "Primera conexión detectada: %s (UUID: %s) desde IP: %s",
                 username, uuid, ip
             ));
 
-            PlayerData newData = new PlayerData(uuid, username, ip, timestamp);
+            PlayerData newData = new PlayerData(ipTable, uuid, username, ip, timestamp);
 
 
-            if (plugin.getConfigManager().isGeoIpOnFirstLogin() && plugin.getGeoIPService() != null) {
-                fetchGeoLocation(newData, ip);
+            if (live && plugin.getConfigManager().isGeoIpOnFirstLogin() && plugin.getGeoIPService() != null) {
+                fetchGeoLocation(uuid, ip);
             }
 
             return newData;
         });
 
+        // Los logins se registran en orden, uno más antiguo ya se guardó
+        if (!live && !created[0] && data.getLastLogin() >= timestamp) {
+            return data;
+        }
 
-        data.setUsername(username);
-        data.setLastLogin(timestamp);
-        data.incrementConnections();
-
-
-        if (!ip.equals(data.getLastIp()) && !ip.equals("UNKNOWN")) {
-            data.setLastIp(ip);
-            data.addIpToHistory(ip, plugin.getConfigManager().getMaxIpHistory());
 
+        usernameIndex.rename(uuid, data.getUsername(), username);
+        // Una sola versión nueva del registro, un guardado nunca ve medio login
+        boolean newIp = data.recordLogin(username, ip, timestamp, admin, plugin.getConfigManager().getMaxIpHistory());
+        markChanged(uuid);
 
-            ipToPlayersMap.computeIfAbsent(ip, k -> ConcurrentHashMap.newKeySet()).add(uuid);
 
+        if (newIp && live && plugin.getGeoIPService() != null) {
+            fetchGeoLocation(uuid, ip);
+        }
 
-            if (plugin.getGeoIPService() != null) {
-                fetchGeoLocation(data, ip);
-            }
+        // También cubre la primera IP de un jugador nuevo, que el constructor ya puso en el historial
+        if (!ip.equals("UNKNOWN")) {
+            indexPlayerIp(uuid, ip, timestamp);
         }
 
 
-        if (player.hasPermission("ipdynamic.admin") || player.isOp()) {
-            data.setAdmin(true);
+        if (admin) {
             adminLoginHistory.add(new AdminLoginLog(uuid, username, ip, timestamp));
+            fileChanges.markChanged(adminLoginFile.getName());
         }
 
 
-        activeConnections.put(uuid, new ConnectionInfo(uuid, username, ip, timestamp));
-
-
-        connectionHistory.add(new ConnectionLog(
-            ConnectionLog.Type.CONNECT,
-            uuid,
-            username,
-            ip,
-            timestamp
-        ));
+        connectionHistory.append(ConnectionRingBuffer.CONNECT, uuid, ip, timestamp, 0);
+        storage.appendConnection(ConnectionRingBuffer.CONNECT, uuid, ip, timestamp, 0);
 
 
         detectAndCacheAlts(uuid, ip);
@@ -219,27 +822,164 @@ public class DataManager {
     }
 
 
-    public void registerDisconnection(Player player) {
+    /**
+     * Registra un logout a través de {@link #runAfterLoad}, igual que el login
+     */
+    public void registerDisconnection(Player player, long timestamp) {
         UUID uuid = player.getUniqueId();
-        long timestamp = System.currentTimeMillis();
 
         ConnectionInfo connection = activeConnections.remove(uuid);
+        playerStore.unpin(uuid);
         if (connection != null) {
 
             long sessionDuration = timestamp - connection.loginTime;
 
+            // En el shard como el login, el diario y el historial van al mismo guardado
+            mutations.execute(uuid, () -> {
+                if (journal != null) {
+                    journal.appendDisconnect(uuid, connection.ip, timestamp, sessionDuration);
+                }
+                connectionHistory.append(ConnectionRingBuffer.DISCONNECT, uuid, connection.ip, timestamp, sessionDuration);
+                storage.appendConnection(ConnectionRingBuffer.DISCONNECT, uuid, connection.ip, timestamp, sessionDuration);
+            });
+            if (connectionLog != null) {
+                connectionLog.append(ConnectionRingBuffer.DISCONNECT, uuid, connection.ip, timestamp, sessionDuration);
+            }
+
+            if (!connection.ip.equals("UNKNOWN")) {
+                sessionIntervalIndex.recordSession(connection.ip, uuid, connection.loginTime, timestamp);
+            }
+        }
+    }
+
 
-            connectionHistory.add(new ConnectionLog(
-                ConnectionLog.Type.DISCONNECT,
-                uuid,
-                player.getName(),
-                connection.ip,
-                timestamp,
-                sessionDuration
+    /**
+     * Enlaza dos cuentas cuando una sale y otra entra desde la misma IP dentro de la ventana
+     * de relevo. El relevo se guarda aparte del enlace por IP y cuenta una vez por pareja
+     */
+    private void linkSessionHandoff(UUID playerUuid, UUID previousUuid, String ip) {
+        PlayerData playerData = playerStore.peek(playerUuid);
+        PlayerData previousData = playerStore.peek(previousUuid);
+        if (playerData == null || previousData == null) return;
+
+        // Guardado en ambos sentidos, solo el primer relevo de cada pareja pasa de aquí
+        if (!sessionHandoffPairs.computeIfAbsent(playerUuid, k -> ConcurrentHashMap.newKeySet()).add(previousUuid)) return;
+        sessionHandoffPairs.computeIfAbsent(previousUuid, k -> ConcurrentHashMap.newKeySet()).add(playerUuid);
+
+        linkAccount(playerUuid, previousUuid);
+        linkAccount(previousUuid, playerUuid);
+        addToAltCache(playerUuid, previousUuid);
+        addToAltCache(previousUuid, playerUuid);
+        sessionHandoffs.incrementAndGet();
+
+        if (plugin.getConfigManager().isDebugMode()) {
+            plugin.getLogger().info(String.format(
+                "Relevo de sesión detectado en %s: %s -> %s",
+                ip, previousData.getUsername(), playerData.getUsername()
             ));
         }
     }
 
+    /**
+     * Añade {@code alt} a las cuentas enlazadas de {@code owner}, en el shard del dueño
+     */
+    private void linkAccount(UUID owner, UUID alt) {
+        mutations.execute(owner, () -> playerStore.update(owner, data -> {
+            if (data != null && data.addLinkedAccount(alt.toString())) {
+                markChanged(owner);
+            }
+            return null;
+        }));
+    }
+
+    private void addToAltCache(UUID owner, UUID alt) {
+        indexChanges.incrementAndGet();
+        // Las listas se reemplazan, nunca se cambian, así quien lee recorre la que obtuvo
+        altAccountsCache.compute(owner.toString(), (key, alts) -> {
+            if (alts != null && alts.contains(alt)) return alts;
+
+            List<UUID> updated = alts != null ? new ArrayList<>(alts) : new ArrayList<>();
+            updated.add(alt);
+            return updated;
+        });
+    }
+
+
+    private void indexPlayerIp(UUID uuid, String ip, long timestamp) {
+        // Con la cadena de la entrada de la tabla, así índice y registros comparten cada IP.
+        // Dentro de compute para que un unindex a la vez no borre el set bajo la escritura
+        boolean[] added = new boolean[1];
+        ipToPlayersMap.compute(ipTable.intern(ip).getIp(), (key, players) -> {
+            IpMetadataTable.Entry entry = ipTable.intern(key);
+            entry.recordSeen(timestamp);
+            Set<UUID> target = players != null ? players : ConcurrentHashMap.newKeySet();
+            added[0] = target.add(uuid);
+            entry.setAccounts(target.size());
+            return target;
+        });
+        if (added[0]) {
+            indexChanges.incrementAndGet();
+            altNetworkResolver.invalidate(ip, uuid);
+        }
+
+        indexSubnets(uuid, ip, timestamp);
+    }
+
+    private void indexSubnets(UUID uuid, String ip, long timestamp) {
+        int packed = IPUtils.toInt(ip);
+        if (packed != -1) {
+            subnetSimilarityIndex.addSubnet(uuid, packed >>> 8);
+            subnetPrefixIndex.record(uuid, packed, timestamp);
+        }
+    }
+
+
+    /**
+     * Quita a un jugador de una IP que ya no tiene, {@code remaining} son sus IPv4 que le
+     * mantienen en sus subredes. Devuelve la entrada de la tabla si la IP se queda sin nadie, si no null
+     */
+    private IpMetadataTable.Entry unindexPlayerIp(UUID uuid, String ip, int[] remaining) {
+        IpMetadataTable.Entry[] dropped = new IpMetadataTable.Entry[1];
+        indexChanges.incrementAndGet();
+        ipToPlayersMap.computeIfPresent(ip, (key, players) -> {
+            players.remove(uuid);
+            IpMetadataTable.Entry entry = ipTable.find(key);
+            if (!players.isEmpty()) {
+                if (entry != null) entry.setAccounts(players.size());
+                return players;
+            }
+            if (entry != null && ipTable.remove(entry)) dropped[0] = entry;
+            return null;
+        });
+        altNetworkResolver.invalidate(ip, uuid);
+
+        int packed = IPUtils.toInt(ip);
+        if (packed != -1) {
+            subnetPrefixIndex.remove(uuid, packed, remaining);
+        }
+        return dropped[0];
+    }
+
+    /**
+     * Borra de la tabla las IPs sin jugadores, comprobando bajo el bloqueo de cada IP
+     */
+    private void dropUnusedIps(RetentionPass pass) {
+        List<IpMetadataTable.Entry> unused = new ArrayList<>();
+        ipTable.forEach(entry -> {
+            if (entry.getAccounts() == 0) unused.add(entry);
+        });
+
+        for (IpMetadataTable.Entry entry : unused) {
+            ipToPlayersMap.compute(entry.getIp(), (key, players) -> {
+                if (players == null && ipTable.remove(entry)) {
+                    pass.ipEntriesRemoved++;
+                    pass.freedMemoryBytes += entry.getRetainedBytes();
+                }
+                return players;
+            });
+        }
+    }
+
 
     private void detectAndCacheAlts(UUID playerUuid, String ip) {
         Set<UUID> playersWithSameIp = ipToPlayersMap.get(ip);
@@ -253,41 +993,44 @@ public class DataManager {
 
         if (!alts.isEmpty()) {
             // Update cache for current player
+            indexChanges.incrementAndGet();
             altAccountsCache.put(playerUuid.toString(), alts);
 
-            // Update bidirectional linking
-            PlayerData playerData = playerDataMap.get(playerUuid);
-            if (playerData != null) {
-                for (UUID altUuid : alts) {
-                    playerData.addLinkedAccount(altUuid.toString());
-
-                    // Update the alt account's data
-                    PlayerData altData = playerDataMap.get(altUuid);
-                    if (altData != null) {
-                        altData.addLinkedAccount(playerUuid.toString());
-
-                        // IMPORTANT: Update the alt's cache to include this new connection
-                        List<UUID> existingAltsForAlt = altAccountsCache.getOrDefault(altUuid.toString(), new ArrayList<>());
-                        if (!existingAltsForAlt.contains(playerUuid)) {
-                            existingAltsForAlt.add(playerUuid);
-
-                            // Add all other alts that the current player has
-                            for (UUID otherAlt : alts) {
-                                if (!otherAlt.equals(altUuid) && !existingAltsForAlt.contains(otherAlt)) {
-                                    existingAltsForAlt.add(otherAlt);
-                                }
-                            }
-                            altAccountsCache.put(altUuid.toString(), existingAltsForAlt);
+            // Enlace en ambos sentidos, cada lado en el shard de la cuenta que cambia
+            for (UUID altUuid : alts) {
+                linkAccount(playerUuid, altUuid);
+                linkAccount(altUuid, playerUuid);
+
+                // IMPORTANT: Update the alt's cache to include this new connection
+                altAccountsCache.compute(altUuid.toString(), (key, existing) -> {
+                    if (existing != null && existing.contains(playerUuid)) return existing;
+
+                    List<UUID> updated = existing != null ? new ArrayList<>(existing) : new ArrayList<>();
+                    updated.add(playerUuid);
+
+                    // Add all other alts that the current player has
+                    for (UUID otherAlt : alts) {
+                        if (!otherAlt.equals(altUuid) && !updated.contains(otherAlt)) {
+                            updated.add(otherAlt);
                         }
                     }
-                }
+                    return updated;
+                });
             }
         }
     }
 
 
+    /**
+     * Si una cuenta entró justo después de que la otra saliera desde la misma IP
+     */
+    public boolean isSessionHandoff(UUID playerUuid, UUID altUuid) {
+        Set<UUID> pairs = sessionHandoffPairs.get(playerUuid);
+        return pairs != null && pairs.contains(altUuid);
+    }
+
     public List<PlayerData> findAlts(UUID playerUuid) {
-        PlayerData playerData = playerDataMap.get(playerUuid);
+        PlayerData playerData = playerStore.peek(playerUuid);
         if (playerData == null) return Collections.emptyList();
 
         Set<UUID> alts = new HashSet<>();
@@ -301,15 +1044,77 @@ public class DataManager {
         }
 
 
+        if (plugin.getConfigManager().isSubnetAltDetectionEnabled()) {
+            alts.addAll(findRangeAltUuids(playerData, plugin.getConfigManager().getSubnetAltPrefix()));
+        }
+
+
         alts.remove(playerUuid);
 
 
         return alts.stream()
-            .map(playerDataMap::get)
+            .map(playerStore::peek)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Resuelve en el executor la red de alts en varios saltos (A comparte IP con B, B con C...),
+     * con los límites de alt-detection.network
+     */
+    public CompletableFuture<AltNetworkResolver.AltNetwork> findAltNetwork(UUID playerUuid, int depth) {
+        ConfigManager config = plugin.getConfigManager();
+        AltNetworkResolver.Limits limits = new AltNetworkResolver.Limits(
+            Math.max(1, Math.min(depth, config.getAltNetworkMaxDepth())),
+            config.getAltNetworkMaxFanOut(),
+            config.getAltNetworkMaxNodes(),
+            config.getAltNetworkTimeBudgetMs());
+
+        return altNetworkResolver.resolve(playerUuid, limits, plugin.getExecutorService());
+    }
+
+    private Collection<String> getIpsOfPlayer(UUID uuid) {
+        PlayerData data = playerStore.peek(uuid);
+        return data != null ? data.getIpHistory() : null;
+    }
+
+    /**
+     * Cuentas vistas en la misma /24 o /16 que alguna IP del jugador dentro de la ventana configurada
+     */
+    public List<PlayerData> findRangeAlts(UUID playerUuid, int prefix) {
+        PlayerData playerData = playerStore.peek(playerUuid);
+        if (playerData == null) return Collections.emptyList();
+
+        Set<UUID> alts = findRangeAltUuids(playerData, prefix);
+        alts.remove(playerUuid);
+
+        return alts.stream()
+            .map(playerStore::peek)
             .filter(Objects::nonNull)
             .collect(Collectors.toList());
     }
 
+    private Set<UUID> findRangeAltUuids(PlayerData playerData, int prefix) {
+        long since = System.currentTimeMillis() - plugin.getConfigManager().getSubnetAltMaxAgeDays() * 86400000L;
+        Set<UUID> alts = new HashSet<>();
+
+        for (String ip : playerData.getIpHistory()) {
+            int packed = IPUtils.toInt(ip);
+            if (packed != -1) {
+                alts.addAll(subnetPrefixIndex.findRecent(packed, prefix, since));
+            }
+        }
+        return alts;
+    }
+
+    /**
+     * Cuentas con un conjunto parecido de subredes /24, aunque nunca compartieran IP
+     */
+    public List<SubnetSimilarityIndex.SimilarityMatch> findSimilarAlts(UUID playerUuid, int limit) {
+        return subnetSimilarityIndex.findSimilar(playerUuid,
+            plugin.getConfigManager().getSimilarityThreshold(), limit);
+    }
+
     public List<PlayerData> findAltsByIp(String ip) {
         if (!IPUtils.isValidIpAddress(ip)) return Collections.emptyList();
 
@@ -317,21 +1122,33 @@ public class DataManager {
         if (players == null) return Collections.emptyList();
 
         return players.stream()
-            .map(playerDataMap::get)
+            .map(playerStore::peek)
             .filter(Objects::nonNull)
             .collect(Collectors.toList());
     }
 
 
     public PlayerData getPlayerData(UUID uuid) {
-        return playerDataMap.get(uuid);
+        return playerStore.get(uuid);
+    }
+
+    /**
+     * Como getPlayerData pero sin subir el registro a memoria, para listados de solo lectura
+     */
+    public PlayerData peekPlayerData(UUID uuid) {
+        return playerStore.peek(uuid);
     }
 
     public PlayerData getPlayerData(String username) {
-        return playerDataMap.values().stream()
-            .filter(data -> data.getUsername().equalsIgnoreCase(username))
-            .findFirst()
-            .orElse(null);
+        UUID uuid = usernameIndex.get(username);
+        return uuid != null ? playerStore.get(uuid) : null;
+    }
+
+    /**
+     * Nombres registrados que empiezan por el prefijo, para completar jugadores offline
+     */
+    public List<String> completeUsernames(String prefix, int limit) {
+        return usernameIndex.complete(prefix, limit);
     }
 
     public PlayerData getPlayerData(OfflinePlayer player) {
@@ -350,22 +1167,36 @@ public class DataManager {
         }
 
         return playersWithIp.stream()
-            .map(playerDataMap::get)
+            .map(playerStore::peek)
             .filter(Objects::nonNull)
             .map(PlayerData::getUsername)
             .collect(Collectors.toList());
     }
 
 
-    private void fetchGeoLocation(PlayerData data, String ip) {
+    /**
+     * Busca la ubicación de una IP una vez, todos sus jugadores la leen de la tabla de IPs
+     */
+    private void fetchGeoLocation(UUID uuid, String ip) {
         if (plugin.getGeoIPService() == null || IPUtils.isLocalIp(ip)) {
             return;
         }
 
+        IpMetadataTable.Entry entry = ipTable.intern(ip);
+        if (entry.getGeoLocation() != null) {
+            return;
+        }
+
         plugin.getGeoIPService().getLocation(ip).thenAccept(geoLocation -> {
-            if (geoLocation != null) {
-                data.setGeoLocation(geoLocation);
-            }
+            if (geoLocation == null) return;
+
+            entry.setGeoLocation(geoLocation);
+            // Se reescribe para que el registro guardado lleve la ubicación de su IP actual
+            mutations.execute(uuid, () -> {
+                if (playerStore.peek(uuid) != null) {
+                    markChanged(uuid);
+                }
+            });
         }).exceptionally(throwable -> {
             plugin.getLogger().log(Level.WARNING, "Error obteniendo geolocalización para " + ip, throwable);
             return null;
@@ -375,27 +1206,277 @@ public class DataManager {
     private void rebuildCaches() {
 
         altAccountsCache.clear();
+        altNetworkResolver.clear();
 
 
-        for (UUID uuid : playerDataMap.keySet()) {
-            PlayerData data = playerDataMap.get(uuid);
-            if (data.hasMultipleIps()) {
-                for (String ip : data.getIpHistory()) {
-                    detectAndCacheAlts(uuid, ip);
+        // Solo con el índice de IPs, así no se leen jugadores fríos de disco.
+        // Las cuentas enlazadas ya se guardaron al detectar los alts
+        for (Set<UUID> players : ipToPlayersMap.values()) {
+            if (players.size() <= 1) continue;
+
+            for (UUID uuid : players) {
+                for (UUID alt : players) {
+                    if (!alt.equals(uuid)) {
+                        addToAltCache(uuid, alt);
+                    }
                 }
             }
         }
     }
 
 
+    /**
+     * Ejecuta un tramo de la pasada de retención dentro del tiempo configurado, y empieza otra
+     * pasada al cumplirse el intervalo. Se llama cada tick fuera del hilo principal
+     */
+    public void runRetentionSlice() {
+        if (!loaded || !retentionRunning.compareAndSet(false, true)) return;
+        try {
+            ConfigManager config = plugin.getConfigManager();
+            long now = System.currentTimeMillis();
+
+            if (retentionPass == null) {
+                if (now < nextRetentionAt) return;
+                retentionPass = new RetentionPass(playerStore.keys(), now, config, storage.getPlayersDiskSize());
+            }
+
+            RetentionPass pass = retentionPass;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getRetentionSliceMs());
+            pass.slices++;
+            do {
+                if (pass.position >= pass.players.size()) {
+                    finishRetention(pass, now);
+                    return;
+                }
+                applyRetention(pass.players.get(pass.position++), pass);
+            } while (System.nanoTime() < deadline);
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Error aplicando la retención de datos", e);
+            retentionPass = null;
+        } finally {
+            retentionRunning.set(false);
+        }
+    }
+
+    private void finishRetention(RetentionPass pass, long now) {
+        retentionPass = null;
+        nextRetentionAt = now + TimeUnit.HOURS.toMillis(plugin.getConfigManager().getRetentionIntervalHours());
+        dropUnusedIps(pass);
+
+        RetentionReport report = new RetentionReport(pass.players.size(), pass.playersRemoved, pass.ipsForgotten,
+            pass.indexedIpsRemoved, pass.ipEntriesRemoved, pass.freedMemoryBytes, pass.diskBytesBefore,
+            now - pass.startedAt, pass.slices);
+        lastRetentionReport = report;
+
+        // Las ubicaciones descartadas se limpian de los metadatos de IPs en el mismo guardado
+        if (pass.playersRemoved == 0 && pass.ipsForgotten == 0 && pass.ipEntriesRemoved == 0) {
+            if (plugin.getConfigManager().isDebugMode()) {
+                logRetention(report);
+            }
+            return;
+        }
+
+        // El espacio en disco se mide cuando se escriben las eliminaciones
+        pendingRetentionReport = report;
+        plugin.saveAllData();
+    }
+
+    private void logRetention(RetentionReport report) {
+        plugin.getLogger().info(String.format(
+            "Retención: %d jugadores y %d IPs olvidadas (%d IPs fuera del índice, %d IPs sin cuentas eliminadas), "
+                + "%d KB de memoria y %d KB de disco liberados. %d jugadores revisados en %d ms (%d porciones)",
+            report.playersRemoved, report.ipsForgotten, report.indexedIpsRemoved, report.ipEntriesRemoved,
+            report.freedMemoryBytes / 1024,
+            report.freedDiskBytes / 1024, report.playersScanned, report.durationMs, report.slices));
+    }
+
+    private void applyRetention(UUID uuid, RetentionPass pass) {
+        // Los jugadores online se dejan, se van a escribir igualmente
+        if (activeConnections.containsKey(uuid) || playerStore.isPinned(uuid)) return;
+
+        PlayerData data = playerStore.peek(uuid);
+        if (data == null || (!isExpired(data, pass) && (pass.ipCutoff <= 0 || !hasStaleIp(data, pass.ipCutoff)))) {
+            return;
+        }
+
+        // En el shard del jugador y comprobado allí otra vez, puede haberse conectado entre tanto
+        mutations.submit(uuid, () -> {
+            PlayerData current = playerStore.peek(uuid);
+            if (current == null || playerStore.isPinned(uuid)) return null;
+
+            if (isExpired(current, pass)) {
+                removePlayer(uuid, current, pass);
+            } else if (pass.ipCutoff > 0) {
+                forgetStaleIps(uuid, pass);
+            }
+            return null;
+        }).join();
+    }
+
+    private static boolean isExpired(PlayerData data, RetentionPass pass) {
+        return pass.playerCutoff > 0 && !data.isAdmin() && data.getLastLogin() < pass.playerCutoff
+            && data.getTotalConnections() < pass.minConnections;
+    }
+
+    private void removePlayer(UUID uuid, PlayerData data, RetentionPass pass) {
+        // Un registro frío solo ocupaba disco
+        boolean resident = playerStore.isResident(uuid);
+        if (!playerStore.remove(uuid)) return;
+
+        changedPlayers.remove(uuid);
+        removedPlayers.add(uuid);
+        usernameIndex.remove(uuid, data.getUsername());
+        subnetSimilarityIndex.remove(uuid);
+
+        for (String ip : data.getIpHistory()) {
+            IpMetadataTable.Entry dropped = unindexPlayerIp(uuid, ip, new int[0]);
+            if (dropped != null) {
+                pass.indexedIpsRemoved++;
+                pass.freedMemoryBytes += dropped.getRetainedBytes();
+            }
+        }
+
+        // Los enlaces desde otras cuentas apuntarían a un jugador que ya no existe
+        Set<String> linked = new HashSet<>(data.getLinkedAccounts());
+        indexChanges.incrementAndGet();
+        List<UUID> cachedAlts = altAccountsCache.remove(uuid.toString());
+        if (cachedAlts != null) {
+            cachedAlts.forEach(alt -> linked.add(alt.toString()));
+        }
+        Set<UUID> handoffs = sessionHandoffPairs.remove(uuid);
+        if (handoffs != null) {
+            for (UUID other : handoffs) {
+                sessionHandoffPairs.computeIfPresent(other, (key, pairs) -> {
+                    pairs.remove(uuid);
+                    return pairs.isEmpty() ? null : pairs;
+                });
+            }
+        }
+        String removedId = uuid.toString();
+        for (String alt : linked) {
+            altAccountsCache.computeIfPresent(alt, (key, alts) -> {
+                List<UUID> updated = new ArrayList<>(alts);
+                updated.remove(uuid);
+                return updated.isEmpty() ? null : updated;
+            });
+
+            UUID altUuid;
+            try {
+                altUuid = UUID.fromString(alt);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            mutations.execute(altUuid, () -> {
+                PlayerData altData = playerStore.peek(altUuid);
+                if (altData == null || !altData.getLinkedAccounts().contains(removedId)) return;
+
+                playerStore.updateInPlace(altUuid, stored -> {
+                    if (stored != null && stored.removeLinkedAccount(removedId)) {
+                        markChanged(altUuid);
+                    }
+                    return null;
+                });
+            });
+        }
+
+        pass.playersRemoved++;
+        if (resident) {
+            pass.freedMemoryBytes += data.getRetainedBytes();
+        }
+    }
+
+    private void forgetStaleIps(UUID uuid, RetentionPass pass) {
+        // Un registro frío se cambia en disco, una pasada por todos no debe subirlos a memoria
+        boolean resident = playerStore.isResident(uuid);
+        playerStore.updateInPlace(uuid, live -> {
+            if (live != null) forgetStaleIps(uuid, live, resident, pass);
+            return null;
+        });
+    }
+
+    private void forgetStaleIps(UUID uuid, PlayerData live, boolean resident, RetentionPass pass) {
+        long bytesBefore = live.getRetainedBytes();
+        List<String> forgotten = new ArrayList<>();
+        for (String ip : live.getIpHistory()) {
+            if (!ip.equals(live.getLastIp()) && live.getIpLastSeen(ip) < pass.ipCutoff && live.forgetIp(ip)) {
+                forgotten.add(ip);
+            }
+        }
+        if (forgotten.isEmpty()) return;
+        markChanged(uuid);
+
+        int[] remaining = live.getIpHistory().stream()
+            .mapToInt(IPUtils::toInt)
+            .filter(packed -> packed != -1)
+            .toArray();
+        for (String ip : forgotten) {
+            IpMetadataTable.Entry dropped = unindexPlayerIp(uuid, ip, remaining);
+            if (dropped != null) {
+                pass.indexedIpsRemoved++;
+                pass.freedMemoryBytes += dropped.getRetainedBytes();
+            }
+        }
+
+        pass.ipsForgotten += forgotten.size();
+        if (resident) {
+            pass.freedMemoryBytes += Math.max(0, bytesBefore - live.getRetainedBytes());
+        }
+    }
+
+    private static boolean hasStaleIp(PlayerData data, long cutoff) {
+        for (String ip : data.getIpHistory()) {
+            if (!ip.equals(data.getLastIp()) && data.getIpLastSeen(ip) < cutoff) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public RetentionReport getLastRetentionReport() {
+        return lastRetentionReport;
+    }
+
+    /**
+     * Tabla con todas las IPs conocidas y su ubicación, y con ella el pool de ubicaciones
+     */
+    public IpMetadataTable getIpTable() {
+        return ipTable;
+    }
+
+
     public Map<String, Object> getStatistics() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalPlayers", playerDataMap.size());
+        stats.put("totalPlayers", playerStore.size());
+        stats.put("hotPlayers", playerStore.getHotCount());
+        stats.put("unsavedPlayers", changedPlayers.size());
         stats.put("uniqueIps", ipToPlayersMap.size());
+        stats.put("knownIps", ipTable.size());
+        stats.put("hubIps", ipTable.getHubCount());
+
+        GeoLocationPool locations = ipTable.getLocations();
+        stats.put("sharedLocations", locations.getLocationCount());
+        stats.put("sharedLocationStrings", locations.getStringCount());
+        stats.put("locationInternSavedKb", locations.getSavedBytes() / 1024);
         stats.put("activeConnections", activeConnections.size());
         stats.put("connectionHistory", connectionHistory.size());
+        stats.put("connectionHistoryInterned", connectionHistory.getInternedCount());
         stats.put("adminLogins", adminLoginHistory.size());
         stats.put("detectedAlts", altAccountsCache.size());
+        stats.put("similarityIndexed", subnetSimilarityIndex.size());
+        stats.put("similarityIndexKb", subnetSimilarityIndex.getEstimatedBytes() / 1024);
+        stats.put("subnetIndexKb", subnetPrefixIndex.getEstimatedBytes() / 1024);
+        stats.put("usernameIndexKb", usernameIndex.getEstimatedBytes() / 1024);
+        stats.put("sessionHandoffs", sessionHandoffs.get());
+        stats.put("pendingPlayerChanges", mutations.getPendingCount());
+
+        RetentionReport retention = lastRetentionReport;
+        if (retention != null) {
+            stats.put("retentionRemovedPlayers", retention.playersRemoved);
+            stats.put("retentionForgottenIps", retention.ipsForgotten);
+            stats.put("retentionRemovedIpEntries", retention.ipEntriesRemoved);
+            stats.put("retentionFreedMemoryKb", retention.freedMemoryBytes / 1024);
+            stats.put("retentionFreedDiskKb", retention.freedDiskBytes / 1024);
+        }
 
 
         Map.Entry<String, Set<UUID>> mostUsedIp = ipToPlayersMap.entrySet().stream()
@@ -410,19 +1491,33 @@ public class DataManager {
         return stats;
     }
 
-    public Collection<PlayerData> getAllPlayers() {
-        return new ArrayList<>(playerDataMap.values());
+    /**
+     * Recorre todos los jugadores, leyendo los fríos de disco de uno en uno sin cargarlos
+     */
+    public void forEachPlayer(Consumer<PlayerData> consumer) {
+        playerStore.forEach((uuid, data) -> consumer.accept(data));
+    }
+
+    /**
+     * Eventos de conexión más recientes de una IP en las últimas {@code hours} horas, del registro en disco
+     */
+    public List<SegmentedConnectionLog.Entry> getConnectionLogForIP(String ip, int hours, int limit) {
+        if (connectionLog == null) return Collections.emptyList();
+
+        long now = System.currentTimeMillis();
+        return connectionLog.query(now - TimeUnit.HOURS.toMillis(hours), now, ip, limit);
+    }
+
+    public boolean isConnectionLogEnabled() {
+        return connectionLog != null;
     }
 
     /**
      * Gets connection count for a specific player and IP combination
      */
     public int getConnectionCountForIP(UUID playerUuid, String ip) {
-        return (int) connectionHistory.stream()
-                .filter(log -> log.type == ConnectionLog.Type.CONNECT)
-                .filter(log -> log.uuid.equals(playerUuid))
-                .filter(log -> log.ip.equals(ip))
-                .count();
+        PlayerData data = playerStore.peek(playerUuid);
+        return data != null ? data.getIpConnections(ip) : 0;
     }
 
     /**
@@ -430,12 +1525,12 @@ public class DataManager {
      */
     public Map<String, Integer> getConnectionStatsByIP(UUID playerUuid) {
         Map<String, Integer> ipConnectionCount = new HashMap<>();
+        PlayerData data = playerStore.peek(playerUuid);
+        if (data == null) return ipConnectionCount;
 
-        connectionHistory.stream()
-                .filter(log -> log.type == ConnectionLog.Type.CONNECT)
-                .filter(log -> log.uuid.equals(playerUuid))
-                .forEach(log -> ipConnectionCount.merge(log.ip, 1, Integer::sum));
-
+        for (Map.Entry<String, IpStats> entry : data.getIpStats().entrySet()) {
+            ipConnectionCount.put(entry.getKey(), entry.getValue().getConnections());
+        }
         return ipConnectionCount;
     }
 
@@ -454,27 +1549,61 @@ public class DataManager {
         }
     }
 
-    public static class ConnectionLog {
-        enum Type { CONNECT, DISCONNECT }
-
-        final Type type;
-        final UUID uuid;
-        final String username;
-        final String ip;
-        final long timestamp;
-        final long sessionDuration; // Solo para desconexiones
+    private static class RetentionPass {
+        final List<UUID> players;
+        final long startedAt;
+        final long playerCutoff;
+        final int minConnections;
+        final long ipCutoff;
+        final long diskBytesBefore;
+
+        int position;
+        int slices;
+        int playersRemoved;
+        int ipsForgotten;
+        int indexedIpsRemoved;
+        int ipEntriesRemoved;
+        long freedMemoryBytes;
+
+        RetentionPass(List<UUID> players, long now, ConfigManager config, long diskBytesBefore) {
+            this.players = players;
+            this.startedAt = now;
+            int playerDays = config.getRetentionPlayerMaxAgeDays();
+            int ipDays = config.getRetentionIpMaxAgeDays();
+            this.playerCutoff = playerDays > 0 ? now - TimeUnit.DAYS.toMillis(playerDays) : 0;
+            this.minConnections = config.getRetentionPlayerMinConnections();
+            this.ipCutoff = ipDays > 0 ? now - TimeUnit.DAYS.toMillis(ipDays) : 0;
+            this.diskBytesBefore = diskBytesBefore;
+        }
+    }
 
-        ConnectionLog(Type type, UUID uuid, String username, String ip, long timestamp) {
-            this(type, uuid, username, ip, timestamp, 0);
+    public static class RetentionReport {
+        public final int playersScanned;
+        public final int playersRemoved;
+        public final int ipsForgotten;
+        public final int indexedIpsRemoved;
+        public final int ipEntriesRemoved;
+        public final long freedMemoryBytes; // Registros y entradas de IP quitados de memoria, los fríos solo ocupaban disco
+        public final long durationMs;
+        public final int slices;
+        final long diskBytesBefore;
+        volatile long freedDiskBytes; // Se sabe cuando el siguiente guardado escribe las eliminaciones
+
+        RetentionReport(int playersScanned, int playersRemoved, int ipsForgotten, int indexedIpsRemoved,
+                        int ipEntriesRemoved, long freedMemoryBytes, long diskBytesBefore, long durationMs, int slices) {
+            this.playersScanned = playersScanned;
+            this.playersRemoved = playersRemoved;
+            this.ipsForgotten = ipsForgotten;
+            this.indexedIpsRemoved = indexedIpsRemoved;
+            this.ipEntriesRemoved = ipEntriesRemoved;
+            this.freedMemoryBytes = freedMemoryBytes;
+            this.diskBytesBefore = diskBytesBefore;
+            this.durationMs = durationMs;
+            this.slices = slices;
         }
 
-        ConnectionLog(Type type, UUID uuid, String username, String ip, long timestamp, long sessionDuration) {
-            this.type = type;
-            this.uuid = uuid;
-            this.username = username;
-            this.ip = ip;
-            this.timestamp = timestamp;
-            this.sessionDuration = sessionDuration;
+        public long getFreedDiskBytes() {
+            return freedDiskBytes;
         }
     }
 
@@ -490,5 +1619,49 @@ public class DataManager {
             this.ip = ip;
             this.timestamp = timestamp;
         }
+
+        void write(JsonWriter writer) throws IOException {
+            writer.beginObject();
+            writer.name("uuid").value(uuid.toString());
+            if (username != null) writer.name("username").value(username);
+            if (ip != null) writer.name("ip").value(ip);
+            writer.name("timestamp").value(timestamp);
+            writer.endObject();
+        }
+
+        static AdminLoginLog read(JsonReader reader) throws IOException {
+            UUID uuid = null;
+            String username = null;
+            String ip = null;
+            long timestamp = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "uuid":
+                        uuid = UUID.fromString(reader.nextString());
+                        break;
+                    case "username":
+                        username = reader.nextString();
+                        break;
+                    case "ip":
+                        ip = reader.nextString();
+                        break;
+                    case "timestamp":
+                        timestamp = reader.nextLong();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new AdminLoginLog(uuid, username, ip, timestamp);
+        }
     }
 }
\ No newline at end of file
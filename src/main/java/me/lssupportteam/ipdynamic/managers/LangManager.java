@@ -15,9 +15,9 @@ public class LangManager {
 
     private final IPDynamic plugin;
     private final File langDir;
-    private YamlConfiguration langConfig;
-    private String currentLang;
-    private final Map<String, String> messageCache;
+    private volatile YamlConfiguration langConfig;
+    private volatile String currentLang;
+    private volatile Map<String, String> messageCache; // Se reemplaza entero al recargar, nunca se cambia
 
     public LangManager(IPDynamic plugin) {
         this.plugin = plugin;
@@ -39,8 +39,10 @@ public class LangManager {
             saveDefaultLanguageFile(fileName);
         }
 
-        langConfig = YamlConfiguration.loadConfiguration(langFile);
-        cacheMessages();
+        YamlConfiguration loaded = YamlConfiguration.loadConfiguration(langFile);
+        // Se llena antes de publicarla, una recarga nunca muestra una caché vacía o a medias
+        messageCache = cacheMessages(loaded);
+        langConfig = loaded;
 
         plugin.getLogger().info("Idioma cargado: " + currentLang);
     }
@@ -217,13 +219,14 @@ public class LangManager {
         config.set("webhook.admin.title", "👑 Administrator Connection");
     }
 
-    private void cacheMessages() {
-        messageCache.clear();
-        for (String key : langConfig.getKeys(true)) {
-            if (langConfig.isString(key)) {
-                messageCache.put(key, langConfig.getString(key));
+    private static Map<String, String> cacheMessages(YamlConfiguration source) {
+        Map<String, String> cache = new HashMap<>();
+        for (String key : source.getKeys(true)) {
+            if (source.isString(key)) {
+                cache.put(key, source.getString(key));
             }
         }
+        return cache;
     }
 
     public String getMessage(String key, Map<String, String> placeholders) {
@@ -245,7 +248,8 @@ public class LangManager {
     }
 
     public String getRawString(String key) {
-        return messageCache.getOrDefault(key, langConfig.getString(key, "Missing: " + key));
+        String cached = messageCache.get(key);
+        return cached != null ? cached : langConfig.getString(key, "Missing: " + key);
     }
 
     public java.util.List<String> getMessageLines(String key) {
@@ -1,26 +1,23 @@
 package me.lssupportteam.ipdynamic.managers;
 
-import com.google.gson.reflect.TypeToken;
 import me.lssupportteam.ipdynamic.IPDynamic;
-import me.lssupportteam.ipdynamic.utils.JsonUtils;
+import me.lssupportteam.ipdynamic.storage.StorageBackend;
 
 import java.io.File;
-import java.lang.reflect.Type;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class WhitelistManager {
 
     private final IPDynamic plugin;
-    private final File whitelistFile;
+    private final StorageBackend storage;
     private final Set<String> whitelistedPlayers;
+    private volatile String knownStamp; // Whitelist guardada en la última carga o guardado
 
     public WhitelistManager(IPDynamic plugin) {
         this.plugin = plugin;
-        this.whitelistFile = new File(plugin.getPluginDataFolder(), "data/whitelist.json");
+        this.storage = plugin.getStorageBackend();
         this.whitelistedPlayers = ConcurrentHashMap.newKeySet();
 
         ensureDataDirectory();
@@ -34,21 +31,38 @@ public class WhitelistManager {
     }
 
     public void loadWhitelist() {
-        Type type = new TypeToken<List<String>>(){}.getType();
-        List<String> loaded = JsonUtils.loadData(whitelistFile, type, plugin.getLogger());
+        Set<String> loaded = readWhitelist();
 
-        if (loaded != null) {
-            whitelistedPlayers.clear();
-            whitelistedPlayers.addAll(loaded);
+        if (!loaded.isEmpty()) {
             plugin.getLogger().info(plugin.getLangManager().getMessage("whitelist.loaded").replace("{count}", String.valueOf(whitelistedPlayers.size())));
         } else {
             plugin.getLogger().info(plugin.getLangManager().getMessage("whitelist.empty"));
         }
     }
 
+    private Set<String> readWhitelist() {
+        knownStamp = storage.getWhitelistStamp();
+        Set<String> loaded = storage.loadWhitelist();
+        // Los nombres que siguen nunca desaparecen, un login durante la recarga los ve
+        whitelistedPlayers.retainAll(loaded);
+        whitelistedPlayers.addAll(loaded);
+        return loaded;
+    }
+
+    /**
+     * Relee la whitelist para /ipdy reload si cambió, false si no hubo que leer nada
+     */
+    public boolean reloadWhitelist() {
+        String stamp = storage.getWhitelistStamp();
+        if (stamp != null && stamp.equals(knownStamp)) return false;
+
+        readWhitelist();
+        return true;
+    }
+
     public void saveWhitelist() {
-        List<String> dataToSave = new ArrayList<>(whitelistedPlayers);
-        JsonUtils.saveData(whitelistFile, dataToSave, plugin.getLogger());
+        storage.saveWhitelist(whitelistedPlayers);
+        knownStamp = storage.getWhitelistStamp();
     }
 
     public boolean addPlayer(String playerName) {
@@ -56,10 +70,11 @@ public class WhitelistManager {
             return false;
         }
 
-        boolean added = whitelistedPlayers.add(playerName.toLowerCase());
+        String name = playerName.toLowerCase();
+        boolean added = whitelistedPlayers.add(name);
         if (added) {
-            // Save to JSON file immediately
-            saveWhitelist();
+            // Se guarda al momento
+            storage.addWhitelisted(name, whitelistedPlayers);
             plugin.getLogger().info(plugin.getLangManager().getMessage("log.player-added-whitelist").replace("{player}", playerName).replace("{admin}", "System"));
         }
         return added;
@@ -70,10 +85,11 @@ public class WhitelistManager {
             return false;
         }
 
-        boolean removed = whitelistedPlayers.remove(playerName.toLowerCase());
+        String name = playerName.toLowerCase();
+        boolean removed = whitelistedPlayers.remove(name);
         if (removed) {
-            // Save to JSON file immediately
-            saveWhitelist();
+            // Se guarda al momento
+            storage.removeWhitelisted(name, whitelistedPlayers);
             plugin.getLogger().info(plugin.getLangManager().getMessage("log.player-removed-whitelist").replace("{player}", playerName).replace("{admin}", "System"));
         }
         return removed;
@@ -96,6 +112,7 @@ public class WhitelistManager {
 
     public void clearWhitelist() {
         whitelistedPlayers.clear();
+        storage.clearWhitelist();
         plugin.getLogger().info(plugin.getLangManager().getMessage("whitelist.cleared"));
     }
 }
\ No newline at end of file
@@ -1,5 +1,10 @@
 package me.lssupportteam.ipdynamic.models;
 
+import java.util.Objects;
+
+/**
+ * Se construye con sus setters y luego se comparte, las de {@link GeoLocationPool} no admiten cambios
+ */
 public class GeoLocation {
 
     private String country;
@@ -18,6 +23,7 @@ public class GeoLocation {
     private boolean proxy;
     private boolean hosting;
     private boolean mobile;
+    private transient boolean frozen;
 
     public GeoLocation() {
 
@@ -67,52 +73,107 @@ public class GeoLocation {
         return proxy || hosting;
     }
 
+    GeoLocation copy() {
+        GeoLocation copy = new GeoLocation();
+        copy.country = country;
+        copy.countryCode = countryCode;
+        copy.region = region;
+        copy.regionName = regionName;
+        copy.city = city;
+        copy.zip = zip;
+        copy.latitude = latitude;
+        copy.longitude = longitude;
+        copy.timezone = timezone;
+        copy.isp = isp;
+        copy.org = org;
+        copy.as = as;
+        copy.query = query;
+        copy.proxy = proxy;
+        copy.hosting = hosting;
+        copy.mobile = mobile;
+        return copy;
+    }
+
+    void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkMutable() {
+        if (frozen) throw new IllegalStateException("Las instancias compartidas de GeoLocation no se pueden cambiar");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GeoLocation)) return false;
+        GeoLocation other = (GeoLocation) o;
+        return Double.compare(latitude, other.latitude) == 0
+            && Double.compare(longitude, other.longitude) == 0
+            && proxy == other.proxy && hosting == other.hosting && mobile == other.mobile
+            && Objects.equals(country, other.country) && Objects.equals(countryCode, other.countryCode)
+            && Objects.equals(region, other.region) && Objects.equals(regionName, other.regionName)
+            && Objects.equals(city, other.city) && Objects.equals(zip, other.zip)
+            && Objects.equals(timezone, other.timezone) && Objects.equals(isp, other.isp)
+            && Objects.equals(org, other.org) && Objects.equals(as, other.as)
+            && Objects.equals(query, other.query);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(country, countryCode, region, regionName, city, zip, latitude, longitude,
+            timezone, isp, org, as, query, proxy, hosting, mobile);
+    }
+
 
     public String getCountry() { return country; }
-    public void setCountry(String country) { this.country = country; }
+    public void setCountry(String country) { checkMutable(); this.country = country; }
 
     public String getCountryCode() { return countryCode; }
-    public void setCountryCode(String countryCode) { this.countryCode = countryCode; }
+    public void setCountryCode(String countryCode) { checkMutable(); this.countryCode = countryCode; }
 
     public String getRegion() { return region; }
-    public void setRegion(String region) { this.region = region; }
+    public void setRegion(String region) { checkMutable(); this.region = region; }
 
     public String getRegionName() { return regionName; }
-    public void setRegionName(String regionName) { this.regionName = regionName; }
+    public void setRegionName(String regionName) { checkMutable(); this.regionName = regionName; }
 
     public String getCity() { return city; }
-    public void setCity(String city) { this.city = city; }
+    public void setCity(String city) { checkMutable(); this.city = city; }
 
     public String getZip() { return zip; }
-    public void setZip(String zip) { this.zip = zip; }
+    public void setZip(String zip) { checkMutable(); this.zip = zip; }
 
     public double getLatitude() { return latitude; }
-    public void setLatitude(double latitude) { this.latitude = latitude; }
+    public void setLatitude(double latitude) { checkMutable(); this.latitude = latitude; }
 
     public double getLongitude() { return longitude; }
-    public void setLongitude(double longitude) { this.longitude = longitude; }
+    public void setLongitude(double longitude) { checkMutable(); this.longitude = longitude; }
 
     public String getTimezone() { return timezone; }
-    public void setTimezone(String timezone) { this.timezone = timezone; }
+    public void setTimezone(String timezone) { checkMutable(); this.timezone = timezone; }
 
     public String getIsp() { return isp; }
-    public void setIsp(String isp) { this.isp = isp; }
+    public void setIsp(String isp) { checkMutable(); this.isp = isp; }
 
     public String getOrg() { return org; }
-    public void setOrg(String org) { this.org = org; }
+    public void setOrg(String org) { checkMutable(); this.org = org; }
 
     public String getAs() { return as; }
-    public void setAs(String as) { this.as = as; }
+    public void setAs(String as) { checkMutable(); this.as = as; }
 
     public String getQuery() { return query; }
-    public void setQuery(String query) { this.query = query; }
+    public void setQuery(String query) { checkMutable(); this.query = query; }
 
     public boolean isProxy() { return proxy; }
-    public void setProxy(boolean proxy) { this.proxy = proxy; }
+    public void setProxy(boolean proxy) { checkMutable(); this.proxy = proxy; }
 
     public boolean isHosting() { return hosting; }
-    public void setHosting(boolean hosting) { this.hosting = hosting; }
+    public void setHosting(boolean hosting) { checkMutable(); this.hosting = hosting; }
 
     public boolean isMobile() { return mobile; }
-    public void setMobile(boolean mobile) { this.mobile = mobile; }
+    public void setMobile(boolean mobile) { checkMutable(); this.mobile = mobile; }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package me.lssupportteam.ipdynamic.models;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tablas acotadas para compartir ubicaciones y sus textos, que se repiten en muchas IPs.
+ * Pasado el límite se congelan sin compartir, así valores únicos en masa no las hacen crecer
+ */
+public final class GeoLocationPool {
+
+    // Cabeceras y campos de un GeoLocation en una JVM de 64 bits con oops comprimidos
+    private static final int LOCATION_BYTES = 80;
+
+    private final int maxLocations;
+    private final int maxStrings;
+    private final ConcurrentHashMap<GeoLocation, GeoLocation> locations;
+    private final ConcurrentHashMap<String, String> strings;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong sharedLocations = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    public GeoLocationPool(int maxLocations, int maxStrings) {
+        this.maxLocations = maxLocations;
+        this.maxStrings = maxStrings;
+        this.locations = new ConcurrentHashMap<>();
+        this.strings = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Instancia compartida y congelada igual a la dada. Se quita la IP consultada,
+     * el mismo sitio lo comparten todas sus IPs y la tabla de IPs sabe cuál es cuál
+     */
+    public GeoLocation intern(GeoLocation location) {
+        if (location == null || location.isFrozen()) return location;
+        requests.incrementAndGet();
+
+        GeoLocation candidate = location.copy();
+        candidate.setQuery(null);
+        candidate.setCountry(internString(candidate.getCountry()));
+        candidate.setCountryCode(internString(candidate.getCountryCode()));
+        candidate.setRegion(internString(candidate.getRegion()));
+        candidate.setRegionName(internString(candidate.getRegionName()));
+        candidate.setCity(internString(candidate.getCity()));
+        candidate.setZip(internString(candidate.getZip()));
+        candidate.setTimezone(internString(candidate.getTimezone()));
+        candidate.setIsp(internString(candidate.getIsp()));
+        candidate.setOrg(internString(candidate.getOrg()));
+        candidate.setAs(internString(candidate.getAs()));
+        candidate.freeze();
+
+        GeoLocation canonical = locations.get(candidate);
+        if (canonical == null && locations.size() < maxLocations) {
+            canonical = locations.putIfAbsent(candidate, candidate);
+        }
+        if (canonical == null) return candidate;
+
+        sharedLocations.incrementAndGet();
+        savedBytes.addAndGet(LOCATION_BYTES);
+        return canonical;
+    }
+
+    /**
+     * Copia compartida de un texto de las ubicaciones, se usa al leerlas
+     */
+    public String internString(String value) {
+        if (value == null) return null;
+
+        String canonical = strings.get(value);
+        if (canonical == null) {
+            if (strings.size() >= maxStrings) return value;
+            canonical = strings.putIfAbsent(value, value);
+            if (canonical == null) return value;
+        }
+
+        if (canonical != value) {
+            savedBytes.addAndGet(stringBytes(value));
+        }
+        return canonical;
+    }
+
+    // Un String y su array Latin-1 o UTF-16, ambos alineados a 8 bytes
+    static long stringBytes(String value) {
+        if (value == null) return 0;
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return 24 + ((16 + (long) value.length() * bytesPerChar + 7) & ~7L);
+    }
+
+    /**
+     * Suelta las instancias compartidas, las ya entregadas siguen valiendo
+     */
+    public void clear() {
+        locations.clear();
+        strings.clear();
+    }
+
+    public int getLocationCount() {
+        return locations.size();
+    }
+
+    public int getStringCount() {
+        return strings.size();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getSharedLocations() {
+        return sharedLocations.get();
+    }
+
+    /**
+     * Memoria no reservada, o liberada, por entregar una instancia compartida
+     */
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+}
@@ -0,0 +1,170 @@
+package me.lssupportteam.ipdynamic.models;
+
+import me.lssupportteam.ipdynamic.utils.IPUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * El único sitio donde se guarda cada IP con lo que se sabe de ella, una vez aunque la compartan
+ * muchas cuentas. Un registro conserva sus entradas aunque se quiten de la tabla
+ */
+public final class IpMetadataTable {
+
+    // Cabecera y campos de un Entry y de un nodo del ConcurrentHashMap, JVM de 64 bits con oops comprimidos
+    private static final int ENTRY_BYTES = 48;
+    private static final int MAP_NODE_BYTES = 32;
+
+    private final GeoLocationPool locations;
+    private final ConcurrentHashMap<String, Entry> byIp = new ConcurrentHashMap<>();
+    private volatile int hubThreshold = 50;
+    private final AtomicLong locationChanges = new AtomicLong();
+
+    /**
+     * Las ubicaciones de las entradas se comparten con el pool dado
+     */
+    public IpMetadataTable(GeoLocationPool locations) {
+        this.locations = locations;
+    }
+
+    public GeoLocationPool getLocations() {
+        return locations;
+    }
+
+    /**
+     * Entrada de una IP, creada en el primer uso
+     */
+    public Entry intern(String ip) {
+        Entry entry = byIp.get(ip);
+        return entry != null ? entry : byIp.computeIfAbsent(ip, Entry::new);
+    }
+
+    /**
+     * Entrada de una IP sin crearla, null si nunca se vio
+     */
+    public Entry find(String ip) {
+        return ip != null ? byIp.get(ip) : null;
+    }
+
+    /**
+     * Quita una entrada si sigue siendo la de su IP, su ubicación no se guarda en el siguiente guardado
+     */
+    public boolean remove(Entry entry) {
+        if (!byIp.remove(entry.ip, entry)) return false;
+        if (entry.geoLocation != null) {
+            locationChanges.incrementAndGet();
+        }
+        return true;
+    }
+
+    public void forEach(Consumer<Entry> consumer) {
+        byIp.values().forEach(consumer);
+    }
+
+    public int size() {
+        return byIp.size();
+    }
+
+    /**
+     * Olvida todas las IPs y ubicaciones compartidas, al releer los jugadores
+     */
+    public void clear() {
+        byIp.clear();
+        locations.clear();
+        locationChanges.incrementAndGet();
+    }
+
+    /**
+     * IPs shared by more accounts than this are hubs (cafés, schools, proxies)
+     */
+    public void setHubThreshold(int hubThreshold) {
+        this.hubThreshold = hubThreshold;
+    }
+
+    /**
+     * Crece con cada ubicación guardada, así un guardado sabe si hay algo nuevo
+     */
+    public long getLocationVersion() {
+        return locationChanges.get();
+    }
+
+    public int getHubCount() {
+        int hubs = 0;
+        for (Entry entry : byIp.values()) {
+            if (entry.isHub()) hubs++;
+        }
+        return hubs;
+    }
+
+
+    public final class Entry {
+        private final String ip;
+        private final int address; // IPv4 empaquetada, -1 para IPv6
+        private volatile GeoLocation geoLocation;
+        private volatile int asn;
+        private volatile int accounts;
+        private long firstSeen; // Protegido por this
+        private long lastSeen; // Protegido por this
+
+        private Entry(String ip) {
+            this.ip = ip;
+            this.address = IPUtils.toInt(ip);
+        }
+
+        public synchronized void recordSeen(long timestamp) {
+            if (timestamp <= 0) return;
+            if (firstSeen == 0 || timestamp < firstSeen) firstSeen = timestamp;
+            if (timestamp > lastSeen) lastSeen = timestamp;
+        }
+
+        public String getIp() { return ip; }
+
+        public int getAddress() { return address; }
+
+        public GeoLocation getGeoLocation() { return geoLocation; }
+
+        public void setGeoLocation(GeoLocation geoLocation) {
+            this.geoLocation = locations.intern(geoLocation);
+            this.asn = geoLocation != null ? parseAsn(geoLocation.getAs()) : 0;
+            locationChanges.incrementAndGet();
+        }
+
+        /**
+         * Número de sistema autónomo de la red, 0 si no se sabe
+         */
+        public int getAsn() { return asn; }
+
+        public int getAccounts() { return accounts; }
+
+        public void setAccounts(int accounts) { this.accounts = accounts; }
+
+        public boolean isHub() {
+            return accounts > hubThreshold;
+        }
+
+        /**
+         * Memoria de la entrada, su texto de IP y su hueco en la tabla, sin la ubicación compartida
+         */
+        public long getRetainedBytes() {
+            return ENTRY_BYTES + MAP_NODE_BYTES + GeoLocationPool.stringBytes(ip);
+        }
+
+        public synchronized long getFirstSeen() { return firstSeen; }
+
+        public synchronized long getLastSeen() { return lastSeen; }
+    }
+
+    // ip-api da la red como "AS15169 Google LLC"
+    private static int parseAsn(String as) {
+        if (as == null || !as.startsWith("AS")) return 0;
+
+        int value = 0;
+        for (int i = 2; i < as.length(); i++) {
+            char c = as.charAt(i);
+            if (c < '0' || c > '9' || value > (Integer.MAX_VALUE - 9) / 10) break;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
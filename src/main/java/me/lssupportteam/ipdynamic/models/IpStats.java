@@ -0,0 +1,34 @@
+package me.lssupportteam.ipdynamic.models;
+
+public class IpStats {
+
+    private int connections;
+    private long firstSeen;
+    private long lastSeen;
+
+    public IpStats() {
+
+    }
+
+    public IpStats(int connections, long firstSeen, long lastSeen) {
+        this.connections = connections;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+    }
+
+    public void recordConnection(long timestamp) {
+        connections++;
+        if (firstSeen == 0 || timestamp < firstSeen) firstSeen = timestamp;
+        if (timestamp > lastSeen) lastSeen = timestamp;
+    }
+
+
+    public int getConnections() { return connections; }
+    public void setConnections(int connections) { this.connections = connections; }
+
+    public long getFirstSeen() { return firstSeen; }
+    public void setFirstSeen(long firstSeen) { this.firstSeen = firstSeen; }
+
+    public long getLastSeen() { return lastSeen; }
+    public void setLastSeen(long lastSeen) { this.lastSeen = lastSeen; }
+}
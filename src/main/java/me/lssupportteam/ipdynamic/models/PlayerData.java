@@ -1,114 +1,720 @@
 package me.lssupportteam.ipdynamic.models;
 
 import java.util.*;
+import java.util.function.Consumer;
 
+/**
+ * Registro de jugador como {@link Snapshot} inmutable y versionado: cada cambio copia, aplica y publica.
+ * Los cambios de un jugador van de un hilo a la vez, ver PlayerMutationShards
+ */
 public class PlayerData {
 
-    private UUID uuid;
-    private String username;
-    private String lastIp;
-    private long firstLogin;
-    private long lastLogin;
-    private List<String> ipHistory;
-    private Map<String, Long> ipTimestamps; // IP -> timestamp de primera vez vista
-    private GeoLocation geoLocation;
-    private int totalConnections;
-    private boolean isAdmin;
-    private List<String> linkedAccounts; // UUIDs de cuentas vinculadas (alts)
-
-    public PlayerData(UUID uuid, String username, String ip, long timestamp) {
-        this.uuid = uuid;
-        this.username = username;
-        this.lastIp = ip;
-        this.firstLogin = timestamp;
-        this.lastLogin = timestamp;
-        this.ipHistory = new ArrayList<>();
-        this.ipTimestamps = new HashMap<>();
-        this.linkedAccounts = new ArrayList<>();
-        this.totalConnections = 1;
-        this.isAdmin = false;
+    // Cabeceras y campos en una JVM de 64 bits con oops comprimidos
+    private static final int PLAYER_BYTES = 16;
+    private static final int SNAPSHOT_BYTES = 88;
+    private static final int UUID_BYTES = 32;
+    private static final int ARRAY_HEADER = 16;
+    private static final int LIST_BYTES = 56; // Vista no modificable sobre un ArrayList
+
+    private volatile Snapshot current;
+
+    public PlayerData(IpMetadataTable ips, UUID uuid, String username, String ip, long timestamp) {
+        Snapshot snapshot = new Snapshot(ips);
+        snapshot.uuid = uuid;
+        snapshot.username = username;
+        snapshot.lastIp = ip;
+        snapshot.firstLogin = timestamp;
+        snapshot.lastLogin = timestamp;
+        snapshot.totalConnections = 1;
+        snapshot.isAdmin = false;
 
         if (ip != null && !ip.equals("UNKNOWN")) {
-            this.ipHistory.add(ip);
-            this.ipTimestamps.put(ip, timestamp);
+            int slot = snapshot.addSlot(ip);
+            snapshot.ipTimes[slot * 3] = timestamp;
+            snapshot.historySize = 1;
         }
+        this.current = snapshot;
     }
 
 
-    public PlayerData() {
-        this.ipHistory = new ArrayList<>();
-        this.ipTimestamps = new HashMap<>();
-        this.linkedAccounts = new ArrayList<>();
+    private PlayerData(Snapshot snapshot) {
+        this.current = snapshot;
     }
 
-    public void addIpToHistory(String ip, int maxHistory) {
-        if (ip == null || ip.equals("UNKNOWN")) return;
+    /**
+     * Empieza un registro leído por un cargador, sus IPs van a la tabla dada
+     */
+    public static Builder builder(IpMetadataTable ips) {
+        return new Builder(ips);
+    }
+
+    /**
+     * Versión actual del registro, todo lo leído de ella es del mismo cambio
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Registro que sigue leyendo la versión actual, así cada getter ve el mismo cambio
+     */
+    public PlayerData pinned() {
+        return new PlayerData(current);
+    }
+
+    public long getVersion() {
+        return current.version;
+    }
 
-        if (!ipHistory.contains(ip)) {
-            ipHistory.add(ip);
-            ipTimestamps.putIfAbsent(ip, System.currentTimeMillis());
+    /**
+     * Memoria de la versión actual del registro, lo que libera quitarlo
+     */
+    public long getRetainedBytes() {
+        return PLAYER_BYTES + current.getRetainedBytes();
+    }
+
+    private void update(Consumer<Snapshot> change) {
+        Snapshot previous = current;
+        Snapshot next = previous.copy();
+        change.accept(next);
+        next.version = previous.version + 1;
+        current = next;
+    }
 
+    /**
+     * Aplica un login como un solo cambio, true si viene de otra IP que la última
+     */
+    public boolean recordLogin(String username, String ip, long timestamp, boolean admin, int maxHistory) {
+        boolean known = ip != null && !ip.equals("UNKNOWN");
+        boolean newIp = known && !ip.equals(current.lastIp);
 
-            if (maxHistory > 0 && ipHistory.size() > maxHistory) {
-                String oldestIp = ipHistory.remove(0);
-                ipTimestamps.remove(oldestIp);
+        update(next -> {
+            next.username = username;
+            next.lastLogin = timestamp;
+            next.totalConnections++;
+            if (admin) next.isAdmin = true;
+            if (known) next.recordIpConnection(ip, timestamp);
+
+            if (newIp) {
+                next.lastIp = ip;
+                next.addIpToHistory(ip, maxHistory);
             }
-        }
+        });
+        return newIp;
+    }
+
+    public void addIpToHistory(String ip, int maxHistory) {
+        if (ip == null || ip.equals("UNKNOWN") || current.isInHistory(ip)) return;
+        update(next -> next.addIpToHistory(ip, maxHistory));
     }
 
     public void incrementConnections() {
-        this.totalConnections++;
+        update(next -> next.totalConnections++);
     }
 
-    public void addLinkedAccount(String uuid) {
-        if (!linkedAccounts.contains(uuid)) {
-            linkedAccounts.add(uuid);
-        }
+    public void recordIpConnection(String ip, long timestamp) {
+        if (ip == null || ip.equals("UNKNOWN")) return;
+        update(next -> next.recordIpConnection(ip, timestamp));
     }
 
-    public void removeLinkedAccount(String uuid) {
-        linkedAccounts.remove(uuid);
+    public int getIpConnections(String ip) {
+        return current.getIpConnections(ip);
+    }
+
+    public boolean addLinkedAccount(String uuid) {
+        if (current.linkedAccounts.contains(uuid)) return false;
+
+        update(next -> {
+            List<String> linked = new ArrayList<>(next.linkedAccounts);
+            linked.add(uuid);
+            next.setLinkedAccounts(linked);
+        });
+        return true;
+    }
+
+    public boolean removeLinkedAccount(String uuid) {
+        if (!current.linkedAccounts.contains(uuid)) return false;
+
+        update(next -> {
+            List<String> linked = new ArrayList<>(next.linkedAccounts);
+            linked.remove(uuid);
+            next.setLinkedAccounts(linked);
+        });
+        return true;
     }
 
     public boolean hasMultipleIps() {
-        return ipHistory.size() > 1;
+        return current.historySize > 1;
     }
 
     public long getIpFirstSeen(String ip) {
-        return ipTimestamps.getOrDefault(ip, 0L);
+        return current.getIpFirstSeen(ip);
+    }
+
+    public long getIpLastSeen(String ip) {
+        return current.getIpLastSeen(ip);
+    }
+
+    public boolean forgetIp(String ip) {
+        if (!current.isInHistory(ip)) return false;
+
+        update(next -> next.removeSlot(next.slotOf(ip)));
+        return true;
+    }
+
+
+    public UUID getUuid() { return current.uuid; }
+    public void setUuid(UUID uuid) { update(next -> next.uuid = uuid); }
+
+    public String getUsername() { return current.username; }
+    public void setUsername(String username) { update(next -> next.username = username); }
+
+    public String getLastIp() { return current.lastIp; }
+    public void setLastIp(String lastIp) { update(next -> next.lastIp = lastIp); }
+
+    public long getFirstLogin() { return current.firstLogin; }
+    public void setFirstLogin(long firstLogin) { update(next -> next.firstLogin = firstLogin); }
+
+    public long getLastLogin() { return current.lastLogin; }
+    public void setLastLogin(long lastLogin) { update(next -> next.lastLogin = lastLogin); }
+
+    // Las IPs se leen con vistas de solo lectura de la versión actual, ver Snapshot
+
+    public List<String> getIpHistory() { return current.getIpHistory(); }
+    public void setIpHistory(List<String> ipHistory) { update(next -> next.setIpHistory(ipHistory)); }
+
+    public Map<String, Long> getIpTimestamps() { return current.getIpTimestamps(); }
+    public void setIpTimestamps(Map<String, Long> ipTimestamps) { update(next -> next.setIpTimestamps(ipTimestamps)); }
+
+    public Map<String, IpStats> getIpStats() { return current.getIpStats(); }
+    public void setIpStats(Map<String, IpStats> ipStats) { update(next -> next.setIpStats(ipStats)); }
+
+    public GeoLocation getGeoLocation() { return current.getGeoLocation(); }
+
+    public int getTotalConnections() { return current.totalConnections; }
+    public void setTotalConnections(int totalConnections) { update(next -> next.totalConnections = totalConnections); }
+
+    public boolean isAdmin() { return current.isAdmin; }
+    public void setAdmin(boolean admin) { update(next -> next.isAdmin = admin); }
+
+    public List<String> getLinkedAccounts() { return current.linkedAccounts; }
+    public void setLinkedAccounts(List<String> linkedAccounts) { update(next -> next.setLinkedAccounts(linkedAccounts)); }
+
+
+    /**
+     * Rellena la primera versión de un registro guardado. Los setters van en orden de llamada,
+     * el historial de IPs antes de sus tiempos y estadísticas
+     */
+    public static final class Builder {
+        private Snapshot snapshot;
+
+        private Builder(IpMetadataTable ips) {
+            this.snapshot = new Snapshot(ips);
+        }
+
+        private Snapshot pending() {
+            if (snapshot == null) {
+                throw new IllegalStateException("El registro ya se construyó");
+            }
+            return snapshot;
+        }
+
+        public Builder uuid(UUID uuid) { pending().setUuid(uuid); return this; }
+        public Builder username(String username) { pending().setUsername(username); return this; }
+        public Builder lastIp(String lastIp) { pending().setLastIp(lastIp); return this; }
+        public Builder firstLogin(long firstLogin) { pending().setFirstLogin(firstLogin); return this; }
+        public Builder lastLogin(long lastLogin) { pending().setLastLogin(lastLogin); return this; }
+        public Builder ipHistory(List<String> ipHistory) { pending().setIpHistory(ipHistory); return this; }
+        public Builder ipTimestamps(Map<String, Long> ipTimestamps) { pending().setIpTimestamps(ipTimestamps); return this; }
+        public Builder ipStats(Map<String, IpStats> ipStats) { pending().setIpStats(ipStats); return this; }
+        public Builder geoLocation(GeoLocation geoLocation) { pending().setGeoLocation(geoLocation); return this; }
+        public Builder totalConnections(int totalConnections) { pending().setTotalConnections(totalConnections); return this; }
+        public Builder admin(boolean admin) { pending().setAdmin(admin); return this; }
+        public Builder linkedAccounts(List<String> linkedAccounts) { pending().setLinkedAccounts(linkedAccounts); return this; }
+
+        /**
+         * Publica el registro, el builder ya no lo puede cambiar
+         */
+        public PlayerData build() {
+            PlayerData player = new PlayerData(pending());
+            snapshot = null;
+            return player;
+        }
     }
 
 
-    public UUID getUuid() { return uuid; }
-    public void setUuid(UUID uuid) { this.uuid = uuid; }
+    /**
+     * Una versión del registro, nunca cambia una vez publicada. Las IPs son entradas de una
+     * {@link IpMetadataTable}, un hueco por IP; los getters dan vistas de solo lectura con las IPs como texto
+     */
+    public static final class Snapshot {
 
-    public String getUsername() { return username; }
-    public void setUsername(String username) { this.username = username; }
+        private static final IpMetadataTable.Entry[] NO_ENTRIES = new IpMetadataTable.Entry[0];
+        private static final int[] NO_CONNECTIONS = new int[0];
+        private static final long[] NO_TIMES = new long[0];
+        private static final int NO_STATS = -1;
 
-    public String getLastIp() { return lastIp; }
-    public void setLastIp(String lastIp) { this.lastIp = lastIp; }
+        private final IpMetadataTable ips;
+        private long version;
+        private UUID uuid;
+        private String username;
+        private String lastIp;
+        private long firstLogin;
+        private long lastLogin;
+        // Por hueco la entrada de IP, sus conexiones (NO_STATS sin estadísticas) y tres longs: primera vez,
+        // primera y última conexión (0 si no se sabe). Los primeros historySize huecos son el historial.
+        // Los arrays se comparten entre versiones, un cambio siempre escribe otros nuevos
+        private IpMetadataTable.Entry[] ipEntries = NO_ENTRIES;
+        private int[] ipConnections = NO_CONNECTIONS;
+        private long[] ipTimes = NO_TIMES;
+        private int historySize;
+        private int totalConnections;
+        private boolean isAdmin;
+        private List<String> linkedAccounts = Collections.emptyList(); // UUIDs de cuentas vinculadas (alts)
 
-    public long getFirstLogin() { return firstLogin; }
-    public void setFirstLogin(long firstLogin) { this.firstLogin = firstLogin; }
+        private Snapshot(IpMetadataTable ips) {
+            this.ips = ips;
+        }
 
-    public long getLastLogin() { return lastLogin; }
-    public void setLastLogin(long lastLogin) { this.lastLogin = lastLogin; }
+        private Snapshot copy() {
+            Snapshot copy = new Snapshot(ips);
+            copy.uuid = uuid;
+            copy.username = username;
+            copy.lastIp = lastIp;
+            copy.firstLogin = firstLogin;
+            copy.lastLogin = lastLogin;
+            copy.ipEntries = ipEntries;
+            copy.ipConnections = ipConnections;
+            copy.ipTimes = ipTimes;
+            copy.historySize = historySize;
+            copy.totalConnections = totalConnections;
+            copy.isAdmin = isAdmin;
+            copy.linkedAccounts = linkedAccounts;
+            return copy;
+        }
 
-    public List<String> getIpHistory() { return ipHistory; }
-    public void setIpHistory(List<String> ipHistory) { this.ipHistory = ipHistory; }
+        private int slotCount() {
+            return ipEntries.length;
+        }
 
-    public Map<String, Long> getIpTimestamps() { return ipTimestamps; }
-    public void setIpTimestamps(Map<String, Long> ipTimestamps) { this.ipTimestamps = ipTimestamps; }
+        private String ipAt(int slot) {
+            return ipEntries[slot].getIp();
+        }
 
-    public GeoLocation getGeoLocation() { return geoLocation; }
-    public void setGeoLocation(GeoLocation geoLocation) { this.geoLocation = geoLocation; }
+        private int slotOf(String ip) {
+            if (ip == null) return -1;
+            for (int slot = 0, count = slotCount(); slot < count; slot++) {
+                // Suele ser la misma instancia, la tabla da una por IP
+                if (ip.equals(ipEntries[slot].getIp())) return slot;
+            }
+            return -1;
+        }
 
-    public int getTotalConnections() { return totalConnections; }
-    public void setTotalConnections(int totalConnections) { this.totalConnections = totalConnections; }
+        private boolean isInHistory(String ip) {
+            int slot = slotOf(ip);
+            return slot >= 0 && slot < historySize;
+        }
 
-    public boolean isAdmin() { return isAdmin; }
-    public void setAdmin(boolean admin) { isAdmin = admin; }
+        // Los arrays pueden ser de una versión publicada, se copian antes de escribir
+        private void detach() {
+            ipEntries = ipEntries.clone();
+            ipConnections = ipConnections.clone();
+            ipTimes = ipTimes.clone();
+        }
+
+        // Añade un hueco vacío al final, en arrays nuevos
+        private int addSlot(String ip) {
+            int slot = slotCount();
+            ipEntries = Arrays.copyOf(ipEntries, slot + 1);
+            ipConnections = Arrays.copyOf(ipConnections, slot + 1);
+            ipTimes = Arrays.copyOf(ipTimes, ipTimes.length + 3);
+            ipEntries[slot] = ips.intern(ip);
+            ipConnections[slot] = NO_STATS;
+            return slot;
+        }
+
+        private void removeSlot(int slot) {
+            IpMetadataTable.Entry[] entries = new IpMetadataTable.Entry[ipEntries.length - 1];
+            System.arraycopy(ipEntries, 0, entries, 0, slot);
+            System.arraycopy(ipEntries, slot + 1, entries, slot, entries.length - slot);
+            int[] connections = new int[ipConnections.length - 1];
+            System.arraycopy(ipConnections, 0, connections, 0, slot);
+            System.arraycopy(ipConnections, slot + 1, connections, slot, connections.length - slot);
+            long[] times = new long[ipTimes.length - 3];
+            System.arraycopy(ipTimes, 0, times, 0, slot * 3);
+            System.arraycopy(ipTimes, slot * 3 + 3, times, slot * 3, times.length - slot * 3);
+
+            ipEntries = entries;
+            ipConnections = connections;
+            ipTimes = times;
+            if (slot < historySize) historySize--;
+        }
+
+        // Mueve un hueco hacia atrás a to (to <= from), en arrays ya copiados
+        private void moveSlot(int from, int to) {
+            IpMetadataTable.Entry entry = ipEntries[from];
+            int connections = ipConnections[from];
+            long firstSeen = ipTimes[from * 3];
+            long statsFirst = ipTimes[from * 3 + 1];
+            long statsLast = ipTimes[from * 3 + 2];
+
+            System.arraycopy(ipEntries, to, ipEntries, to + 1, from - to);
+            System.arraycopy(ipConnections, to, ipConnections, to + 1, from - to);
+            System.arraycopy(ipTimes, to * 3, ipTimes, to * 3 + 3, (from - to) * 3);
+            ipEntries[to] = entry;
+            ipConnections[to] = connections;
+            ipTimes[to * 3] = firstSeen;
+            ipTimes[to * 3 + 1] = statsFirst;
+            ipTimes[to * 3 + 2] = statsLast;
+        }
+
+        // Los huecos fuera del historial solo se guardan si tienen tiempo o estadísticas
+        private void dropEmptySlots() {
+            for (int slot = slotCount() - 1; slot >= historySize; slot--) {
+                if (ipConnections[slot] == NO_STATS && ipTimes[slot * 3] == 0) {
+                    removeSlot(slot);
+                }
+            }
+        }
+
+        private void addIpToHistory(String ip, int maxHistory) {
+            int slot = slotOf(ip);
+            if (slot >= 0 && slot < historySize) return;
+
+            detach();
+            if (slot < 0) slot = addSlot(ip);
+            moveSlot(slot, historySize);
+            slot = historySize++;
+            if (ipTimes[slot * 3] == 0) ipTimes[slot * 3] = System.currentTimeMillis();
+
+
+            if (maxHistory > 0 && historySize > maxHistory) {
+                removeSlot(0);
+            }
+        }
+
+        private void recordIpConnection(String ip, long timestamp) {
+            int slot = slotOf(ip);
+            detach();
+            if (slot < 0) slot = addSlot(ip);
+
+            int connections = ipConnections[slot];
+            if (connections == NO_STATS) {
+                connections = 0;
+                ipTimes[slot * 3 + 1] = 0;
+                ipTimes[slot * 3 + 2] = 0;
+            }
+            ipConnections[slot] = connections + 1;
+            long firstSeen = ipTimes[slot * 3 + 1];
+            if (firstSeen == 0 || timestamp < firstSeen) ipTimes[slot * 3 + 1] = timestamp;
+            if (timestamp > ipTimes[slot * 3 + 2]) ipTimes[slot * 3 + 2] = timestamp;
+        }
 
-    public List<String> getLinkedAccounts() { return linkedAccounts; }
-    public void setLinkedAccounts(List<String> linkedAccounts) { this.linkedAccounts = linkedAccounts; }
-}
\ No newline at end of file
+        public long getIpFirstSeen(String ip) {
+            int slot = slotOf(ip);
+            return slot >= 0 ? ipTimes[slot * 3] : 0L;
+        }
+
+        public long getIpLastSeen(String ip) {
+            int slot = slotOf(ip);
+            if (slot >= 0 && ipConnections[slot] != NO_STATS && ipTimes[slot * 3 + 2] > 0) {
+                return ipTimes[slot * 3 + 2];
+            }
+            return ip.equals(lastIp) ? lastLogin : getIpFirstSeen(ip);
+        }
+
+        public int getIpConnections(String ip) {
+            int slot = slotOf(ip);
+            return slot >= 0 && ipConnections[slot] != NO_STATS ? ipConnections[slot] : 0;
+        }
+
+        /**
+         * Memoria de esta versión, sin los textos ni entradas de IP, que son de la tabla
+         */
+        long getRetainedBytes() {
+            long bytes = SNAPSHOT_BYTES + UUID_BYTES + GeoLocationPool.stringBytes(username);
+            if (ipEntries.length > 0) {
+                bytes += align(ARRAY_HEADER + 4L * ipEntries.length) * 2 + align(ARRAY_HEADER + 8L * ipTimes.length);
+            }
+            if (linkedAccounts != null && !linkedAccounts.isEmpty()) {
+                bytes += LIST_BYTES + align(ARRAY_HEADER + 4L * linkedAccounts.size());
+                for (String linked : linkedAccounts) {
+                    bytes += GeoLocationPool.stringBytes(linked);
+                }
+            }
+            return bytes;
+        }
+
+        private static long align(long bytes) {
+            return (bytes + 7) & ~7L;
+        }
+
+
+        public long getVersion() { return version; }
+
+        public UUID getUuid() { return uuid; }
+        private void setUuid(UUID uuid) { this.uuid = uuid; }
+
+        public String getUsername() { return username; }
+        private void setUsername(String username) { this.username = username; }
+
+        public String getLastIp() { return lastIp; }
+        private void setLastIp(String lastIp) { this.lastIp = lastIp; }
+
+        public long getFirstLogin() { return firstLogin; }
+        private void setFirstLogin(long firstLogin) { this.firstLogin = firstLogin; }
+
+        public long getLastLogin() { return lastLogin; }
+        private void setLastLogin(long lastLogin) { this.lastLogin = lastLogin; }
+
+        public List<String> getIpHistory() { return new HistoryView(); }
+
+        /**
+         * Reemplaza el historial, conservando los tiempos y estadísticas de sus IPs
+         */
+        private void setIpHistory(List<String> ipHistory) {
+            List<String> history = ipHistory != null ? ipHistory : Collections.emptyList();
+            int previous = slotCount();
+            IpMetadataTable.Entry[] entries = new IpMetadataTable.Entry[history.size() + previous];
+            int[] connections = new int[history.size() + previous];
+            long[] times = new long[(history.size() + previous) * 3];
+            boolean[] taken = new boolean[previous];
+            int count = 0;
+
+            for (String ip : history) {
+                if (ip == null || containsIp(entries, count, ip)) continue;
+
+                int old = slotOf(ip);
+                if (old >= 0) {
+                    taken[old] = true;
+                    entries[count] = ipEntries[old];
+                    connections[count] = ipConnections[old];
+                    System.arraycopy(ipTimes, old * 3, times, count * 3, 3);
+                } else {
+                    entries[count] = ips.intern(ip);
+                    connections[count] = NO_STATS;
+                }
+                count++;
+            }
+            int size = count;
+
+            for (int old = 0; old < previous; old++) {
+                if (!taken[old] && (ipConnections[old] != NO_STATS || ipTimes[old * 3] != 0)) {
+                    entries[count] = ipEntries[old];
+                    connections[count] = ipConnections[old];
+                    System.arraycopy(ipTimes, old * 3, times, count * 3, 3);
+                    count++;
+                }
+            }
+
+            ipEntries = Arrays.copyOf(entries, count);
+            ipConnections = Arrays.copyOf(connections, count);
+            ipTimes = Arrays.copyOf(times, count * 3);
+            historySize = size;
+        }
+
+        private static boolean containsIp(IpMetadataTable.Entry[] entries, int count, String ip) {
+            for (int i = 0; i < count; i++) {
+                if (ip.equals(entries[i].getIp())) return true;
+            }
+            return false;
+        }
+
+        public Map<String, Long> getIpTimestamps() {
+            return new SlotMap<Long>() {
+                @Override
+                boolean has(int slot) {
+                    return ipTimes[slot * 3] != 0;
+                }
+
+                @Override
+                Long valueAt(int slot) {
+                    return ipTimes[slot * 3];
+                }
+            };
+        }
+
+        private void setIpTimestamps(Map<String, Long> ipTimestamps) {
+            detach();
+            for (int slot = 0, count = slotCount(); slot < count; slot++) {
+                ipTimes[slot * 3] = 0;
+            }
+            if (ipTimestamps != null) {
+                for (Map.Entry<String, Long> entry : ipTimestamps.entrySet()) {
+                    if (entry.getKey() == null || entry.getValue() == null) continue;
+                    int slot = slotOf(entry.getKey());
+                    if (slot < 0) slot = addSlot(entry.getKey());
+                    ipTimes[slot * 3] = entry.getValue();
+                }
+            }
+            dropEmptySlots();
+        }
+
+        public Map<String, IpStats> getIpStats() {
+            return new SlotMap<IpStats>() {
+                @Override
+                boolean has(int slot) {
+                    return ipConnections[slot] != NO_STATS;
+                }
+
+                @Override
+                IpStats valueAt(int slot) {
+                    // Una copia, cambiarla no cambia el registro
+                    return new IpStats(ipConnections[slot], ipTimes[slot * 3 + 1], ipTimes[slot * 3 + 2]);
+                }
+            };
+        }
+
+        private void setIpStats(Map<String, IpStats> ipStats) {
+            detach();
+            for (int slot = 0, count = slotCount(); slot < count; slot++) {
+                ipConnections[slot] = NO_STATS;
+                ipTimes[slot * 3 + 1] = 0;
+                ipTimes[slot * 3 + 2] = 0;
+            }
+            if (ipStats != null) {
+                for (Map.Entry<String, IpStats> entry : ipStats.entrySet()) {
+                    IpStats stats = entry.getValue();
+                    if (entry.getKey() == null || stats == null) continue;
+                    int slot = slotOf(entry.getKey());
+                    if (slot < 0) slot = addSlot(entry.getKey());
+                    ipConnections[slot] = stats.getConnections();
+                    ipTimes[slot * 3 + 1] = stats.getFirstSeen();
+                    ipTimes[slot * 3 + 2] = stats.getLastSeen();
+                }
+            }
+            dropEmptySlots();
+        }
+
+        /**
+         * Ubicación de la última IP, o de la IP más nueva del historial que tenga una
+         */
+        public GeoLocation getGeoLocation() {
+            int lastSlot = slotOf(lastIp);
+            GeoLocation last = lastSlot >= 0 ? locationAt(lastSlot) : locationOf(ips.find(lastIp));
+            if (last != null) return last;
+
+            for (int slot = historySize - 1; slot >= 0; slot--) {
+                GeoLocation location = locationAt(slot);
+                if (location != null) return location;
+            }
+            return null;
+        }
+
+        // La entrada del registro pudo quitarse de la tabla y la IP volver a verse después
+        private GeoLocation locationAt(int slot) {
+            GeoLocation location = ipEntries[slot].getGeoLocation();
+            return location != null ? location : locationOf(ips.find(ipAt(slot)));
+        }
+
+        private static GeoLocation locationOf(IpMetadataTable.Entry entry) {
+            return entry != null ? entry.getGeoLocation() : null;
+        }
+
+        /**
+         * Guarda una ubicación leída con el registro en su IP, salvo que la IP ya tenga una.
+         * Las ubicaciones viven en la tabla de IPs, no en el registro
+         */
+        private void setGeoLocation(GeoLocation geoLocation) {
+            if (geoLocation == null) return;
+
+            String ip = geoLocation.getQuery() != null ? geoLocation.getQuery() : lastIp;
+            if (ip == null || ip.equals("UNKNOWN")) return;
+
+            IpMetadataTable.Entry entry = ips.intern(ip);
+            if (entry.getGeoLocation() == null) {
+                entry.setGeoLocation(geoLocation);
+            }
+        }
+
+        public int getTotalConnections() { return totalConnections; }
+        private void setTotalConnections(int totalConnections) { this.totalConnections = totalConnections; }
+
+        public boolean isAdmin() { return isAdmin; }
+        private void setAdmin(boolean admin) { isAdmin = admin; }
+
+        public List<String> getLinkedAccounts() { return linkedAccounts; }
+        private void setLinkedAccounts(List<String> linkedAccounts) {
+            this.linkedAccounts = linkedAccounts != null ? Collections.unmodifiableList(linkedAccounts) : null;
+        }
+
+
+        private class HistoryView extends AbstractList<String> implements RandomAccess {
+            @Override
+            public String get(int index) {
+                Objects.checkIndex(index, historySize);
+                return ipAt(index);
+            }
+
+            @Override
+            public int size() {
+                return historySize;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && isInHistory((String) o);
+            }
+        }
+
+        // Mapa de solo lectura de los huecos con valor
+        private abstract class SlotMap<V> extends AbstractMap<String, V> {
+
+            abstract boolean has(int slot);
+
+            abstract V valueAt(int slot);
+
+            @Override
+            public V get(Object key) {
+                int slot = key instanceof String ? slotOf((String) key) : -1;
+                return slot >= 0 && has(slot) ? valueAt(slot) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                int slot = key instanceof String ? slotOf((String) key) : -1;
+                return slot >= 0 && has(slot);
+            }
+
+            @Override
+            public Set<Map.Entry<String, V>> entrySet() {
+                return new AbstractSet<Map.Entry<String, V>>() {
+                    @Override
+                    public Iterator<Map.Entry<String, V>> iterator() {
+                        return new Iterator<Map.Entry<String, V>>() {
+                            private int next = advance(0);
+
+                            private int advance(int from) {
+                                int slot = from;
+                                while (slot < slotCount() && !has(slot)) slot++;
+                                return slot;
+                            }
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < slotCount();
+                            }
+
+                            @Override
+                            public Map.Entry<String, V> next() {
+                                if (!hasNext()) throw new NoSuchElementException();
+                                int slot = next;
+                                next = advance(slot + 1);
+                                return new AbstractMap.SimpleImmutableEntry<>(ipAt(slot), valueAt(slot));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        int size = 0;
+                        for (int slot = 0, count = slotCount(); slot < count; slot++) {
+                            if (has(slot)) size++;
+                        }
+                        return size;
+                    }
+                };
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import me.lssupportteam.ipdynamic.IPDynamic;
 import me.lssupportteam.ipdynamic.models.GeoLocation;
+import me.lssupportteam.ipdynamic.models.GeoLocationPool;
 import me.lssupportteam.ipdynamic.utils.IPUtils;
 
 import java.io.IOException;
@@ -21,6 +22,7 @@ public class GeoIPService {
     private final ConcurrentHashMap<String, CacheEntry> locationCache;
     private final String apiUrl;
     private final int cacheDuration;
+    private final GeoLocationPool locations;
 
 
     private static final int MAX_REQUESTS_PER_MINUTE = 45; // IP-API.com permite 45/min
@@ -29,6 +31,7 @@ public class GeoIPService {
 
     public GeoIPService(IPDynamic plugin) {
         this.plugin = plugin;
+        this.locations = plugin.getDataManager().getIpTable().getLocations();
         this.locationCache = new ConcurrentHashMap<>();
         this.apiUrl = "http://ip-api.com/json/";
         this.cacheDuration = plugin.getConfigManager().getGeoIpCacheDuration() * 1000; // Convertir a ms
@@ -189,7 +192,8 @@ public class GeoIPService {
                     ));
                 }
 
-                return location;
+                // IPs vecinas suelen dar el mismo sitio, comparten una instancia
+                return locations.intern(location);
             }
 
         } catch (IOException e) {
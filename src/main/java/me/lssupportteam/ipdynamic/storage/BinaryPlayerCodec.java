@@ -0,0 +1,584 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import me.lssupportteam.ipdynamic.models.GeoLocation;
+import me.lssupportteam.ipdynamic.models.GeoLocationPool;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
+import me.lssupportteam.ipdynamic.models.IpStats;
+import me.lssupportteam.ipdynamic.models.PlayerData;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Formato binario compacto de players.dat: bloques de hasta {@link #PLAYERS_PER_BLOCK} jugadores con
+ * su longitud y CRC32, cada uno con un diccionario de sus IPs. Un bloque vacío cierra el archivo
+ */
+public final class BinaryPlayerCodec {
+
+    private static final int MAGIC = 0x49504450; // "IPDP"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    // longitud(4) + crc(4)
+    private static final int FRAME_HEADER = 8;
+    private static final int PLAYERS_PER_BLOCK = 256;
+    private static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    // Etiquetas del diccionario
+    private static final byte IP_V4 = 4;
+    private static final byte IP_STRING = 0;
+
+    // Banderas del jugador
+    private static final int FLAG_ADMIN = 1;
+    private static final int FLAG_USERNAME = 1 << 1;
+    private static final int FLAG_GEO = 1 << 2;
+
+    // Etiquetas de cuentas enlazadas
+    private static final byte LINK_UUID = 0;
+    private static final byte LINK_STRING = 1;
+
+    private BinaryPlayerCodec() {
+    }
+
+
+    /**
+     * Escribe jugadores bloque a bloque, {@link #finish} vacía el último y escribe el cierre
+     */
+    public static class BlockWriter {
+
+        private final WritableByteChannel channel;
+        private final Buffer records;
+        private final Buffer frame;
+        private final Map<String, Integer> ipIds;
+        private final List<String> ips;
+        private final CRC32 crc;
+        private int playerCount;
+        private long lastTimestamp;
+        private int written;
+
+        public BlockWriter(WritableByteChannel channel) throws IOException {
+            this.channel = channel;
+            this.records = new Buffer(IO_BUFFER_SIZE);
+            this.frame = new Buffer(IO_BUFFER_SIZE);
+            this.ipIds = new HashMap<>();
+            this.ips = new ArrayList<>();
+            this.crc = new CRC32();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(header);
+        }
+
+        public void write(UUID uuid, PlayerData player) throws IOException {
+            // Todos los campos de la misma versión del registro
+            PlayerData.Snapshot data = player.snapshot();
+            records.writeLong(uuid.getMostSignificantBits());
+            records.writeLong(uuid.getLeastSignificantBits());
+
+            int flags = 0;
+            if (data.isAdmin()) flags |= FLAG_ADMIN;
+            if (data.getUsername() != null) flags |= FLAG_USERNAME;
+            if (data.getGeoLocation() != null) flags |= FLAG_GEO;
+            records.writeByte(flags);
+
+            if (data.getUsername() != null) records.writeString(data.getUsername());
+            records.writeVarInt(ipId(data.getLastIp()));
+            writeTimestamp(data.getFirstLogin());
+            writeTimestamp(data.getLastLogin());
+            records.writeVarInt(data.getTotalConnections());
+
+            List<String> history = data.getIpHistory() != null ? data.getIpHistory() : Collections.emptyList();
+            records.writeVarInt(history.size());
+            for (String ip : history) {
+                records.writeVarInt(ipId(ip));
+            }
+
+            Map<String, Long> timestamps = data.getIpTimestamps() != null ? data.getIpTimestamps() : Collections.emptyMap();
+            records.writeVarInt(countNonNull(timestamps));
+            for (Map.Entry<String, Long> entry : timestamps.entrySet()) {
+                if (entry.getValue() == null) continue;
+                records.writeVarInt(ipId(entry.getKey()));
+                writeTimestamp(entry.getValue());
+            }
+
+            Map<String, IpStats> stats = data.getIpStats() != null ? data.getIpStats() : Collections.emptyMap();
+            records.writeVarInt(countNonNull(stats));
+            for (Map.Entry<String, IpStats> entry : stats.entrySet()) {
+                IpStats ipStats = entry.getValue();
+                if (ipStats == null) continue;
+                records.writeVarInt(ipId(entry.getKey()));
+                records.writeVarInt(ipStats.getConnections());
+                writeTimestamp(ipStats.getFirstSeen());
+                writeTimestamp(ipStats.getLastSeen());
+            }
+
+            if (data.getGeoLocation() != null) {
+                writeGeoLocation(data.getGeoLocation());
+            }
+
+            List<String> linked = data.getLinkedAccounts() != null ? data.getLinkedAccounts() : Collections.emptyList();
+            records.writeVarInt(linked.size());
+            for (String account : linked) {
+                UUID linkedUuid = parseUuid(account);
+                if (linkedUuid != null) {
+                    records.writeByte(LINK_UUID);
+                    records.writeLong(linkedUuid.getMostSignificantBits());
+                    records.writeLong(linkedUuid.getLeastSignificantBits());
+                } else {
+                    records.writeByte(LINK_STRING);
+                    records.writeNullableString(account);
+                }
+            }
+
+            written++;
+            if (++playerCount >= PLAYERS_PER_BLOCK) {
+                flushBlock();
+            }
+        }
+
+        /**
+         * Vacía el bloque pendiente y escribe el cierre, devuelve los jugadores escritos
+         */
+        public int finish() throws IOException {
+            flushBlock();
+            ByteBuffer end = ByteBuffer.allocate(FRAME_HEADER);
+            end.putInt(0).putInt(0).flip();
+            writeFully(end);
+            return written;
+        }
+
+        private void writeGeoLocation(GeoLocation location) {
+            records.writeNullableString(location.getCountry());
+            records.writeNullableString(location.getCountryCode());
+            records.writeNullableString(location.getRegion());
+            records.writeNullableString(location.getRegionName());
+            records.writeNullableString(location.getCity());
+            records.writeNullableString(location.getZip());
+            records.writeLong(Double.doubleToLongBits(location.getLatitude()));
+            records.writeLong(Double.doubleToLongBits(location.getLongitude()));
+            records.writeNullableString(location.getTimezone());
+            records.writeNullableString(location.getIsp());
+            records.writeNullableString(location.getOrg());
+            records.writeNullableString(location.getAs());
+            records.writeNullableString(location.getQuery());
+
+            int flags = 0;
+            if (location.isProxy()) flags |= 1;
+            if (location.isHosting()) flags |= 1 << 1;
+            if (location.isMobile()) flags |= 1 << 2;
+            records.writeByte(flags);
+        }
+
+        private void writeTimestamp(long timestamp) {
+            records.writeVarLong(zigZag(timestamp - lastTimestamp));
+            lastTimestamp = timestamp;
+        }
+
+        // 0 es null, los IDs del diccionario empiezan en 1
+        private int ipId(String ip) {
+            if (ip == null) return 0;
+            return ipIds.computeIfAbsent(ip, key -> {
+                ips.add(key);
+                return ips.size();
+            });
+        }
+
+        private void flushBlock() throws IOException {
+            if (playerCount == 0) return;
+
+            frame.clear();
+            frame.writeInt(0);
+            frame.writeInt(0);
+            int payloadStart = frame.size();
+            frame.writeVarInt(playerCount);
+            frame.writeVarInt(ips.size());
+            for (String ip : ips) {
+                long address = parseIpv4(ip);
+                if (address >= 0) {
+                    frame.writeByte(IP_V4);
+                    frame.writeInt((int) address);
+                } else {
+                    frame.writeByte(IP_STRING);
+                    frame.writeString(ip);
+                }
+            }
+            frame.write(records.array(), 0, records.size());
+
+            int payloadLength = frame.size() - payloadStart;
+            crc.reset();
+            crc.update(frame.array(), payloadStart, payloadLength);
+            frame.putInt(0, payloadLength);
+            frame.putInt(4, (int) crc.getValue());
+            writeFully(ByteBuffer.wrap(frame.array(), 0, frame.size()));
+
+            records.clear();
+            ipIds.clear();
+            ips.clear();
+            playerCount = 0;
+            lastTimestamp = 0;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+
+    /**
+     * Lee todos los jugadores de un archivo de {@link BlockWriter} en la tabla de IPs, devuelve cuántos.
+     * Falla si el checksum, la versión o el cierre no cuadran
+     */
+    public static int read(ReadableByteChannel channel, IpMetadataTable table,
+                           BiConsumer<UUID, PlayerData> consumer) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("No es un archivo de datos de jugadores");
+        }
+        int version = header.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Versión de formato de datos de jugadores no soportada: " + version);
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER);
+        ByteBuffer payload = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        List<String> ips = new ArrayList<>();
+        int read = 0;
+
+        while (true) {
+            frame.clear();
+            readFully(channel, frame);
+            int length = frame.getInt();
+            int checksum = frame.getInt();
+            if (length == 0) break;
+            if (length < 0 || length > MAX_BLOCK_SIZE) {
+                throw new IOException("Longitud de bloque corrupta: " + length);
+            }
+
+            if (payload.capacity() < length) {
+                payload = ByteBuffer.allocate(Math.max(length, payload.capacity() * 2));
+            }
+            payload.clear().limit(length);
+            readFully(channel, payload);
+
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checksum incorrecto en el bloque tras " + read + " jugadores");
+            }
+
+            read += readBlock(payload, table, ips, consumer);
+        }
+        return read;
+    }
+
+    private static int readBlock(ByteBuffer in, IpMetadataTable table, List<String> ips,
+                                 BiConsumer<UUID, PlayerData> consumer) throws IOException {
+        try {
+            int playerCount = readVarInt(in);
+            int ipCount = readVarInt(in);
+
+            ips.clear();
+            ips.add(null);
+            for (int i = 0; i < ipCount; i++) {
+                byte tag = in.get();
+                ips.add(tag == IP_V4 ? formatIpv4(in.getInt()) : readString(in));
+            }
+
+            long[] lastTimestamp = {0};
+            for (int i = 0; i < playerCount; i++) {
+                UUID uuid = new UUID(in.getLong(), in.getLong());
+                consumer.accept(uuid, readPlayer(in, uuid, table, ips, lastTimestamp));
+            }
+            return playerCount;
+        } catch (RuntimeException e) {
+            // Desbordes y IDs malos con el checksum bien, el que escribió se equivocó
+            throw new IOException("Bloque de datos de jugadores mal formado", e);
+        }
+    }
+
+    private static PlayerData readPlayer(ByteBuffer in, UUID uuid, IpMetadataTable table, List<String> ips,
+                                         long[] lastTimestamp) {
+        PlayerData.Builder data = PlayerData.builder(table);
+        data.uuid(uuid);
+
+        int flags = in.get();
+        data.admin((flags & FLAG_ADMIN) != 0);
+        if ((flags & FLAG_USERNAME) != 0) data.username(readString(in));
+        data.lastIp(ips.get(readVarInt(in)));
+        data.firstLogin(readTimestamp(in, lastTimestamp));
+        data.lastLogin(readTimestamp(in, lastTimestamp));
+        data.totalConnections(readVarInt(in));
+
+        int historySize = readVarInt(in);
+        List<String> history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            history.add(ips.get(readVarInt(in)));
+        }
+        data.ipHistory(history);
+
+        int timestampCount = readVarInt(in);
+        Map<String, Long> timestamps = new HashMap<>(Math.max(16, timestampCount * 2));
+        for (int i = 0; i < timestampCount; i++) {
+            String ip = ips.get(readVarInt(in));
+            timestamps.put(ip, readTimestamp(in, lastTimestamp));
+        }
+        data.ipTimestamps(timestamps);
+
+        int statsCount = readVarInt(in);
+        Map<String, IpStats> stats = new HashMap<>(Math.max(16, statsCount * 2));
+        for (int i = 0; i < statsCount; i++) {
+            String ip = ips.get(readVarInt(in));
+            int connections = readVarInt(in);
+            long firstSeen = readTimestamp(in, lastTimestamp);
+            long lastSeen = readTimestamp(in, lastTimestamp);
+            stats.put(ip, new IpStats(connections, firstSeen, lastSeen));
+        }
+        data.ipStats(stats);
+
+        if ((flags & FLAG_GEO) != 0) {
+            data.geoLocation(readGeoLocation(in, table.getLocations()));
+        }
+
+        int linkedCount = readVarInt(in);
+        List<String> linked = new ArrayList<>(linkedCount);
+        for (int i = 0; i < linkedCount; i++) {
+            if (in.get() == LINK_UUID) {
+                linked.add(new UUID(in.getLong(), in.getLong()).toString());
+            } else {
+                linked.add(readNullableString(in));
+            }
+        }
+        data.linkedAccounts(linked);
+        return data.build();
+    }
+
+    private static GeoLocation readGeoLocation(ByteBuffer in, GeoLocationPool strings) {
+        // Los textos se repiten entre registros, se guarda una sola copia
+        GeoLocation location = new GeoLocation();
+        location.setCountry(strings.internString(readNullableString(in)));
+        location.setCountryCode(strings.internString(readNullableString(in)));
+        location.setRegion(strings.internString(readNullableString(in)));
+        location.setRegionName(strings.internString(readNullableString(in)));
+        location.setCity(strings.internString(readNullableString(in)));
+        location.setZip(strings.internString(readNullableString(in)));
+        location.setLatitude(Double.longBitsToDouble(in.getLong()));
+        location.setLongitude(Double.longBitsToDouble(in.getLong()));
+        location.setTimezone(strings.internString(readNullableString(in)));
+        location.setIsp(strings.internString(readNullableString(in)));
+        location.setOrg(strings.internString(readNullableString(in)));
+        location.setAs(strings.internString(readNullableString(in)));
+        location.setQuery(readNullableString(in));
+
+        int flags = in.get();
+        location.setProxy((flags & 1) != 0);
+        location.setHosting((flags & (1 << 1)) != 0);
+        location.setMobile((flags & (1 << 2)) != 0);
+        return location;
+    }
+
+
+    private static long readTimestamp(ByteBuffer in, long[] lastTimestamp) {
+        lastTimestamp[0] += unZigZag(readVarLong(in));
+        return lastTimestamp[0];
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+            if (shift > 63) throw new IllegalStateException("Varint demasiado largo");
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    // Longitud + 1, así 0 es null
+    private static String readNullableString(ByteBuffer in) {
+        int length = readVarInt(in);
+        if (length == 0) return null;
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + length - 1);
+        return value;
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("El archivo de datos de jugadores está truncado");
+            }
+        }
+        buffer.flip();
+    }
+
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * IPv4 en forma canónica, -1 para cualquier otra cosa
+     */
+    private static long parseIpv4(String ip) {
+        long address = 0;
+        int parts = 0;
+        int start = 0;
+        for (int i = 0; i <= ip.length(); i++) {
+            if (i < ip.length() && ip.charAt(i) != '.') {
+                char c = ip.charAt(i);
+                if (c < '0' || c > '9' || i - start >= 3) return -1;
+                continue;
+            }
+
+            int length = i - start;
+            // Los ceros a la izquierda no sobrevivirían a la ida y vuelta
+            if (length == 0 || (length > 1 && ip.charAt(start) == '0')) return -1;
+            int part = Integer.parseInt(ip, start, i, 10);
+            if (part > 255 || ++parts > 4) return -1;
+            address = (address << 8) | part;
+            start = i + 1;
+        }
+        return parts == 4 ? address : -1;
+    }
+
+    private static String formatIpv4(int address) {
+        return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "."
+            + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    private static UUID parseUuid(String value) {
+        if (value == null || value.length() != 36) return null;
+        try {
+            UUID uuid = UUID.fromString(value);
+            // Solo formas canónicas, lo demás se guarda como texto
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int countNonNull(Map<String, ?> map) {
+        int count = 0;
+        for (Object value : map.values()) {
+            if (value != null) count++;
+        }
+        return count;
+    }
+
+
+    /**
+     * Array de bytes que crece, con los varints y textos del formato
+     */
+    private static class Buffer {
+
+        private byte[] bytes;
+        private int size;
+
+        Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            putInt(size, value);
+            size += 4;
+        }
+
+        void putInt(int position, int value) {
+            bytes[position] = (byte) (value >>> 24);
+            bytes[position + 1] = (byte) (value >>> 16);
+            bytes[position + 2] = (byte) (value >>> 8);
+            bytes[position + 3] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(encoded.length);
+            write(encoded, 0, encoded.length);
+        }
+
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(encoded.length + 1);
+            write(encoded, 0, encoded.length);
+        }
+
+        void write(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contadores de cambios por archivo para saltar los que nadie tocó. Se guarda el valor leído
+ * antes de escribir, así lo cambiado durante la escritura queda para el siguiente guardado
+ */
+public class ChangeTracker {
+
+    private final ConcurrentHashMap<String, AtomicLong> changes;
+    private final ConcurrentHashMap<String, Long> saved;
+
+    public ChangeTracker() {
+        this.changes = new ConcurrentHashMap<>();
+        this.saved = new ConcurrentHashMap<>();
+    }
+
+    public void markChanged(String key) {
+        changes.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Contador actual de un archivo, para pasarlo a {@link #markSaved} tras escribirlo
+     */
+    public long getVersion(String key) {
+        AtomicLong counter = changes.get(key);
+        return counter != null ? counter.get() : 0;
+    }
+
+    public boolean isDirty(String key) {
+        return getVersion(key) != saved.getOrDefault(key, 0L);
+    }
+
+    public void markSaved(String key, long version) {
+        saved.merge(key, version, Math::max);
+    }
+}
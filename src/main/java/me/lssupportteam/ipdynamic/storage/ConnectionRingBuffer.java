@@ -0,0 +1,234 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Historial de conexiones de capacidad fija en columnas primitivas, 25 bytes por entrada.
+ * Jugadores e IPs pasan a ids que se liberan con su última entrada; añadir no usa bloqueos
+ */
+public class ConnectionRingBuffer {
+
+    public static final byte CONNECT = 0;
+    public static final byte DISCONNECT = 1;
+
+    private final int capacity;
+    private final long[] timestamps;
+    private final long[] durations;
+    private final int[] playerIds;
+    private final int[] ipIds;
+    private final byte[] types;
+
+    // Secuencia publicada en cada hueco, -1 mientras se escribe
+    private final AtomicLongArray published;
+    private final AtomicLong cursor;
+
+    private final Interner<UUID> players;
+    private final Interner<String> ips;
+
+    public ConnectionRingBuffer(int capacity) {
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.durations = new long[capacity];
+        this.playerIds = new int[capacity];
+        this.ipIds = new int[capacity];
+        this.types = new byte[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.cursor = new AtomicLong();
+        this.players = new Interner<>();
+        this.ips = new Interner<>();
+
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    public void append(byte type, UUID player, String ip, long timestamp, long duration) {
+        int playerId = players.acquire(player);
+        int ipId = ips.acquire(ip);
+
+        long sequence = cursor.getAndIncrement();
+        int slot = (int) (sequence % capacity);
+
+        // Un escritor una vuelta por detrás puede seguir en el hueco, su entrada se libera al publicarla
+        long previous;
+        while ((previous = published.getAndSet(slot, -1)) == -1 && sequence >= capacity) {
+            Thread.onSpinWait();
+        }
+        if (previous >= 0) {
+            players.release(playerIds[slot]);
+            ips.release(ipIds[slot]);
+        }
+
+        timestamps[slot] = timestamp;
+        durations[slot] = duration;
+        playerIds[slot] = playerId;
+        ipIds[slot] = ipId;
+        types[slot] = type;
+        published.set(slot, sequence);
+    }
+
+    /**
+     * Recorre las entradas de la más antigua a la más nueva, saltando las que se sobrescriben a la vez
+     */
+    public void forEach(EntryVisitor visitor) {
+        long end = cursor.get();
+        long start = Math.max(0, end - capacity);
+
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) (sequence % capacity);
+            if (published.get(slot) != sequence) continue;
+
+            long timestamp = timestamps[slot];
+            long duration = durations[slot];
+            byte type = types[slot];
+            // Antes de volver a comprobar: mientras el hueco no cambie sus ids no se reutilizaron
+            UUID player = players.get(playerIds[slot]);
+            String ip = ips.get(ipIds[slot]);
+
+            // Que las lecturas de arriba no pasen detrás de la comprobación
+            VarHandle.acquireFence();
+            if (published.get(slot) != sequence || player == null || ip == null) continue;
+
+            visitor.visit(type, player, ip, timestamp, duration);
+        }
+    }
+
+    public int size() {
+        return (int) Math.min(cursor.get(), capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Jugadores e IPs distintos en las entradas guardadas
+     */
+    public int getInternedCount() {
+        return players.size() + ips.size();
+    }
+
+    /**
+     * Vacía el buffer y sus diccionarios, no debe coincidir con escrituras
+     */
+    public void clear() {
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        cursor.set(0);
+        players.clear();
+        ips.clear();
+    }
+
+
+    public interface EntryVisitor {
+        void visit(byte type, UUID player, String ip, long timestamp, long duration);
+    }
+
+    /**
+     * Diccionario valor -> id que cuenta los huecos de cada id. Un id sin huecos se libera y reutiliza;
+     * solo los ids nuevos o liberados toman el bloqueo
+     */
+    private static final class Interner<T> {
+        private static final int CHUNK_BITS = 10;
+        private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+        private final ConcurrentHashMap<T, Integer> ids = new ConcurrentHashMap<>();
+        private volatile Object[] values = new Object[64];
+        // Usos por id, en trozos fijos para que crecer nunca mueva un contador en uso
+        private volatile AtomicIntegerArray[] holders = new AtomicIntegerArray[0];
+        private int[] free = new int[16]; // Protegido por this
+        private int freeCount; // Protegido por this
+        private int next; // Protegido por this
+
+        int acquire(T value) {
+            Integer id = ids.get(value);
+            if (id != null && tryRetain(id)) {
+                // El id pudo liberarse y reutilizarse para otro valor antes de retenerlo
+                if (value.equals(get(id))) return id;
+                release(id);
+            }
+
+            synchronized (this) {
+                id = ids.get(value);
+                if (id != null) {
+                    addHolders(id, 1);
+                    return id;
+                }
+
+                int newId = freeCount > 0 ? free[--freeCount] : next++;
+                Object[] current = values;
+                if (newId >= current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[newId] = value;
+                values = current;
+                if ((newId >>> CHUNK_BITS) >= holders.length) {
+                    AtomicIntegerArray[] grown = Arrays.copyOf(holders, holders.length + 1);
+                    grown[holders.length] = new AtomicIntegerArray(1 << CHUNK_BITS);
+                    holders = grown;
+                }
+                // Se pone al final, quien lo vea sin bloqueo también ve el valor
+                holders[newId >>> CHUNK_BITS].set(newId & CHUNK_MASK, 1);
+                ids.put(value, newId);
+                return newId;
+            }
+        }
+
+        private boolean tryRetain(int id) {
+            AtomicIntegerArray chunk = holders[id >>> CHUNK_BITS];
+            int index = id & CHUNK_MASK;
+            while (true) {
+                int count = chunk.get(index);
+                // Cero es que se está liberando, se toma el bloqueo
+                if (count <= 0) return false;
+                if (chunk.compareAndSet(index, count, count + 1)) return true;
+            }
+        }
+
+        void release(int id) {
+            if (addHolders(id, -1) > 0) return;
+
+            synchronized (this) {
+                // Retenido otra vez o ya liberado entre tanto
+                Object[] current = values;
+                if (addHolders(id, 0) != 0 || current[id] == null) return;
+
+                ids.remove(current[id], id);
+                current[id] = null;
+                if (freeCount == free.length) {
+                    free = Arrays.copyOf(free, free.length * 2);
+                }
+                free[freeCount++] = id;
+            }
+        }
+
+        private int addHolders(int id, int delta) {
+            return holders[id >>> CHUNK_BITS].addAndGet(id & CHUNK_MASK, delta);
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int id) {
+            Object[] current = values;
+            return id >= 0 && id < current.length ? (T) current[id] : null;
+        }
+
+        int size() {
+            return ids.size();
+        }
+
+        synchronized void clear() {
+            ids.clear();
+            values = new Object[64];
+            holders = new AtomicIntegerArray[0];
+            freeCount = 0;
+            next = 0;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Archivo de caché de un índice derivado, sellado con la generación de los datos de los que sale.
+ * Solo carga si el sello coincide y el checksum está bien; sin copias, siempre se puede rehacer
+ */
+public class DerivedIndexFile {
+
+    private static final int MAGIC = 0x49504458; // "IPDX"
+    private static final int FORMAT = 1;
+
+    private final File file;
+    private final Logger logger;
+
+    public DerivedIndexFile(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * Escribe el índice mediante un archivo temporal, un cierre inesperado deja el anterior
+     */
+    public boolean save(String stamp, IndexWriter content) {
+        File temp = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(temp), 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(stamp);
+            content.write(out);
+            out.flush();
+            // El checksum no entra en lo que cubre
+            out.writeLong(crc.getValue());
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "No se pudo guardar el índice " + file.getName(), e);
+            temp.delete();
+            return false;
+        }
+
+        try {
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "No se pudo guardar el índice " + file.getName(), e);
+            temp.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Lee el índice si se hizo con el sello dado, false si falta, es viejo o está dañado.
+     * El lector no debe cambiar nada hasta {@link IndexReader#apply}
+     */
+    public boolean load(String stamp, IndexReader content) {
+        if (stamp == null || !file.exists()) return false;
+
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                 new BufferedInputStream(new FileInputStream(file), 1 << 16), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !stamp.equals(in.readUTF())) {
+                return false;
+            }
+            content.read(in);
+
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                logger.warning("Índice " + file.getName() + " dañado, se reconstruirá");
+                return false;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "No se pudo leer el índice " + file.getName() + ", se reconstruirá", e);
+            return false;
+        }
+
+        content.apply();
+        return true;
+    }
+
+    /**
+     * Se borra antes de reescribir los datos, así un sello repetido nunca junta el índice viejo con datos nuevos
+     */
+    public void invalidate() {
+        file.delete();
+    }
+
+    public interface IndexWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public interface IndexReader {
+        void read(DataInputStream in) throws IOException;
+
+        void apply();
+    }
+}
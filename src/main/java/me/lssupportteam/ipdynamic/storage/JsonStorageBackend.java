@@ -0,0 +1,626 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import me.lssupportteam.ipdynamic.models.BanEntry;
+import me.lssupportteam.ipdynamic.models.GeoLocationPool;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
+import me.lssupportteam.ipdynamic.models.PlayerData;
+import me.lssupportteam.ipdynamic.utils.JsonUtils;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Backend por defecto, un archivo por colección reescrito entero si cambió. Los jugadores van a
+ * players.dat o playerConnections.json según el formato, y los cambiados a players.delta hasta la mezcla
+ */
+public class JsonStorageBackend implements StorageBackend {
+
+    private static final int MAX_DISCONNECTIONS = 5000;
+    private static final int MAX_PARSE_WORKERS = 4;
+    private static final long MIN_DELTA_MERGE_BYTES = 64 * 1024;
+
+    private final Logger logger;
+    private final PersistenceWriter writer;
+    private final boolean binaryPlayers;
+    private final File playersFile;
+    private final File playerConnectionsFile;
+    private final File playerDeltaFile;
+    private final File playerRegisterFile;
+    private final File playerDisconnectFile;
+    private final File singleBansFile;
+    private final File op1BansFile;
+    private final File op2BansFile;
+    private final File whitelistFile;
+    private final ChangeTracker changes;
+
+    public JsonStorageBackend(File dataDir, boolean binaryPlayers, PersistenceWriter writer, Logger logger) {
+        this.logger = logger;
+        this.writer = writer;
+        this.binaryPlayers = binaryPlayers;
+        this.playersFile = new File(dataDir, "players.dat");
+        this.playerConnectionsFile = new File(dataDir, "playerConnections.json");
+        this.playerDeltaFile = new File(dataDir, "players.delta");
+        this.playerRegisterFile = new File(dataDir, "player-register.json");
+        this.playerDisconnectFile = new File(dataDir, "player-disconnect.json");
+        this.singleBansFile = new File(dataDir, "single-bans.json");
+        this.op1BansFile = new File(dataDir, "op1-bans.json");
+        this.op2BansFile = new File(dataDir, "op2-bans.json");
+        this.whitelistFile = new File(dataDir, "whitelist.json");
+        this.changes = new ChangeTracker();
+    }
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public void open() {
+        File dataDir = playerConnectionsFile.getParentFile();
+        if (!dataDir.exists()) {
+            dataDir.mkdirs();
+        }
+    }
+
+    @Override
+    public void close() {
+
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !playersFile.exists() && !playerConnectionsFile.exists() && !playerRegisterFile.exists()
+            && !singleBansFile.exists() && !op1BansFile.exists() && !op2BansFile.exists()
+            && !whitelistFile.exists();
+    }
+
+
+    @Override
+    public void loadPlayers(IpMetadataTable ips, BiConsumer<UUID, PlayerData> consumer) {
+        Gson reader = JsonUtils.getPlayerGson(ips);
+        File preferred = binaryPlayers ? playersFile : playerConnectionsFile;
+        File base = (preferred.exists() ? binaryPlayers : playersFile.exists()) ? playersFile : playerConnectionsFile;
+
+        // Los del delta son más nuevos que el archivo, un valor null es un jugador borrado
+        Map<UUID, PlayerData> delta = readDelta(base, reader);
+        BiConsumer<UUID, PlayerData> unchanged = (uuid, data) -> {
+            if (!delta.containsKey(uuid)) consumer.accept(uuid, data);
+        };
+
+        if (base == playersFile) {
+            JsonUtils.loadBinary(playersFile, channel -> BinaryPlayerCodec.read(channel, ips, unchanged), logger);
+        } else {
+            // El hilo lector y el consumer toman un núcleo cada uno, el resto construye registros
+            int workers = Math.max(1, Math.min(MAX_PARSE_WORKERS, Runtime.getRuntime().availableProcessors() - 2));
+            JsonUtils.loadMapStreaming(playerConnectionsFile, reader, PlayerData.class, workers,
+                (key, data) -> unchanged.accept(UUID.fromString(key), data), logger);
+        }
+
+        delta.forEach((uuid, data) -> {
+            if (data != null) consumer.accept(uuid, data);
+        });
+    }
+
+    @Override
+    public String getPlayersStamp() {
+        // Cada guardado reemplaza el archivo o alarga el delta, lo que cambia su fecha
+        return "json:" + JsonUtils.fileStamp(playersFile) + "|" + JsonUtils.fileStamp(playerConnectionsFile)
+            + "|" + JsonUtils.fileStamp(playerDeltaFile);
+    }
+
+    @Override
+    public boolean savePlayers(TieredPlayerStore players, Collection<PlayerData> changed, Collection<UUID> removed) {
+        if (changed.isEmpty() && removed.isEmpty()) return true;
+
+        File base = binaryPlayers ? playersFile : playerConnectionsFile;
+        if (canAppendDelta(base)) {
+            return appendDelta(base, changed, removed);
+        }
+
+        // Los borrados ya no están en el almacén del que se reescribe el archivo
+        if (!writePlayers(players)) return false;
+        if (playerDeltaFile.exists() && !playerDeltaFile.delete()) {
+            // Sin importancia, nombra el archivo anterior y se ignora desde ahora
+            logger.warning("No se pudo eliminar " + playerDeltaFile.getName() + " tras fusionarlo");
+        }
+        return true;
+    }
+
+    private boolean writePlayers(TieredPlayerStore players) {
+        if (binaryPlayers) {
+            return JsonUtils.saveBinary(playersFile, channel -> {
+                BinaryPlayerCodec.BlockWriter writer = new BinaryPlayerCodec.BlockWriter(channel);
+                IOException[] failure = new IOException[1];
+                players.forEach((uuid, data) -> {
+                    if (failure[0] != null) return;
+                    try {
+                        writer.write(uuid, data);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) throw failure[0];
+                writer.finish();
+            }, logger);
+        }
+
+        // En flujo, así los jugadores fríos se leen de disco de uno en uno
+        return JsonUtils.saveStreaming(playerConnectionsFile, writer -> {
+            IOException[] failure = new IOException[1];
+            writer.beginObject();
+            players.forEach((uuid, data) -> {
+                if (failure[0] != null) return;
+                try {
+                    writer.name(uuid.toString());
+                    JsonUtils.getGson().toJson(data, PlayerData.class, writer);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+            writer.endObject();
+        }, logger);
+    }
+
+    /**
+     * Convierte playerConnections.json a players.dat registro a registro y lo relee para comprobarlo.
+     * Devuelve los jugadores convertidos, o -1 si falló y el JSON se sigue cargando como antes
+     */
+    public int convertPlayersToBinary() {
+        if (!playerConnectionsFile.exists()) return 0;
+
+        // Solo se copian, una tabla propia guarda sus IPs mientras tanto
+        IpMetadataTable ips = new IpMetadataTable(new GeoLocationPool(0, 0));
+        Gson reader = JsonUtils.getPlayerGson(ips);
+        Map<UUID, PlayerData> delta = readDelta(playerConnectionsFile, reader);
+        int[] converted = new int[1];
+        boolean written = JsonUtils.saveBinary(playersFile, channel -> {
+            BinaryPlayerCodec.BlockWriter writer = new BinaryPlayerCodec.BlockWriter(channel);
+            try (JsonReader json = new JsonReader(new BufferedReader(new InputStreamReader(
+                    new FileInputStream(playerConnectionsFile), StandardCharsets.UTF_8)))) {
+                json.setLenient(true);
+                json.beginObject();
+                while (json.hasNext()) {
+                    UUID uuid = UUID.fromString(json.nextName());
+                    PlayerData data = reader.fromJson(json, PlayerData.class);
+                    if (data != null && !delta.containsKey(uuid)) {
+                        writer.write(uuid, data);
+                    }
+                }
+                json.endObject();
+            } catch (IllegalArgumentException | JsonParseException e) {
+                throw new IOException("Datos de jugadores no válidos en " + playerConnectionsFile.getName(), e);
+            }
+            for (Map.Entry<UUID, PlayerData> entry : delta.entrySet()) {
+                if (entry.getValue() != null) {
+                    writer.write(entry.getKey(), entry.getValue());
+                }
+            }
+            converted[0] = writer.finish();
+        }, logger);
+        if (!written) return -1;
+
+        try (FileChannel channel = FileChannel.open(playersFile.toPath(), StandardOpenOption.READ)) {
+            if (BinaryPlayerCodec.read(channel, ips, (uuid, data) -> { }) == converted[0]) {
+                playerDeltaFile.delete();
+                return converted[0];
+            }
+            logger.severe("La conversión de " + playerConnectionsFile.getName() + " no coincide, se mantiene el JSON");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error verificando " + playersFile.getName(), e);
+        }
+        playersFile.delete();
+        return -1;
+    }
+
+    /**
+     * Solo añade si el delta es del archivo actual y pequeño a su lado, si no se reescribe el archivo
+     */
+    private boolean canAppendDelta(File base) {
+        if (!base.exists()) return false;
+        if (!playerDeltaFile.exists()) return true;
+        return playerDeltaFile.length() < Math.max(MIN_DELTA_MERGE_BYTES, base.length() / 2)
+            && deltaHeader(base).equals(readDeltaHeader());
+    }
+
+    private boolean appendDelta(File base, Collection<PlayerData> changed, Collection<UUID> removed) {
+        StringWriter lines = new StringWriter();
+        try {
+            if (!playerDeltaFile.exists()) {
+                lines.write(deltaHeader(base));
+                lines.write('\n');
+            }
+            for (UUID uuid : removed) {
+                JsonObject record = new JsonObject();
+                record.addProperty("uuid", uuid.toString());
+                record.addProperty("removed", true);
+                lines.write(record.toString());
+                lines.write('\n');
+            }
+            for (PlayerData data : changed) {
+                JsonWriter line = new JsonWriter(lines);
+                line.beginObject();
+                line.name("uuid").value(data.getUuid().toString());
+                line.name("data");
+                JsonUtils.getGson().toJson(data, PlayerData.class, line);
+                line.endObject();
+                line.flush();
+                lines.write('\n');
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error serializando cambios de jugadores", e);
+            return false;
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(playerDeltaFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            long start = channel.size();
+            try {
+                channel.position(start);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                // Una línea a medias se tragaría la siguiente
+                channel.truncate(start);
+                throw e;
+            }
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error guardando " + playerDeltaFile.getName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Jugadores del delta si es del archivo dado, gana el último registro de cada uno.
+     * Una línea cortada por un cierre inesperado se salta
+     */
+    private Map<UUID, PlayerData> readDelta(File base, Gson gson) {
+        Map<UUID, PlayerData> delta = new LinkedHashMap<>();
+        if (!playerDeltaFile.exists()) return delta;
+
+        int skipped = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(playerDeltaFile), StandardCharsets.UTF_8))) {
+            if (!deltaHeader(base).equals(reader.readLine())) {
+                logger.info(playerDeltaFile.getName() + " corresponde a otra versión de " + base.getName() + ", se ignora");
+                return delta;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+                    UUID uuid = UUID.fromString(record.get("uuid").getAsString());
+                    delta.put(uuid, record.has("removed") ? null
+                        : gson.fromJson(record.get("data"), PlayerData.class));
+                } catch (RuntimeException e) {
+                    skipped++;
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error cargando " + playerDeltaFile.getName(), e);
+        }
+
+        if (skipped > 0) {
+            logger.warning(skipped + " registros inválidos ignorados en " + playerDeltaFile.getName());
+        }
+        return delta;
+    }
+
+    private String readDeltaHeader() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(playerDeltaFile), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            return header != null ? header : "";
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static String deltaHeader(File base) {
+        JsonObject header = new JsonObject();
+        header.addProperty("base", base.getName());
+        header.addProperty("stamp", JsonUtils.fileStamp(base));
+        return header.toString();
+    }
+
+    @Override
+    public long getPlayersDiskSize() {
+        return (binaryPlayers ? playersFile : playerConnectionsFile).length() + playerDeltaFile.length();
+    }
+
+    public File getPlayerConnectionsFile() {
+        return playerConnectionsFile;
+    }
+
+    public File getPlayersFile() {
+        return playersFile;
+    }
+
+
+    @Override
+    public void loadConnections(ConnectionRingBuffer into) {
+        ConnectionRingBuffer[] loaded = new ConnectionRingBuffer[1];
+
+        boolean read = JsonUtils.loadStreaming(playerRegisterFile, reader -> {
+            // Vuelve a empezar si el archivo se restaura de una copia y se relee
+            ConnectionRingBuffer buffer = new ConnectionRingBuffer(into.getCapacity());
+            loaded[0] = buffer;
+
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readConnection(reader, buffer);
+            }
+            reader.endArray();
+        }, logger);
+
+        if (read && loaded[0] != null) {
+            ConnectionRingBuffer buffer = loaded[0];
+            buffer.forEach(into::append);
+        }
+    }
+
+    private void readConnection(JsonReader reader, ConnectionRingBuffer into) throws IOException {
+        byte type = ConnectionRingBuffer.CONNECT;
+        UUID uuid = null;
+        String ip = null;
+        long timestamp = 0;
+        long duration = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case "type":
+                    type = "DISCONNECT".equals(reader.nextString()) ? ConnectionRingBuffer.DISCONNECT : ConnectionRingBuffer.CONNECT;
+                    break;
+                case "uuid":
+                    uuid = UUID.fromString(reader.nextString());
+                    break;
+                case "ip":
+                    ip = reader.nextString();
+                    break;
+                case "timestamp":
+                    timestamp = reader.nextLong();
+                    break;
+                case "sessionDuration":
+                    duration = reader.nextLong();
+                    break;
+                default:
+                    // el nombre se busca en los datos del jugador al guardar
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (uuid != null && ip != null) {
+            into.append(type, uuid, ip, timestamp, duration);
+        }
+    }
+
+    @Override
+    public void appendConnection(byte type, UUID uuid, String ip, long timestamp, long duration) {
+        // Queda en el historial en memoria hasta el siguiente guardado
+        changes.markChanged(playerRegisterFile.getName());
+    }
+
+    @Override
+    public void saveConnections(ConnectionRingBuffer history, Function<UUID, String> usernames) {
+        String key = playerRegisterFile.getName();
+        if (!changes.isDirty(key)) return;
+        long version = changes.getVersion(key);
+
+        // Se escribe directamente desde el anillo, registro a registro
+        Map<UUID, String> names = new HashMap<>();
+        Function<UUID, String> cachedNames = uuid -> names.computeIfAbsent(uuid, usernames);
+        int[] disconnections = new int[1];
+
+        boolean saved = JsonUtils.saveStreaming(playerRegisterFile, writer -> {
+            disconnections[0] = 0;
+            writer.beginArray();
+            forEachConnection(history, (type, player, ip, timestamp, duration) -> {
+                if (type == ConnectionRingBuffer.DISCONNECT) disconnections[0]++;
+                writeConnection(writer, cachedNames, type, player, ip, timestamp, duration);
+            });
+            writer.endArray();
+        }, logger);
+
+        // Solo las desconexiones más recientes van a player-disconnect.json
+        saved &= JsonUtils.saveStreaming(playerDisconnectFile, writer -> {
+            int[] skip = {Math.max(0, disconnections[0] - MAX_DISCONNECTIONS)};
+            writer.beginArray();
+            forEachConnection(history, (type, player, ip, timestamp, duration) -> {
+                if (type != ConnectionRingBuffer.DISCONNECT) return;
+                if (skip[0] > 0) {
+                    skip[0]--;
+                    return;
+                }
+                writeConnection(writer, cachedNames, type, player, ip, timestamp, duration);
+            });
+            writer.endArray();
+        }, logger);
+
+        if (saved) {
+            changes.markSaved(key, version);
+        }
+    }
+
+    private void writeConnection(JsonWriter writer, Function<UUID, String> usernames,
+                                 byte type, UUID uuid, String ip, long timestamp, long duration) throws IOException {
+        String username = usernames.apply(uuid);
+
+        writer.beginObject();
+        writer.name("type").value(type == ConnectionRingBuffer.DISCONNECT ? "DISCONNECT" : "CONNECT");
+        writer.name("uuid").value(uuid.toString());
+        if (username != null) writer.name("username").value(username);
+        writer.name("ip").value(ip);
+        writer.name("timestamp").value(timestamp);
+        writer.name("sessionDuration").value(duration);
+        writer.endObject();
+    }
+
+    /**
+     * Recorrido del anillo que deja al visitante lanzar la IOException de un JsonWriter
+     */
+    private static void forEachConnection(ConnectionRingBuffer history, ConnectionWriter visitor) throws IOException {
+        IOException[] failure = new IOException[1];
+        history.forEach((type, player, ip, timestamp, duration) -> {
+            if (failure[0] != null) return;
+            try {
+                visitor.write(type, player, ip, timestamp, duration);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+
+    private interface ConnectionWriter {
+        void write(byte type, UUID player, String ip, long timestamp, long duration) throws IOException;
+    }
+
+
+    @Override
+    public Map<String, BanEntry> loadBans(BanEntry.BanType type) {
+        File file = getBansFile(type);
+        if (file == null) return new HashMap<>();
+
+        Type mapType = JsonUtils.getTypeTokenMap(String.class, BanEntry.class);
+        Map<String, BanEntry> loaded = JsonUtils.loadData(file, mapType, logger);
+        return loaded != null ? loaded : new HashMap<>();
+    }
+
+    @Override
+    public void saveBan(BanEntry entry, Map<String, BanEntry> all) {
+        writeBans(entry.getBanType(), all, true);
+    }
+
+    @Override
+    public void deleteBan(BanEntry.BanType type, String pattern, Map<String, BanEntry> all) {
+        writeBans(type, all, true);
+    }
+
+    @Override
+    public void saveBans(BanEntry.BanType type, Map<String, BanEntry> all) {
+        writeBans(type, all, false);
+    }
+
+    private void writeBans(BanEntry.BanType type, Map<String, BanEntry> all, boolean changed) {
+        File file = getBansFile(type);
+        if (file == null) return;
+
+        if (changed) {
+            changes.markChanged(file.getName());
+            queueWrite(file, () -> new HashMap<>(all));
+        } else {
+            writeIfChanged(file, () -> new HashMap<>(all));
+        }
+    }
+
+    @Override
+    public String getBansStamp() {
+        return "json:" + JsonUtils.fileStamp(singleBansFile) + "|" + JsonUtils.fileStamp(op1BansFile)
+            + "|" + JsonUtils.fileStamp(op2BansFile);
+    }
+
+    private File getBansFile(BanEntry.BanType type) {
+        switch (type) {
+            case SINGLE:
+                return singleBansFile;
+            case OP1:
+                return op1BansFile;
+            case OP2:
+                return op2BansFile;
+            default:
+                return null;
+        }
+    }
+
+
+    @Override
+    public Set<String> loadWhitelist() {
+        Type type = new TypeToken<List<String>>(){}.getType();
+        List<String> loaded = JsonUtils.loadData(whitelistFile, type, logger);
+        return loaded != null ? new HashSet<>(loaded) : new HashSet<>();
+    }
+
+    @Override
+    public void addWhitelisted(String name, Set<String> all) {
+        changes.markChanged(whitelistFile.getName());
+        queueWrite(whitelistFile, () -> new ArrayList<>(all));
+    }
+
+    @Override
+    public void removeWhitelisted(String name, Set<String> all) {
+        changes.markChanged(whitelistFile.getName());
+        queueWrite(whitelistFile, () -> new ArrayList<>(all));
+    }
+
+    @Override
+    public void clearWhitelist() {
+        changes.markChanged(whitelistFile.getName());
+        queueWrite(whitelistFile, ArrayList::new);
+    }
+
+    @Override
+    public void saveWhitelist(Set<String> all) {
+        writeIfChanged(whitelistFile, () -> new ArrayList<>(all));
+    }
+
+    @Override
+    public String getWhitelistStamp() {
+        return "json:" + JsonUtils.fileStamp(whitelistFile);
+    }
+
+
+    /**
+     * Pasa un archivo cambiado al hilo de guardado, los cambios dentro de la ventana comparten escritura
+     */
+    private void queueWrite(File file, Supplier<Object> snapshot) {
+        if (writer != null) {
+            writer.submit(file.getName(), () -> writeIfChanged(file, snapshot));
+        } else {
+            writeIfChanged(file, snapshot);
+        }
+    }
+
+    /**
+     * Escribe un archivo solo si cambió desde la última vez, si falla queda pendiente para el siguiente guardado
+     */
+    private void writeIfChanged(File file, Supplier<Object> snapshot) {
+        String key = file.getName();
+        if (!changes.isDirty(key)) return;
+
+        long version = changes.getVersion(key);
+        if (JsonUtils.saveData(file, snapshot.get(), logger)) {
+            changes.markSaved(key, version);
+        }
+    }
+}
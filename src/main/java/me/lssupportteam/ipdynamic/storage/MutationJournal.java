@@ -0,0 +1,374 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Diario de conexiones y desconexiones desde el último guardado, con un fsync por lote dentro del
+ * intervalo. Cada guardado abre un archivo nuevo y borra los cubiertos cuando sale bien
+ */
+public class MutationJournal {
+
+    public static final byte CONNECT = 0;
+    public static final byte DISCONNECT = 1;
+
+    private static final int MAGIC = 0x4950574C; // "IPWL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    // longitud(4) + crc(4)
+    private static final int FRAME_HEADER = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".wal";
+
+    private final File directory;
+    private final long syncIntervalMs;
+    private final long maxBytes;
+    private final Runnable onFull;
+    private final Logger logger;
+
+    private final LinkedBlockingQueue<byte[]> queue;
+    private final AtomicBoolean fullSignalled;
+    private final List<File> recoveryFiles;
+    private final Object channelLock = new Object();
+
+    // Protegido por channelLock
+    private FileChannel channel;
+    private long generation;
+    private long size;
+
+    private Thread writer;
+    private volatile boolean running;
+
+    public MutationJournal(File directory, long syncIntervalMs, long maxBytes, Runnable onFull, Logger logger) {
+        this.directory = directory;
+        this.syncIntervalMs = Math.max(0, syncIntervalMs);
+        this.maxBytes = maxBytes;
+        this.onFull = onFull;
+        this.logger = logger;
+        this.queue = new LinkedBlockingQueue<>();
+        this.fullSignalled = new AtomicBoolean();
+        this.recoveryFiles = new ArrayList<>();
+    }
+
+    public void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("No se pudo crear " + directory);
+        }
+
+        File[] existing = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        long lastGeneration = 0;
+        if (existing != null) {
+            Arrays.sort(existing, Comparator.comparingLong(MutationJournal::generationOf));
+            for (File file : existing) {
+                recoveryFiles.add(file);
+                lastGeneration = Math.max(lastGeneration, generationOf(file));
+            }
+        }
+
+        synchronized (channelLock) {
+            openGeneration(lastGeneration + 1);
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "IPDynamic-Journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void appendConnect(UUID uuid, String username, String ip, long timestamp, boolean admin) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(CONNECT);
+            writeUuid(out, uuid);
+            out.writeLong(timestamp);
+            out.writeBoolean(admin);
+            out.writeUTF(username != null ? username : "");
+            out.writeUTF(ip);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        enqueue(bytes.toByteArray());
+    }
+
+    public void appendDisconnect(UUID uuid, String ip, long timestamp, long duration) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DISCONNECT);
+            writeUuid(out, uuid);
+            out.writeLong(timestamp);
+            out.writeLong(duration);
+            out.writeUTF(ip);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        enqueue(bytes.toByteArray());
+    }
+
+    private void enqueue(byte[] record) {
+        if (running) {
+            queue.offer(record);
+        }
+    }
+
+    /**
+     * Repite los archivos del diario del arranque anterior, del más antiguo al más nuevo, solo la primera vez
+     */
+    public int replay(RecordVisitor visitor) {
+        int replayed = 0;
+        for (File file : recoveryFiles) {
+            replayed += replayFile(file, visitor);
+        }
+        recoveryFiles.clear();
+        return replayed;
+    }
+
+    private int replayFile(File file, RecordVisitor visitor) {
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warning("Diario de cambios con formato desconocido ignorado: " + file.getName());
+                return 0;
+            }
+
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) break;
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                // Una escritura a medias al final del último archivo acaba su repetición
+                if ((int) crc.getValue() != checksum) break;
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                UUID uuid = readUuid(record);
+                long timestamp = record.readLong();
+                if (type == CONNECT) {
+                    boolean admin = record.readBoolean();
+                    String username = record.readUTF();
+                    visitor.connect(uuid, username, record.readUTF(), timestamp, admin);
+                } else if (type == DISCONNECT) {
+                    long duration = record.readLong();
+                    visitor.disconnect(uuid, record.readUTF(), timestamp, duration);
+                }
+                replayed++;
+            }
+        } catch (EOFException e) {
+            // Final truncado
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Error leyendo el diario de cambios " + file.getName(), e);
+        }
+        return replayed;
+    }
+
+    /**
+     * Empieza un checkpoint: lo nuevo va a otro archivo. Devuelve la generación que cubre el guardado,
+     * para {@link #completeCheckpoint}
+     */
+    public long beginCheckpoint() {
+        synchronized (channelLock) {
+            if (channel == null) return -1;
+
+            long covered = generation;
+            try {
+                openGeneration(generation + 1);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "No se pudo rotar el diario de cambios", e);
+            }
+            fullSignalled.set(false);
+            return covered;
+        }
+    }
+
+    /**
+     * Borra los archivos cubiertos por un checkpoint cuyo guardado salió bien
+     */
+    public void completeCheckpoint(long coveredGeneration) {
+        if (coveredGeneration < 0) return;
+
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return;
+
+        synchronized (channelLock) {
+            for (File file : files) {
+                long fileGeneration = generationOf(file);
+                if (fileGeneration <= coveredGeneration && fileGeneration != generation && !file.delete()) {
+                    logger.warning("No se pudo eliminar el diario de cambios " + file.getName());
+                }
+            }
+        }
+    }
+
+    private void openGeneration(long newGeneration) throws IOException {
+        FileChannel previous = channel;
+        File file = new File(directory, String.format("%s%016d%s", PREFIX, newGeneration, SUFFIX));
+        FileChannel next = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            next.write(header);
+        }
+
+        channel = next;
+        generation = newGeneration;
+        size = HEADER_SIZE;
+
+        if (previous != null) {
+            try {
+                previous.force(false);
+                previous.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error cerrando el diario de cambios anterior", e);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                byte[] first = queue.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // Lo que llega dentro del intervalo comparte un fsync
+                if (syncIntervalMs > 0 && running) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(syncIntervalMs);
+                    long remaining;
+                    while ((remaining = deadline - System.nanoTime()) > 0) {
+                        byte[] next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch);
+
+                writeBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<byte[]> batch) {
+        int total = 0;
+        for (byte[] record : batch) {
+            total += FRAME_HEADER + record.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        CRC32 crc = new CRC32();
+        for (byte[] record : batch) {
+            crc.reset();
+            crc.update(record, 0, record.length);
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        buffer.flip();
+
+        boolean full;
+        synchronized (channelLock) {
+            if (channel == null) return;
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                size += total;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Error escribiendo el diario de cambios", e);
+            }
+            full = maxBytes > 0 && size >= maxBytes;
+        }
+
+        // Pide guardar antes una sola vez, hasta que el siguiente checkpoint rote el archivo
+        if (full && onFull != null && fullSignalled.compareAndSet(false, true)) {
+            onFull.run();
+        }
+    }
+
+    /**
+     * Escribe lo que queda y cierra el archivo actual. Los archivos siguen hasta un checkpoint,
+     * así un apagado cuyo último guardado falló se repite al arrancar
+     */
+    public void close() {
+        running = false;
+        if (writer != null) {
+            // Sin interrumpir, una interrupción a mitad de escritura cerraría el FileChannel
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (channelLock) {
+            if (channel != null) {
+                try {
+                    channel.force(false);
+                    channel.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Error cerrando el diario de cambios", e);
+                }
+                channel = null;
+            }
+        }
+    }
+
+    public long getSize() {
+        synchronized (channelLock) {
+            return size;
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+
+    private static long generationOf(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    public interface RecordVisitor {
+        void connect(UUID uuid, String username, String ip, long timestamp, boolean admin);
+
+        void disconnect(UUID uuid, String ip, long timestamp, long duration);
+    }
+}
@@ -0,0 +1,229 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * El único hilo que escribe datos, así los guardados nunca coinciden ni van en el hilo del servidor.
+ * {@link #submit} agrupa por clave dentro de la ventana, {@link #execute} escribe todo en orden
+ */
+public class PersistenceWriter {
+
+    private final long coalesceNanos;
+    private final Logger logger;
+    private final Object lock = new Object();
+
+    // Protegido por lock
+    private final LinkedHashMap<String, PendingWrite> coalesced;
+    private final ArrayDeque<Runnable> ordered;
+    private boolean running;
+    private boolean flushing;
+    private boolean busy;
+    private long completedWrites;
+    private long mergedWrites;
+
+    private Thread thread;
+
+    public PersistenceWriter(long coalesceMs, Logger logger) {
+        this.coalesceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, coalesceMs));
+        this.logger = logger;
+        this.coalesced = new LinkedHashMap<>();
+        this.ordered = new ArrayDeque<>();
+    }
+
+    public void start() {
+        synchronized (lock) {
+            running = true;
+        }
+        thread = new Thread(this::writeLoop, "IPDynamic-Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Encola una escritura que reemplaza a la pendiente con la misma clave
+     */
+    public void submit(String key, Runnable write) {
+        synchronized (lock) {
+            if (running) {
+                PendingWrite pending = coalesced.get(key);
+                if (pending != null) {
+                    // Mantiene su sitio y su plazo, un flujo constante de guardados no la retrasa
+                    pending.write = write;
+                    mergedWrites++;
+                } else {
+                    coalesced.put(key, new PendingWrite(write, System.nanoTime() + coalesceNanos));
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+        runWrite(write);
+    }
+
+    /**
+     * Encola una escritura en orden con las demás no agrupadas
+     */
+    public void execute(Runnable write) {
+        synchronized (lock) {
+            if (running) {
+                ordered.add(write);
+                lock.notifyAll();
+                return;
+            }
+        }
+        runWrite(write);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Runnable write;
+            synchronized (lock) {
+                try {
+                    while ((write = nextWrite()) == null) {
+                        if (!running && coalesced.isEmpty() && ordered.isEmpty()) {
+                            lock.notifyAll();
+                            return;
+                        }
+                        long wait = nextDeadline() - System.nanoTime();
+                        if (coalesced.isEmpty() || flushing || !running) {
+                            lock.wait();
+                        } else {
+                            TimeUnit.NANOSECONDS.timedWait(lock, Math.max(1, wait));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                busy = true;
+            }
+
+            runWrite(write);
+
+            synchronized (lock) {
+                busy = false;
+                completedWrites++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // Con lock tomado
+    private Runnable nextWrite() {
+        Runnable write = ordered.poll();
+        if (write != null) return write;
+
+        Iterator<PendingWrite> iterator = coalesced.values().iterator();
+        if (!iterator.hasNext()) return null;
+
+        // El orden de inserción es el de plazos, todas las claves esperan la misma ventana
+        PendingWrite first = iterator.next();
+        if (flushing || !running || first.deadline - System.nanoTime() <= 0) {
+            iterator.remove();
+            return first.write;
+        }
+        return null;
+    }
+
+    // Con lock tomado
+    private long nextDeadline() {
+        for (PendingWrite pending : coalesced.values()) {
+            return pending.deadline;
+        }
+        return System.nanoTime();
+    }
+
+    private void runWrite(Runnable write) {
+        try {
+            write.run();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error guardando datos", e);
+        }
+    }
+
+    /**
+     * Ejecuta lo pendiente sin esperar la ventana, false si no acaba dentro del tiempo
+     */
+    public boolean flush(long timeoutMs) {
+        if (Thread.currentThread() == thread) return false;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        synchronized (lock) {
+            flushing = true;
+            lock.notifyAll();
+            try {
+                while (busy || !coalesced.isEmpty() || !ordered.isEmpty()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || thread == null || !thread.isAlive()) return false;
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                flushing = false;
+            }
+        }
+    }
+
+    /**
+     * Vacía lo pendiente dentro del tiempo y para el hilo, lo posterior va en el hilo que llama.
+     * false si quedaba algo pendiente al acabar el plazo
+     */
+    public boolean close(long timeoutMs) {
+        long start = System.currentTimeMillis();
+        boolean flushed = flush(timeoutMs);
+
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join(Math.max(1, timeoutMs - (System.currentTimeMillis() - start)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (!flushed) {
+            logger.warning("El guardado pendiente no terminó a tiempo, " + getPendingCount() + " escrituras sin completar");
+        }
+        return flushed;
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return coalesced.size() + ordered.size() + (busy ? 1 : 0);
+        }
+    }
+
+    public long getCompletedWrites() {
+        synchronized (lock) {
+            return completedWrites;
+        }
+    }
+
+    public long getMergedWrites() {
+        synchronized (lock) {
+            return mergedWrites;
+        }
+    }
+
+    private static class PendingWrite {
+        private Runnable write;
+        private final long deadline;
+
+        private PendingWrite(Runnable write, long deadline) {
+            this.write = write;
+            this.deadline = deadline;
+        }
+    }
+}
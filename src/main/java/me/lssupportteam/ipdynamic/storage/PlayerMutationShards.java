@@ -0,0 +1,160 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cambios de cada jugador en orden en un shard de un hilo elegido por su UUID, en paralelo entre jugadores.
+ * {@link #submit} desde el propio shard va en línea; para otro jugador {@link #execute}, esperar a otro shard bloquea
+ */
+public class PlayerMutationShards {
+
+    private final Shard[] shards;
+    private final Logger logger;
+
+    public PlayerMutationShards(int count, Logger logger) {
+        int size = count > 0 ? count : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[Math.max(1, size)];
+        this.logger = logger;
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    public void start() {
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(UUID uuid, Supplier<T> mutation) {
+        Shard shard = shardOf(uuid);
+        if (Thread.currentThread() == shard.thread || !shard.running) {
+            try {
+                return CompletableFuture.completedFuture(mutation.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        shard.queue.add(() -> {
+            try {
+                future.complete(mutation.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Encola un cambio sin esperarlo, también desde su shard, así va tras el cambio en curso
+     */
+    public void execute(UUID uuid, Runnable mutation) {
+        Shard shard = shardOf(uuid);
+        if (!shard.running) {
+            run(mutation);
+            return;
+        }
+        shard.queue.add(mutation);
+    }
+
+    /**
+     * Espera a los cambios encolados antes de la llamada, false si se acaba el tiempo
+     */
+    public boolean flush(long timeoutMs) {
+        CountDownLatch latch = new CountDownLatch(shards.length);
+        for (Shard shard : shards) {
+            if (shard.running && Thread.currentThread() != shard.thread) {
+                shard.queue.add(latch::countDown);
+            } else {
+                latch.countDown();
+            }
+        }
+
+        try {
+            return latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Ejecuta lo encolado dentro del tiempo y para los shards, lo posterior va en el hilo que llama
+     */
+    public void close(long timeoutMs) {
+        if (!flush(timeoutMs)) {
+            logger.warning("Cambios de jugadores sin aplicar al cerrar: " + getPendingCount());
+        }
+
+        // Se despierta con un cambio vacío en vez de interrumpir, que cerraría el archivo de volcado a mitad de lectura
+        for (Shard shard : shards) {
+            shard.running = false;
+            shard.queue.add(() -> { });
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int getPendingCount() {
+        int pending = 0;
+        for (Shard shard : shards) {
+            pending += shard.queue.size();
+        }
+        return pending;
+    }
+
+    private Shard shardOf(UUID uuid) {
+        long bits = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        int hash = (int) (bits ^ (bits >>> 32));
+        hash ^= hash >>> 16;
+        return shards[Math.floorMod(hash, shards.length)];
+    }
+
+    private void run(Runnable mutation) {
+        try {
+            mutation.run();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Error aplicando un cambio de jugador", e);
+        }
+    }
+
+    private class Shard {
+        final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        final Thread thread;
+        volatile boolean running = true;
+
+        Shard(int index) {
+            this.thread = new Thread(this::loop, "IPDynamic-Shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void loop() {
+            while (running) {
+                Runnable mutation;
+                try {
+                    mutation = queue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                run(mutation);
+            }
+
+            // Lo que llegó a la vez que el cierre se ejecuta igual, en este hilo antes de salir
+            Runnable leftover;
+            while ((leftover = queue.poll()) != null) {
+                run(leftover);
+            }
+        }
+    }
+}
@@ -0,0 +1,527 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import me.lssupportteam.ipdynamic.utils.IPUtils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registro binario de eventos de conexión en segmentos de tamaño fijo, solo el activo en memoria.
+ * Cada segmento tiene un índice disperso de tiempos cada {@value #INDEX_STRIDE} registros
+ */
+public class SegmentedConnectionLog {
+
+    private static final int MAGIC = 0x4950434C; // "IPCL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    // timestamp(8) + duración(8) + uuid(16) + ip(16) + tipo(1)
+    private static final int RECORD_SIZE = 49;
+    private static final int INDEX_STRIDE = 256;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final Logger logger;
+
+    // Las consultas leen con el bloqueo de lectura, retención y cierre toman el de escritura antes
+    // del monitor, así ningún segmento se borra bajo un lector
+    private final ReadWriteLock segmentLock;
+    private final List<Segment> segments;
+    private Segment active;
+    private long lastTimestamp;
+    private boolean closed;
+
+    public SegmentedConnectionLog(File directory, long segmentBytes, Logger logger) {
+        this.directory = directory;
+        long usable = Math.min(segmentBytes, Integer.MAX_VALUE) - HEADER_SIZE;
+        this.recordsPerSegment = (int) Math.max(INDEX_STRIDE, usable / RECORD_SIZE);
+        this.logger = logger;
+        this.segmentLock = new ReentrantReadWriteLock();
+        this.segments = new ArrayList<>();
+    }
+
+    /**
+     * Recupera los registros de cada segmento y mapea el último si tiene sitio
+     */
+    public synchronized void open() throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            // Números de secuencia con ceros, el orden alfabético es el de creación
+            Arrays.sort(files, Comparator.comparing(File::getName));
+            for (File file : files) {
+                try {
+                    segments.add(Segment.open(file));
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Segmento de registro de conexiones ilegible, se omite: " + file.getName(), e);
+                }
+            }
+        }
+
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            lastTimestamp = last.lastTimestamp;
+            if (last.count < last.capacity) {
+                try {
+                    last.map();
+                    active = last;
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "No se pudo reabrir el último segmento, se empezará uno nuevo", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Añade un evento, los tiempos que van hacia atrás se ajustan para que cada segmento siga ordenado
+     */
+    public synchronized void append(byte type, UUID uuid, String ip, long timestamp, long duration) {
+        byte[] address = encodeIp(ip);
+        if (address == null || closed) return;
+
+        try {
+            if (active == null || active.count >= active.capacity) {
+                roll();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "No se pudo crear un nuevo segmento del registro de conexiones", e);
+            return;
+        }
+
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+        active.write(type, uuid, address, lastTimestamp, duration);
+    }
+
+    /**
+     * Hasta {@code limit} eventos entre {@code from} y {@code to} incluidos, los más nuevos primero.
+     * Con {@code ip} solo los de esa dirección
+     */
+    public List<Entry> query(long from, long to, String ip, int limit) {
+        byte[] wanted = null;
+        if (ip != null) {
+            wanted = encodeIp(ip);
+            if (wanted == null) return Collections.emptyList();
+        }
+
+        List<Entry> results = new ArrayList<>();
+        byte[] address = new byte[16];
+
+        segmentLock.readLock().lock();
+        try {
+            List<Segment> snapshot;
+            Segment writing;
+            MappedByteBuffer writingBuffer;
+            synchronized (this) {
+                if (closed) return results;
+                snapshot = new ArrayList<>(segments);
+                writing = active;
+                // Sigue legible si el segmento se cierra durante la consulta
+                writingBuffer = active != null ? active.buffer : null;
+            }
+
+            for (int s = snapshot.size() - 1; s >= 0 && results.size() < limit; s--) {
+                Segment segment = snapshot.get(s);
+                int count = segment.count;
+                if (count == 0 || segment.sparseIndex[0] > to) continue;
+                if (segment.lastTimestamp < from) break;
+
+                try (SegmentReader reader = segment == writing
+                        ? new SegmentReader(writingBuffer, segment.capacity)
+                        : new SegmentReader(segment.file, segment.capacity)) {
+
+                    for (int i = segment.upperBound(reader, to, count) - 1; i >= 0 && results.size() < limit; i--) {
+                        long timestamp = reader.timestampAt(i);
+                        if (timestamp < from) break;
+
+                        reader.ipAt(i, address);
+                        if (wanted != null && !Arrays.equals(wanted, address)) continue;
+
+                        results.add(reader.read(i, timestamp, address));
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "No se pudo leer el segmento " + segment.file.getName(), e);
+                }
+            }
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        return results;
+    }
+
+    public synchronized void flush() {
+        if (active != null) {
+            active.buffer.force();
+        }
+    }
+
+    /**
+     * Borra los segmentos más viejos que {@code maxAgeMs} y luego los más antiguos mientras se pase
+     * de {@code maxTotalBytes}. Los límites no positivos se ignoran, el activo se conserva
+     */
+    public int applyRetention(long maxAgeMs, long maxTotalBytes, long now) {
+        segmentLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                int deleted = 0;
+                long total = getTotalBytes();
+
+                Iterator<Segment> iterator = segments.iterator();
+                while (iterator.hasNext()) {
+                    Segment segment = iterator.next();
+                    if (segment == active) break;
+
+                    boolean expired = maxAgeMs > 0 && segment.lastTimestamp < now - maxAgeMs;
+                    boolean overBudget = maxTotalBytes > 0 && total > maxTotalBytes;
+                    if (!expired && !overBudget) break;
+
+                    total -= segment.file.length();
+                    if (!segment.file.delete()) {
+                        segment.file.deleteOnExit();
+                    }
+                    iterator.remove();
+                    deleted++;
+                }
+                return deleted;
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+    public void close() {
+        segmentLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                flush();
+                if (active != null) {
+                    active.seal();
+                }
+                segments.clear();
+                active = null;
+                closed = true;
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.file.length();
+        }
+        return total;
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.seal();
+        }
+
+        long sequence = 0;
+        if (!segments.isEmpty()) {
+            sequence = segments.get(segments.size() - 1).sequence + 1;
+        }
+
+        File file = new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        active = Segment.create(file, sequence, recordsPerSegment);
+        segments.add(active);
+    }
+
+    /**
+     * Dirección literal en 16 bytes, IPv4 como IPv6 mapeada. Nunca resuelve DNS
+     */
+    static byte[] encodeIp(String ip) {
+        if (ip == null) return null;
+
+        if (IPUtils.isValidIpAddress(ip)) {
+            int packed = IPUtils.toInt(ip);
+            byte[] bytes = new byte[16];
+            bytes[10] = (byte) 0xFF;
+            bytes[11] = (byte) 0xFF;
+            bytes[12] = (byte) (packed >>> 24);
+            bytes[13] = (byte) (packed >>> 16);
+            bytes[14] = (byte) (packed >>> 8);
+            bytes[15] = (byte) packed;
+            return bytes;
+        }
+
+        if (ip.indexOf(':') < 0) return null;
+        try {
+            byte[] bytes = InetAddress.getByName(ip).getAddress();
+            return bytes.length == 16 ? bytes : null;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    static String decodeIp(byte[] bytes) {
+        boolean mapped = bytes[10] == (byte) 0xFF && bytes[11] == (byte) 0xFF;
+        for (int i = 0; i < 10 && mapped; i++) {
+            if (bytes[i] != 0) mapped = false;
+        }
+
+        if (mapped) {
+            return (bytes[12] & 0xFF) + "." + (bytes[13] & 0xFF) + "." + (bytes[14] & 0xFF) + "." + (bytes[15] & 0xFF);
+        }
+        try {
+            return InetAddress.getByAddress(bytes).getHostAddress();
+        } catch (UnknownHostException e) {
+            return "UNKNOWN";
+        }
+    }
+
+
+    private static final class Segment {
+        final File file;
+        final long sequence;
+        final int capacity;
+        final long[] sparseIndex;
+
+        // Solo mientras es el segmento activo
+        RandomAccessFile raf;
+        MappedByteBuffer buffer;
+        volatile int count;
+        volatile long lastTimestamp;
+
+        private Segment(File file, long sequence, int capacity) {
+            this.file = file;
+            this.sequence = sequence;
+            this.capacity = capacity;
+            this.sparseIndex = new long[(capacity + INDEX_STRIDE - 1) / INDEX_STRIDE];
+        }
+
+        static Segment create(File file, long sequence, int capacity) throws IOException {
+            Segment segment = new Segment(file, sequence, capacity);
+            segment.map();
+
+            segment.buffer.putInt(0, MAGIC);
+            segment.buffer.putInt(4, VERSION);
+            segment.buffer.putInt(8, capacity);
+            return segment;
+        }
+
+        static Segment open(File file) throws IOException {
+            String name = file.getName();
+            long sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+
+            int capacity;
+            try (RandomAccessFile header = new RandomAccessFile(file, "r")) {
+                if (header.length() < HEADER_SIZE || header.readInt() != MAGIC || header.readInt() != VERSION) {
+                    throw new IOException("Cabecera de segmento inválida");
+                }
+                capacity = header.readInt();
+                if (capacity <= 0 || header.length() < HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+                    throw new IOException("Segmento truncado");
+                }
+            }
+
+            Segment segment = new Segment(file, sequence, capacity);
+            try (SegmentReader reader = new SegmentReader(file, capacity)) {
+                segment.recover(reader);
+            }
+            return segment;
+        }
+
+        void map() throws IOException {
+            raf = new RandomAccessFile(file, "rw");
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        }
+
+        /**
+         * Fuerza los registros a disco y suelta el archivo, las consultas lo leen desde entonces
+         */
+        void seal() {
+            buffer.force();
+            try {
+                raf.close();
+            } catch (IOException ignored) {
+            }
+            raf = null;
+            buffer = null;
+        }
+
+        /**
+         * Registros contiguos sin timestamp cero, el primer hueco vacío sale por búsqueda binaria
+         */
+        private void recover(SegmentReader reader) throws IOException {
+            int low = 0;
+            int high = capacity;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (reader.timestampAt(mid) != 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            for (int i = 0; i < low; i += INDEX_STRIDE) {
+                sparseIndex[i / INDEX_STRIDE] = reader.timestampAt(i);
+            }
+            lastTimestamp = low == 0 ? 0 : reader.timestampAt(low - 1);
+            count = low;
+        }
+
+        void write(byte type, UUID uuid, byte[] address, long timestamp, long duration) {
+            int index = count;
+            int offset = HEADER_SIZE + index * RECORD_SIZE;
+
+            buffer.putLong(offset + 8, duration);
+            buffer.putLong(offset + 16, uuid.getMostSignificantBits());
+            buffer.putLong(offset + 24, uuid.getLeastSignificantBits());
+            for (int i = 0; i < 16; i++) {
+                buffer.put(offset + 32 + i, address[i]);
+            }
+            buffer.put(offset + 48, type);
+            // El timestamp al final, distinto de cero marca el registro como completo al recuperar
+            buffer.putLong(offset, timestamp);
+
+            if (index % INDEX_STRIDE == 0) {
+                sparseIndex[index / INDEX_STRIDE] = timestamp;
+            }
+            lastTimestamp = timestamp;
+            count = index + 1;
+        }
+
+        /**
+         * Índice del primer registro con timestamp mayor que {@code to}
+         */
+        int upperBound(SegmentReader reader, long to, int count) throws IOException {
+            int blocks = (count + INDEX_STRIDE - 1) / INDEX_STRIDE;
+
+            // Último bloque que empieza en el límite o antes
+            int low = 0;
+            int high = blocks - 1;
+            int block = 0;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (sparseIndex[mid] <= to) {
+                    block = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            int i = block * INDEX_STRIDE;
+            while (i < count && reader.timestampAt(i) <= to) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Lee los registros de un segmento, del mapeo del activo o del archivo de uno cerrado
+     */
+    private static final class SegmentReader implements Closeable {
+        private final int capacity;
+        private final FileChannel channel; // null al leer un mapeo
+        private final ByteBuffer records;
+        private final int base;
+        private int first;
+        private int loaded;
+
+        SegmentReader(ByteBuffer mapping, int capacity) {
+            this.capacity = capacity;
+            this.channel = null;
+            this.records = mapping;
+            this.base = HEADER_SIZE;
+            this.loaded = capacity;
+        }
+
+        SegmentReader(File file, int capacity) throws IOException {
+            this.capacity = capacity;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.records = ByteBuffer.allocate(INDEX_STRIDE * RECORD_SIZE);
+            this.base = 0;
+        }
+
+        long timestampAt(int index) throws IOException {
+            return records.getLong(offset(index));
+        }
+
+        void ipAt(int index, byte[] into) throws IOException {
+            int offset = offset(index) + 32;
+            for (int i = 0; i < 16; i++) {
+                into[i] = records.get(offset + i);
+            }
+        }
+
+        Entry read(int index, long timestamp, byte[] address) throws IOException {
+            int offset = offset(index);
+            UUID uuid = new UUID(records.getLong(offset + 16), records.getLong(offset + 24));
+            return new Entry(records.get(offset + 48), uuid, decodeIp(address), timestamp, records.getLong(offset + 8));
+        }
+
+        private int offset(int index) throws IOException {
+            if (index < first || index >= first + loaded) {
+                load(index);
+            }
+            return base + (index - first) * RECORD_SIZE;
+        }
+
+        private void load(int index) throws IOException {
+            first = index / INDEX_STRIDE * INDEX_STRIDE;
+            loaded = 0;
+            int size = Math.min(INDEX_STRIDE, capacity - first) * RECORD_SIZE;
+            long position = HEADER_SIZE + (long) first * RECORD_SIZE;
+
+            records.clear().limit(size);
+            while (records.hasRemaining()) {
+                if (channel.read(records, position + records.position()) < 0) {
+                    throw new EOFException("Segmento truncado");
+                }
+            }
+            loaded = size / RECORD_SIZE;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    public static class Entry {
+        public final byte type;
+        public final UUID uuid;
+        public final String ip;
+        public final long timestamp;
+        public final long duration;
+
+        public Entry(byte type, UUID uuid, String ip, long timestamp, long duration) {
+            this.type = type;
+            this.uuid = uuid;
+            this.ip = ip;
+            this.timestamp = timestamp;
+            this.duration = duration;
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import me.lssupportteam.ipdynamic.models.BanEntry;
+import me.lssupportteam.ipdynamic.models.GeoLocationPool;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
+import me.lssupportteam.ipdynamic.models.IpStats;
+import me.lssupportteam.ipdynamic.models.PlayerData;
+import me.lssupportteam.ipdynamic.utils.JsonUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Backend SQLite con HikariCP y el driver del servidor. Baneos y whitelist se escriben fila a fila,
+ * jugadores y conexiones en un lote por guardado; los guardados de colección completa no hacen nada
+ */
+public class SqliteStorageBackend implements StorageBackend {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS players ("
+            + "uuid TEXT PRIMARY KEY, username TEXT, username_lower TEXT, last_ip TEXT, "
+            + "last_login INTEGER NOT NULL, data TEXT NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_players_username ON players (username_lower)",
+        "CREATE TABLE IF NOT EXISTS player_ips ("
+            + "uuid TEXT NOT NULL, ip TEXT NOT NULL, connections INTEGER NOT NULL, "
+            + "first_seen INTEGER NOT NULL, last_seen INTEGER NOT NULL, PRIMARY KEY (uuid, ip))",
+        "CREATE INDEX IF NOT EXISTS idx_player_ips_ip ON player_ips (ip)",
+        "CREATE TABLE IF NOT EXISTS connections ("
+            + "id INTEGER PRIMARY KEY AUTOINCREMENT, type INTEGER NOT NULL, uuid TEXT NOT NULL, "
+            + "ip TEXT NOT NULL, timestamp INTEGER NOT NULL, duration INTEGER NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_connections_ip ON connections (ip, timestamp)",
+        "CREATE INDEX IF NOT EXISTS idx_connections_uuid ON connections (uuid, timestamp)",
+        "CREATE TABLE IF NOT EXISTS bans ("
+            + "pattern TEXT PRIMARY KEY, type TEXT NOT NULL, data TEXT NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_bans_type ON bans (type)",
+        "CREATE TABLE IF NOT EXISTS whitelist (name TEXT PRIMARY KEY)",
+        "CREATE TABLE IF NOT EXISTS meta (key TEXT PRIMARY KEY, value INTEGER NOT NULL)"
+    };
+
+    private final File databaseFile;
+    private final int historySize;
+    private final Gson gson;
+    private final PersistenceWriter writer;
+    private final Logger logger;
+    private final ConcurrentLinkedQueue<PendingConnection> pendingConnections;
+
+    private HikariDataSource dataSource;
+
+    public SqliteStorageBackend(File databaseFile, int historySize, Gson gson, PersistenceWriter writer, Logger logger) {
+        this.databaseFile = databaseFile;
+        this.historySize = historySize;
+        this.gson = gson;
+        this.writer = writer;
+        this.logger = logger;
+        this.pendingConnections = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public void open() throws IOException {
+        if (!databaseFile.getParentFile().exists()) {
+            databaseFile.getParentFile().mkdirs();
+        }
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("IPDynamic-SQLite");
+        config.setDriverClassName("org.sqlite.JDBC");
+        config.setJdbcUrl("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        // SQLite admite un solo escritor, más conexiones solo esperarían al bloqueo del archivo
+        config.setMaximumPoolSize(1);
+        config.addDataSourceProperty("journal_mode", "WAL");
+        config.addDataSourceProperty("synchronous", "NORMAL");
+        config.addDataSourceProperty("foreign_keys", "false");
+
+        try {
+            dataSource = new HikariDataSource(config);
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            close();
+            throw new IOException("No se pudo abrir la base de datos " + databaseFile.getName(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (dataSource != null) {
+            flushConnections();
+            dataSource.close();
+            dataSource = null;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                 "SELECT (SELECT COUNT(*) FROM players) + (SELECT COUNT(*) FROM bans) + (SELECT COUNT(*) FROM whitelist)")) {
+            return rs.next() && rs.getLong(1) == 0;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error consultando la base de datos", e);
+            return false;
+        }
+    }
+
+
+    @Override
+    public void loadPlayers(IpMetadataTable ips, BiConsumer<UUID, PlayerData> consumer) {
+        Gson reader = JsonUtils.getPlayerGson(ips);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setFetchSize(BATCH_SIZE);
+            try (ResultSet rs = statement.executeQuery("SELECT uuid, data FROM players")) {
+                while (rs.next()) {
+                    UUID uuid = UUID.fromString(rs.getString(1));
+                    PlayerData data = reader.fromJson(rs.getString(2), PlayerData.class);
+                    if (data != null) {
+                        consumer.accept(uuid, data);
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Error cargando jugadores de la base de datos", e);
+        }
+    }
+
+    @Override
+    public boolean savePlayers(TieredPlayerStore players, Collection<PlayerData> changed, Collection<UUID> removed) {
+        if (changed.isEmpty() && removed.isEmpty()) return true;
+
+        return withTransaction(connection -> {
+            // Con las filas, la generación nombra siempre lo guardado
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("INSERT OR IGNORE INTO meta (key, value) VALUES ('players_generation', 0)");
+                statement.executeUpdate("UPDATE meta SET value = value + 1 WHERE key = 'players_generation'");
+            }
+
+            if (!removed.isEmpty()) {
+                deletePlayers(connection, removed);
+            }
+
+            try (PreparedStatement upsertPlayer = connection.prepareStatement(
+                     "INSERT OR REPLACE INTO players (uuid, username, username_lower, last_ip, last_login, data) "
+                         + "VALUES (?, ?, ?, ?, ?, ?)");
+                 PreparedStatement deleteIps = connection.prepareStatement(
+                     "DELETE FROM player_ips WHERE uuid = ?");
+                 PreparedStatement insertIp = connection.prepareStatement(
+                     "INSERT OR REPLACE INTO player_ips (uuid, ip, connections, first_seen, last_seen) VALUES (?, ?, ?, ?, ?)")) {
+
+                int pending = 0;
+                for (PlayerData player : changed) {
+                    // Columnas, filas de IP y JSON de la misma versión del registro
+                    PlayerData data = player.pinned();
+                    String uuid = data.getUuid().toString();
+                    String username = data.getUsername();
+
+                    upsertPlayer.setString(1, uuid);
+                    upsertPlayer.setString(2, username);
+                    upsertPlayer.setString(3, username != null ? username.toLowerCase(Locale.ROOT) : null);
+                    upsertPlayer.setString(4, data.getLastIp());
+                    upsertPlayer.setLong(5, data.getLastLogin());
+                    upsertPlayer.setString(6, toJson(data, PlayerData.class));
+                    upsertPlayer.addBatch();
+
+                    // Las IPs que salen del historial también salen de la tabla de IPs
+                    deleteIps.setString(1, uuid);
+                    deleteIps.addBatch();
+
+                    for (String ip : data.getIpHistory()) {
+                        IpStats stats = data.getIpStats() != null ? data.getIpStats().get(ip) : null;
+                        insertIp.setString(1, uuid);
+                        insertIp.setString(2, ip);
+                        insertIp.setInt(3, stats != null ? stats.getConnections() : 0);
+                        insertIp.setLong(4, stats != null ? stats.getFirstSeen() : data.getIpFirstSeen(ip));
+                        insertIp.setLong(5, stats != null ? stats.getLastSeen() : data.getIpFirstSeen(ip));
+                        insertIp.addBatch();
+                    }
+
+                    if (++pending >= BATCH_SIZE) {
+                        upsertPlayer.executeBatch();
+                        deleteIps.executeBatch();
+                        insertIp.executeBatch();
+                        pending = 0;
+                    }
+                }
+
+                upsertPlayer.executeBatch();
+                deleteIps.executeBatch();
+                insertIp.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public long getPlayersDiskSize() {
+        // Las filas borradas van a la lista libre sin encoger el archivo, solo cuentan las páginas usadas
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            long pageSize = queryLong(statement, "PRAGMA page_size");
+            return (queryLong(statement, "PRAGMA page_count") - queryLong(statement, "PRAGMA freelist_count")) * pageSize;
+        } catch (SQLException | RuntimeException e) {
+            return databaseFile.length();
+        }
+    }
+
+    @Override
+    public String getPlayersStamp() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            return "sqlite:" + queryLong(statement, "SELECT value FROM meta WHERE key = 'players_generation'");
+        } catch (SQLException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private void deletePlayers(Connection connection, Collection<UUID> removed) throws SQLException {
+        try (PreparedStatement deletePlayer = connection.prepareStatement("DELETE FROM players WHERE uuid = ?");
+             PreparedStatement deleteIps = connection.prepareStatement("DELETE FROM player_ips WHERE uuid = ?")) {
+            for (UUID uuid : removed) {
+                deletePlayer.setString(1, uuid.toString());
+                deletePlayer.addBatch();
+                deleteIps.setString(1, uuid.toString());
+                deleteIps.addBatch();
+            }
+            deletePlayer.executeBatch();
+            deleteIps.executeBatch();
+        }
+    }
+
+
+    @Override
+    public void loadConnections(ConnectionRingBuffer into) {
+        String sql = "SELECT type, uuid, ip, timestamp, duration FROM "
+            + "(SELECT * FROM connections ORDER BY id DESC LIMIT ?) ORDER BY id";
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, into.getCapacity());
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    into.append((byte) rs.getInt(1), UUID.fromString(rs.getString(2)), rs.getString(3),
+                        rs.getLong(4), rs.getLong(5));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Error cargando el historial de conexiones de la base de datos", e);
+        }
+    }
+
+    @Override
+    public void appendConnection(byte type, UUID uuid, String ip, long timestamp, long duration) {
+        pendingConnections.offer(new PendingConnection(type, uuid, ip, timestamp, duration));
+    }
+
+    @Override
+    public void saveConnections(ConnectionRingBuffer history, Function<UUID, String> usernames) {
+        flushConnections();
+    }
+
+    private void flushConnections() {
+        if (pendingConnections.isEmpty()) return;
+
+        withTransaction(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO connections (type, uuid, ip, timestamp, duration) VALUES (?, ?, ?, ?, ?)");
+                 PreparedStatement trim = connection.prepareStatement(
+                     "DELETE FROM connections WHERE id <= (SELECT MAX(id) FROM connections) - ?")) {
+
+                int pending = 0;
+                PendingConnection event;
+                while ((event = pendingConnections.poll()) != null) {
+                    insert.setInt(1, event.type);
+                    insert.setString(2, event.uuid.toString());
+                    insert.setString(3, event.ip);
+                    insert.setLong(4, event.timestamp);
+                    insert.setLong(5, event.duration);
+                    insert.addBatch();
+
+                    if (++pending >= BATCH_SIZE) {
+                        insert.executeBatch();
+                        pending = 0;
+                    }
+                }
+                insert.executeBatch();
+
+                // El mismo límite que el historial en memoria, el registro segmentado guarda el resto
+                trim.setInt(1, historySize);
+                trim.executeUpdate();
+            }
+        });
+    }
+
+
+    @Override
+    public Map<String, BanEntry> loadBans(BanEntry.BanType type) {
+        Map<String, BanEntry> bans = new HashMap<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pattern, data FROM bans WHERE type = ?")) {
+            statement.setString(1, type.getType());
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    BanEntry entry = gson.fromJson(rs.getString(2), BanEntry.class);
+                    if (entry != null) {
+                        bans.put(rs.getString(1), entry);
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Error cargando baneos de la base de datos", e);
+        }
+        return bans;
+    }
+
+    @Override
+    public void saveBan(BanEntry entry, Map<String, BanEntry> all) {
+        write(() -> upsertBan(entry, entry.getBanType()));
+    }
+
+    private void upsertBan(BanEntry entry, BanEntry.BanType type) {
+        execute("INSERT OR REPLACE INTO bans (pattern, type, data) VALUES (?, ?, ?)",
+            entry.getPattern(), type.getType(), toJson(entry, BanEntry.class));
+    }
+
+    @Override
+    public void deleteBan(BanEntry.BanType type, String pattern, Map<String, BanEntry> all) {
+        write(() -> execute("DELETE FROM bans WHERE pattern = ?", pattern));
+    }
+
+    @Override
+    public void saveBans(BanEntry.BanType type, Map<String, BanEntry> all) {
+        // Cada baneo ya se escribió al cambiar
+    }
+
+    @Override
+    public String getBansStamp() {
+        return tableStamp("bans");
+    }
+
+
+    @Override
+    public Set<String> loadWhitelist() {
+        Set<String> names = new HashSet<>();
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM whitelist")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error cargando la whitelist de la base de datos", e);
+        }
+        return names;
+    }
+
+    @Override
+    public void addWhitelisted(String name, Set<String> all) {
+        write(() -> insertWhitelisted(name));
+    }
+
+    private void insertWhitelisted(String name) {
+        execute("INSERT OR IGNORE INTO whitelist (name) VALUES (?)", name);
+    }
+
+    @Override
+    public void removeWhitelisted(String name, Set<String> all) {
+        write(() -> execute("DELETE FROM whitelist WHERE name = ?", name));
+    }
+
+    @Override
+    public void clearWhitelist() {
+        write(() -> execute("DELETE FROM whitelist"));
+    }
+
+    @Override
+    public void saveWhitelist(Set<String> all) {
+        // Cada cambio de whitelist ya se escribió al ocurrir
+    }
+
+    @Override
+    public String getWhitelistStamp() {
+        return tableStamp("whitelist");
+    }
+
+    // Las filas se reemplazan, cada escritura mueve la cuenta o el rowid más alto
+    private String tableStamp(String table) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            return "sqlite:" + queryLong(statement, "SELECT COUNT(*) FROM " + table)
+                + ":" + queryLong(statement, "SELECT COALESCE(MAX(rowid), 0) FROM " + table);
+        } catch (SQLException | RuntimeException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Copia todo lo guardado en otro backend, una vez para importar los JSON
+     */
+    public void importFrom(StorageBackend source) {
+        List<PlayerData> batch = new ArrayList<>(BATCH_SIZE);
+        int[] players = new int[1];
+        // Solo se copian, una tabla propia guarda sus IPs mientras tanto
+        source.loadPlayers(new IpMetadataTable(new GeoLocationPool(0, 0)), (uuid, data) -> {
+            if (data.getUuid() == null) data.setUuid(uuid);
+            if (data.getIpHistory() == null) data.setIpHistory(new ArrayList<>());
+            if (data.getIpTimestamps() == null) data.setIpTimestamps(new HashMap<>());
+            batch.add(data);
+            players[0]++;
+            if (batch.size() >= BATCH_SIZE) {
+                savePlayers(null, batch, Collections.emptyList());
+                batch.clear();
+            }
+        });
+        savePlayers(null, batch, Collections.emptyList());
+
+        for (BanEntry.BanType type : BanEntry.BanType.values()) {
+            for (BanEntry entry : source.loadBans(type).values()) {
+                upsertBan(entry, type);
+            }
+        }
+
+        for (String name : source.loadWhitelist()) {
+            insertWhitelisted(name);
+        }
+
+        ConnectionRingBuffer history = new ConnectionRingBuffer(historySize);
+        source.loadConnections(history);
+        history.forEach(this::appendConnection);
+        flushConnections();
+
+        logger.info(String.format("Datos importados desde %s: %d jugadores, %d conexiones",
+            source.getName(), players[0], history.size()));
+    }
+
+
+    private String toJson(Object value, Class<?> type) {
+        // Un JsonWriter sin más deja las filas compactas aunque el Gson compartido indente
+        StringWriter writer = new StringWriter();
+        gson.toJson(value, type, new JsonWriter(writer));
+        return writer.toString();
+    }
+
+    /**
+     * Los cambios de filas van en orden en el hilo de guardado, se escriben todos
+     */
+    private void write(Runnable change) {
+        if (writer != null) {
+            writer.execute(change);
+        } else {
+            change.run();
+        }
+    }
+
+    private void execute(String sql, Object... params) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Error escribiendo en la base de datos", e);
+        }
+    }
+
+    private boolean withTransaction(SqlWork work) {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                work.run(connection);
+                connection.commit();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Error escribiendo en la base de datos", e);
+            return false;
+        }
+    }
+
+    private interface SqlWork {
+        void run(Connection connection) throws SQLException;
+    }
+
+    private static class PendingConnection {
+        final byte type;
+        final UUID uuid;
+        final String ip;
+        final long timestamp;
+        final long duration;
+
+        PendingConnection(byte type, UUID uuid, String ip, long timestamp, long duration) {
+            this.type = type;
+            this.uuid = uuid;
+            this.ip = ip;
+            this.timestamp = timestamp;
+            this.duration = duration;
+        }
+    }
+}
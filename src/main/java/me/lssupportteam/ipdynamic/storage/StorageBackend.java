@@ -0,0 +1,96 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import me.lssupportteam.ipdynamic.models.BanEntry;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
+import me.lssupportteam.ipdynamic.models.PlayerData;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Persistencia de DataManager, BanManager y WhitelistManager. Los backends de archivo completo
+ * reescriben la colección, los de filas solo escriben el cambio
+ */
+public interface StorageBackend {
+
+    String getName();
+
+    void open() throws IOException;
+
+    void close();
+
+    /**
+     * Si aún no hay datos, para importar desde JSON en el primer arranque
+     */
+    boolean isEmpty();
+
+
+    /**
+     * Pasa cada jugador guardado al consumer de uno en uno, con sus IPs en la tabla dada
+     */
+    void loadPlayers(IpMetadataTable ips, BiConsumer<UUID, PlayerData> consumer);
+
+    /**
+     * Guarda {@code changed} y borra {@code removed}, false si no se escribió nada
+     * para reintentarlos en el siguiente guardado
+     */
+    boolean savePlayers(TieredPlayerStore players, Collection<PlayerData> changed, Collection<UUID> removed);
+
+    /**
+     * Bytes que ocupan los jugadores en disco, para informar de lo liberado por la retención
+     */
+    long getPlayersDiskSize();
+
+    /**
+     * Identifica a los jugadores tal como están en disco y cambia al escribirlos, para índices derivados
+     */
+    String getPlayersStamp();
+
+
+    /**
+     * Añade al anillo los eventos de conexión guardados más recientes, del más antiguo al más nuevo
+     */
+    void loadConnections(ConnectionRingBuffer into);
+
+    void appendConnection(byte type, UUID uuid, String ip, long timestamp, long duration);
+
+    /**
+     * Guarda el historial de conexiones, {@code usernames} da el nombre actual de un jugador
+     */
+    void saveConnections(ConnectionRingBuffer history, Function<UUID, String> usernames);
+
+
+    Map<String, BanEntry> loadBans(BanEntry.BanType type);
+
+    void saveBan(BanEntry entry, Map<String, BanEntry> all);
+
+    void deleteBan(BanEntry.BanType type, String pattern, Map<String, BanEntry> all);
+
+    void saveBans(BanEntry.BanType type, Map<String, BanEntry> all);
+
+    /**
+     * Como {@link #getPlayersStamp}, para los baneos de todos los tipos
+     */
+    String getBansStamp();
+
+
+    Set<String> loadWhitelist();
+
+    void addWhitelisted(String name, Set<String> all);
+
+    void removeWhitelisted(String name, Set<String> all);
+
+    void clearWhitelist();
+
+    void saveWhitelist(Set<String> all);
+
+    /**
+     * Como {@link #getPlayersStamp}, para la whitelist
+     */
+    String getWhitelistStamp();
+}
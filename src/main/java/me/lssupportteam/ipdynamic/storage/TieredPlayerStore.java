@@ -0,0 +1,692 @@
+package me.lssupportteam.ipdynamic.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import me.lssupportteam.ipdynamic.models.PlayerData;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Almacén de PlayerData en dos capas: los usados hace poco en un LRU en memoria y el resto en un
+ * archivo de volcado con su posición en memoria. Los cambios pasan por {@link #update}
+ */
+public class TieredPlayerStore {
+
+    // uuid(16) + longitud(4)
+    private static final int RECORD_HEADER = 20;
+    private static final int LENGTH_BITS = 24;
+    private static final long MAX_RECORD_LENGTH = (1L << LENGTH_BITS) - 1;
+    private static final long COMPACT_MIN_DEAD_BYTES = 16L * 1024 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+
+    private final File spillFile;
+    private final int maxHotPlayers;
+    private final Gson gson;
+    private final Logger logger;
+
+    private final LinkedHashMap<UUID, PlayerData> hot;
+    private final Set<UUID> pinned;
+    private final ConcurrentHashMap<UUID, Integer> inUse; // Retenidos en la capa caliente por cambios en curso
+    // Expulsados camino del volcado, se siguen encontrando hasta que se escriben. Protegido por hot
+    private final Map<UUID, PlayerData> spilling;
+    private final ArrayDeque<UUID> spillQueue; // Protegido por hot
+    private final Object spillWrite = new Object(); // Una escritura a la vez, los registros quedan seguidos
+    private final ConcurrentHashMap<UUID, Long> coldIndex; // posición << 24 | longitud del registro
+    private final ReadWriteLock fileLock;
+    private final Object scanLock = new Object(); // Un recorrido completo a la vez
+
+    // Posiciones frías quitadas durante un recorrido, así visita lo que era frío al empezar
+    private volatile ConcurrentHashMap<UUID, Long> removedDuringScan;
+    // Reutilizados en cada recorrido, protegidos por scanLock
+    private UUID[] scanKeys = new UUID[0];
+    private PlayerData[] scanValues = new PlayerData[0];
+
+    // Se cambia con el bloqueo de hot y el de escritura del archivo, se lee con cualquiera
+    private volatile FileChannel channel;
+    // Lo avanzan los volcados con el bloqueo de lectura al completar el registro, se reinicia con el de escritura
+    private volatile long writePosition;
+    private long deadBytes; // Protegido por hot
+    // Crece cuando los registros se mueven o desaparecen del archivo, un volcado anterior se repite.
+    // Cambia con el bloqueo de hot y el de escritura del archivo
+    private long fileEpoch;
+
+    public TieredPlayerStore(File spillFile, int maxHotPlayers, Gson gson, Logger logger) {
+        this.spillFile = spillFile;
+        this.maxHotPlayers = Math.max(1, maxHotPlayers);
+        this.gson = gson;
+        this.logger = logger;
+        this.hot = new LinkedHashMap<>(16, 0.75f, true);
+        this.pinned = ConcurrentHashMap.newKeySet();
+        this.inUse = new ConcurrentHashMap<>();
+        this.spilling = new HashMap<>();
+        this.spillQueue = new ArrayDeque<>();
+        this.coldIndex = new ConcurrentHashMap<>();
+        this.fileLock = new ReentrantReadWriteLock();
+    }
+
+    public void open() throws IOException {
+        synchronized (hot) {
+            if (!spillFile.getParentFile().exists()) {
+                spillFile.getParentFile().mkdirs();
+            }
+            channel = FileChannel.open(spillFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            writePosition = 0;
+            deadBytes = 0;
+        }
+    }
+
+    /**
+     * Obtiene un jugador, subiéndolo a la capa caliente si estaba frío
+     */
+    public PlayerData get(UUID uuid) {
+        PlayerData result = null;
+        while (true) {
+            // Las dos capas se miran bajo el bloqueo, una subida mueve el registro de forma atómica
+            Long location;
+            synchronized (hot) {
+                PlayerData data = hot.get(uuid);
+                if (data != null) return data;
+
+                data = spilling.remove(uuid);
+                if (data != null) {
+                    // Aún sin escribir, se recupera tal cual y la escritura se descarta al llegar
+                    hot.put(uuid, data);
+                    evictIfNeeded();
+                    result = data;
+                    break;
+                }
+                location = coldIndex.get(uuid);
+            }
+            if (location == null) return null;
+
+            PlayerData loaded = readCold(uuid, location);
+            if (loaded == null && location.equals(coldIndex.get(uuid))) {
+                return null; // Registro ilegible
+            }
+
+            synchronized (hot) {
+                PlayerData data = hot.get(uuid);
+                if (data != null) return data;
+
+                // Movido por una compactación o subido y volcado otra vez, se vuelve a leer
+                if (loaded == null || !location.equals(coldIndex.get(uuid))) continue;
+
+                noteColdRemoved(uuid, location);
+                coldIndex.remove(uuid);
+                deadBytes += length(location);
+                hot.put(uuid, loaded);
+                evictIfNeeded();
+                result = loaded;
+                break;
+            }
+        }
+
+        spillEvicted();
+        return result;
+    }
+
+    /**
+     * Aplica un cambio a un jugador retenido en la capa caliente hasta que vuelve, así una expulsión
+     * no vuelca una copia sin él. {@code change} recibe null si no se conoce
+     */
+    public <R> R update(UUID uuid, Function<PlayerData, R> change) {
+        // Retenido antes de buscarlo, una expulsión posterior lo ve
+        inUse.merge(uuid, 1, Integer::sum);
+        try {
+            return change.apply(get(uuid));
+        } finally {
+            inUse.computeIfPresent(uuid, (key, holds) -> holds > 1 ? holds - 1 : null);
+        }
+    }
+
+    /**
+     * Aplica un cambio sin subir el registro, para pasadas por todos los jugadores. Un registro frío se
+     * lee, cambia y vuelve a añadir al volcado. Debe ir en el shard del jugador
+     */
+    public <R> R updateInPlace(UUID uuid, Function<PlayerData, R> change) {
+        Long location;
+        synchronized (hot) {
+            location = hot.containsKey(uuid) || spilling.containsKey(uuid) ? null : coldIndex.get(uuid);
+        }
+        PlayerData loaded = location != null ? readCold(uuid, location) : null;
+        // Caliente, desconocido o movido por una compactación tras buscarlo
+        if (loaded == null) return update(uuid, change);
+
+        R result = change.apply(loaded);
+        rewriteCold(uuid, loaded);
+        return result;
+    }
+
+    // Guarda la copia cambiada de un registro frío donde esté ahora
+    private void rewriteCold(UUID uuid, PlayerData data) {
+        while (true) {
+            long[] epoch = new long[1];
+            Long written = writeCold(uuid, data, epoch);
+
+            synchronized (hot) {
+                // Compactado o vaciado tras escribir, la posición ya no tiene el registro
+                if (written != null && epoch[0] != fileEpoch) continue;
+
+                // Subido entre tanto, la copia en memoria es anterior al cambio
+                if (hot.containsKey(uuid) || spilling.containsKey(uuid) || written == null) {
+                    if (written != null) deadBytes += length(written);
+                    if (spilling.containsKey(uuid)) {
+                        spilling.put(uuid, data);
+                        spillQueue.add(uuid);
+                    } else if (hot.containsKey(uuid) || coldIndex.containsKey(uuid)) {
+                        // Si falla la escritura el cambio se queda en memoria
+                        Long old = coldIndex.remove(uuid);
+                        if (old != null) {
+                            noteColdRemoved(uuid, old);
+                            deadBytes += length(old);
+                        }
+                        hot.put(uuid, data);
+                        evictIfNeeded();
+                    }
+                    break;
+                }
+
+                Long old = coldIndex.get(uuid);
+                if (old == null) {
+                    deadBytes += length(written); // Borrado entre tanto
+                    break;
+                }
+                noteColdRemoved(uuid, old);
+                coldIndex.put(uuid, written);
+                deadBytes += length(old);
+                break;
+            }
+        }
+        spillEvicted();
+    }
+
+    /**
+     * Si un jugador está en memoria y no solo en el volcado
+     */
+    public boolean isResident(UUID uuid) {
+        synchronized (hot) {
+            return hot.containsKey(uuid) || spilling.containsKey(uuid);
+        }
+    }
+
+    /**
+     * Obtiene un jugador sin subirlo, para consultas de solo lectura que no deben mover la capa caliente
+     */
+    public PlayerData peek(UUID uuid) {
+        while (true) {
+            // Las dos capas se miran bajo el bloqueo, una subida mueve el registro de forma atómica
+            Long location;
+            synchronized (hot) {
+                PlayerData data = hot.get(uuid);
+                if (data == null) data = spilling.get(uuid);
+                if (data != null) return data;
+                location = coldIndex.get(uuid);
+            }
+            if (location == null) return null;
+
+            PlayerData loaded = readCold(uuid, location);
+            if (loaded != null || location.equals(coldIndex.get(uuid))) return loaded;
+        }
+    }
+
+    public void put(UUID uuid, PlayerData data) {
+        synchronized (hot) {
+            spilling.remove(uuid);
+            hot.put(uuid, data);
+            Long old = coldIndex.get(uuid);
+            if (old != null) {
+                noteColdRemoved(uuid, old);
+                coldIndex.remove(uuid);
+                deadBytes += length(old);
+            }
+            evictIfNeeded();
+        }
+        spillEvicted();
+    }
+
+    public PlayerData computeIfAbsent(UUID uuid, Function<UUID, PlayerData> factory) {
+        while (true) {
+            PlayerData data = get(uuid);
+            if (data != null) return data;
+
+            synchronized (hot) {
+                data = hot.get(uuid);
+                if (data != null) return data;
+                if (coldIndex.containsKey(uuid) || spilling.containsKey(uuid)) continue;
+
+                data = factory.apply(uuid);
+                hot.put(uuid, data);
+                evictIfNeeded();
+            }
+            spillEvicted();
+            return data;
+        }
+    }
+
+    /**
+     * Quita un jugador de las dos capas, un registro frío queda como espacio muerto hasta compactar
+     */
+    public boolean remove(UUID uuid) {
+        synchronized (hot) {
+            pinned.remove(uuid);
+            if (hot.remove(uuid) != null | spilling.remove(uuid) != null) return true;
+
+            Long old = coldIndex.get(uuid);
+            if (old == null) return false;
+            noteColdRemoved(uuid, old);
+            coldIndex.remove(uuid);
+            deadBytes += length(old);
+            return true;
+        }
+    }
+
+    /**
+     * UUID de cada jugador guardado, los calientes primero
+     */
+    public List<UUID> keys() {
+        synchronized (hot) {
+            List<UUID> keys = new ArrayList<>(hot.size() + spilling.size() + coldIndex.size());
+            keys.addAll(hot.keySet());
+            keys.addAll(spilling.keySet());
+            keys.addAll(coldIndex.keySet());
+            return keys;
+        }
+    }
+
+    public boolean isPinned(UUID uuid) {
+        return pinned.contains(uuid);
+    }
+
+    public boolean contains(UUID uuid) {
+        synchronized (hot) {
+            return hot.containsKey(uuid) || spilling.containsKey(uuid) || coldIndex.containsKey(uuid);
+        }
+    }
+
+    /**
+     * Mantiene un jugador en la capa caliente hasta soltarlo, para los jugadores online
+     */
+    public void pin(UUID uuid) {
+        pinned.add(uuid);
+    }
+
+    public void unpin(UUID uuid) {
+        pinned.remove(uuid);
+    }
+
+    public int size() {
+        synchronized (hot) {
+            return hot.size() + spilling.size() + coldIndex.size();
+        }
+    }
+
+    public int getHotCount() {
+        synchronized (hot) {
+            return hot.size() + spilling.size();
+        }
+    }
+
+    public int getColdCount() {
+        return coldIndex.size();
+    }
+
+    /**
+     * Recorre todos los jugadores sin subir los fríos, tal como estaban al empezar: primero los calientes
+     * y luego el volcado de principio a fin. El consumer no debe volver a llamar al almacén
+     */
+    public void forEach(BiConsumer<UUID, PlayerData> consumer) {
+        synchronized (scanLock) {
+            int hotCount;
+            long scanEnd;
+            Set<UUID> spillingAtStart;
+
+            // Con el bloqueo de hot, en el mismo orden que la compactación, así el punto de partida no caduca
+            synchronized (hot) {
+                fileLock.readLock().lock();
+                hotCount = hot.size() + spilling.size();
+                if (scanKeys.length < hotCount) {
+                    scanKeys = new UUID[hotCount + hotCount / 4];
+                    scanValues = new PlayerData[scanKeys.length];
+                }
+                int index = 0;
+                for (Map.Entry<UUID, PlayerData> entry : hot.entrySet()) {
+                    scanKeys[index] = entry.getKey();
+                    scanValues[index++] = entry.getValue();
+                }
+                // Visitados desde memoria, un volcado durante el recorrido no debe repetirlos
+                spillingAtStart = spilling.isEmpty() ? Collections.emptySet() : new HashSet<>(spilling.keySet());
+                for (Map.Entry<UUID, PlayerData> entry : spilling.entrySet()) {
+                    scanKeys[index] = entry.getKey();
+                    scanValues[index++] = entry.getValue();
+                }
+                scanEnd = channel != null ? writePosition : 0;
+                removedDuringScan = new ConcurrentHashMap<>();
+            }
+
+            try {
+                for (int i = 0; i < hotCount; i++) {
+                    consumer.accept(scanKeys[i], scanValues[i]);
+                }
+                scanCold(scanEnd, spillingAtStart, consumer);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error leyendo el almacenamiento de jugadores inactivos", e);
+            } finally {
+                Arrays.fill(scanKeys, 0, hotCount, null);
+                Arrays.fill(scanValues, 0, hotCount, null);
+                // Se sueltan antes de volver a tomar hot, la compactación los toma en el otro orden
+                fileLock.readLock().unlock();
+                synchronized (hot) {
+                    removedDuringScan = null;
+                }
+            }
+        }
+    }
+
+    // Con el bloqueo de lectura del archivo, así ninguna compactación mueve registros a mitad
+    private void scanCold(long end, Set<UUID> visited, BiConsumer<UUID, PlayerData> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(SCAN_BUFFER_SIZE, Math.max(RECORD_HEADER, end)));
+        buffer.limit(0);
+        long bufferStart = 0;
+        long position = 0;
+
+        while (position < end) {
+            if (position + RECORD_HEADER > bufferStart + buffer.limit()) {
+                bufferStart = position;
+                if (fill(buffer, position, end) < RECORD_HEADER) return;
+            }
+
+            int index = (int) (position - bufferStart);
+            UUID uuid = new UUID(buffer.getLong(index), buffer.getLong(index + 8));
+            long length = RECORD_HEADER + (buffer.getInt(index + 16) & 0xFFFFFFFFL);
+            long location = pack(position, length);
+
+            if (!visited.contains(uuid) && wasColdAtScanStart(uuid, location)) {
+                PlayerData data;
+                if (length > buffer.capacity()) {
+                    data = readLocked(uuid, location);
+                } else {
+                    if (position + length > bufferStart + buffer.limit()) {
+                        bufferStart = position;
+                        if (fill(buffer, position, end) < length) return;
+                        index = 0;
+                    }
+                    data = decode(buffer, index + RECORD_HEADER, (int) length - RECORD_HEADER);
+                }
+                if (data != null) {
+                    consumer.accept(uuid, data);
+                }
+            }
+            position += length;
+        }
+    }
+
+    private boolean wasColdAtScanStart(UUID uuid, long location) {
+        // Los borrados anotan la posición antes de quitarla del índice, en este orden no se pierde ninguno
+        Long now = coldIndex.get(uuid);
+        if (now != null && now == location) return true;
+
+        Long removed = removedDuringScan.get(uuid);
+        return removed != null && removed == location;
+    }
+
+    // Con el bloqueo de hot
+    private void noteColdRemoved(UUID uuid, long location) {
+        ConcurrentHashMap<UUID, Long> removed = removedDuringScan;
+        if (removed != null) {
+            removed.putIfAbsent(uuid, location);
+        }
+    }
+
+    private int fill(ByteBuffer buffer, long position, long end) throws IOException {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), end - position));
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) break;
+        }
+        buffer.flip();
+        return buffer.limit();
+    }
+
+    private PlayerData decode(ByteBuffer buffer, int offset, int length) {
+        try {
+            return gson.fromJson(new String(buffer.array(), offset, length, StandardCharsets.UTF_8), PlayerData.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reescribe el volcado sin los registros que volvieron a memoria, cuando ocupan más que los vivos
+     */
+    public void compactIfNeeded() {
+        synchronized (hot) {
+            if (channel == null || deadBytes < COMPACT_MIN_DEAD_BYTES || deadBytes < writePosition - deadBytes) {
+                return;
+            }
+
+            fileLock.writeLock().lock();
+            File compacted = new File(spillFile.getParentFile(), spillFile.getName() + ".compact");
+            try (FileChannel target = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+                List<Map.Entry<UUID, Long>> live = new ArrayList<>(coldIndex.entrySet());
+                live.sort(Comparator.comparingLong(Map.Entry::getValue));
+
+                long position = 0;
+                Map<UUID, Long> moved = new HashMap<>(live.size());
+                for (Map.Entry<UUID, Long> entry : live) {
+                    long length = length(entry.getValue());
+                    long copied = 0;
+                    while (copied < length) {
+                        copied += channel.transferTo(offset(entry.getValue()) + copied, length - copied, target);
+                    }
+                    moved.put(entry.getKey(), pack(position, length));
+                    position += length;
+                }
+                target.force(false);
+
+                channel.close();
+                java.nio.file.Files.move(compacted.toPath(), spillFile.toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                channel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+                coldIndex.putAll(moved);
+                writePosition = position;
+                deadBytes = 0;
+                fileEpoch++;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "No se pudo compactar el almacenamiento de jugadores inactivos", e);
+            } finally {
+                fileLock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (hot) {
+            hot.clear();
+            spilling.clear();
+            spillQueue.clear();
+            coldIndex.clear();
+            fileLock.writeLock().lock();
+            try {
+                if (channel != null) {
+                    channel.truncate(0);
+                }
+                writePosition = 0;
+                deadBytes = 0;
+                fileEpoch++;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "No se pudo vaciar el almacenamiento de jugadores inactivos", e);
+            } finally {
+                fileLock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void close() {
+        synchronized (hot) {
+            fileLock.writeLock().lock();
+            try {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+            } catch (IOException ignored) {
+            } finally {
+                fileLock.writeLock().unlock();
+            }
+            spillFile.delete();
+        }
+    }
+
+    // Con el bloqueo de hot. Solo elige los registros, quien llama los escribe con spillEvicted tras soltarlo
+    private void evictIfNeeded() {
+        if (hot.size() <= maxHotPlayers || channel == null) return;
+
+        Iterator<Map.Entry<UUID, PlayerData>> iterator = hot.entrySet().iterator();
+        while (hot.size() > maxHotPlayers && iterator.hasNext()) {
+            Map.Entry<UUID, PlayerData> eldest = iterator.next();
+            if (pinned.contains(eldest.getKey()) || inUse.containsKey(eldest.getKey())) continue;
+
+            spilling.put(eldest.getKey(), eldest.getValue());
+            spillQueue.add(eldest.getKey());
+            iterator.remove();
+        }
+    }
+
+    // Sin el bloqueo de hot, así las búsquedas nunca esperan a una escritura
+    private void spillEvicted() {
+        while (true) {
+            UUID uuid;
+            PlayerData data;
+            synchronized (hot) {
+                uuid = spillQueue.poll();
+                if (uuid == null) return;
+                data = spilling.get(uuid);
+                if (data == null) continue; // Recuperado o borrado entre tanto
+            }
+
+            long[] epoch = new long[1];
+            Long location = writeCold(uuid, data, epoch);
+
+            synchronized (hot) {
+                if (location != null && epoch[0] != fileEpoch) {
+                    // Compactado o vaciado tras escribir, la posición ya no tiene el registro
+                    if (spilling.get(uuid) == data) spillQueue.add(uuid);
+                    continue;
+                }
+                if (spilling.get(uuid) != data) {
+                    // Recuperado, reemplazado o borrado mientras se escribía
+                    if (location != null) deadBytes += length(location);
+                    continue;
+                }
+                spilling.remove(uuid);
+                if (location == null) {
+                    hot.put(uuid, data); // Se queda en memoria antes que perderlo
+                    continue;
+                }
+                coldIndex.put(uuid, location);
+            }
+        }
+    }
+
+    private Long writeCold(UUID uuid, PlayerData data, long[] epoch) {
+        byte[] json = serialize(data);
+        long length = RECORD_HEADER + json.length;
+        if (length > MAX_RECORD_LENGTH) return null;
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+        buffer.putInt(json.length);
+        buffer.put(json);
+        buffer.flip();
+
+        synchronized (spillWrite) {
+            fileLock.readLock().lock();
+            try {
+                FileChannel target = channel;
+                if (target == null) return null;
+
+                epoch[0] = fileEpoch;
+                long position = writePosition;
+                while (buffer.hasRemaining()) {
+                    target.write(buffer, position + buffer.position());
+                }
+                // Solo ahora, así un recorrido nunca lee hasta un registro incompleto
+                writePosition = position + length;
+                return pack(position, length);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "No se pudo mover un jugador al almacenamiento en disco", e);
+                return null;
+            } finally {
+                fileLock.readLock().unlock();
+            }
+        }
+    }
+
+    private PlayerData readCold(UUID uuid, long location) {
+        fileLock.readLock().lock();
+        try {
+            return readLocked(uuid, location);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    private PlayerData readLocked(UUID uuid, long location) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) length(location));
+            long position = offset(location);
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) return null;
+            }
+            buffer.flip();
+
+            // Una posición leída antes de compactar puede apuntar ahora a otro registro
+            if (buffer.getLong() != uuid.getMostSignificantBits() || buffer.getLong() != uuid.getLeastSignificantBits()) {
+                return null;
+            }
+            buffer.position(RECORD_HEADER);
+
+            String json = StandardCharsets.UTF_8.decode(buffer).toString();
+            return gson.fromJson(json, PlayerData.class);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private byte[] serialize(PlayerData data) {
+        StringWriter writer = new StringWriter();
+        gson.toJson(data, PlayerData.class, new JsonWriter(writer));
+        return writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long pack(long offset, long length) {
+        return (offset << LENGTH_BITS) | length;
+    }
+
+    private static long offset(long location) {
+        return location >>> LENGTH_BITS;
+    }
+
+    private static long length(long location) {
+        return location & MAX_RECORD_LENGTH;
+    }
+}
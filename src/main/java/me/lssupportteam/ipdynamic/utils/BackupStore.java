@@ -0,0 +1,356 @@
+package me.lssupportteam.ipdynamic.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Copias de los archivos de datos por contenido: cada contenido se guarda una vez por su SHA-256 en
+ * {@code objects/} y un manifiesto lista las copias. Se conserva la más nueva de cada hora y día
+ */
+public class BackupStore {
+
+    private static final String MANIFEST = "manifest.json";
+    private static final String OBJECTS = "objects";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    // Copias de versiones anteriores, una con fecha por guardado
+    private static final Pattern LEGACY_NAME = Pattern.compile("^(.+)_(\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2})(\\.[^.]+)?$");
+    private static final Gson MANIFEST_GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Type MANIFEST_TYPE = new TypeToken<Map<String, List<Entry>>>(){}.getType();
+
+    private final File directory;
+    private final File objectsDir;
+    private final File manifestFile;
+    private final Logger logger;
+    private Map<String, List<Entry>> manifest;
+
+    private int keepHourly = 24;
+    private int keepDaily = 7;
+    private boolean compress = false;
+
+    public BackupStore(File directory, Logger logger) {
+        this.directory = directory;
+        this.objectsDir = new File(directory, OBJECTS);
+        this.manifestFile = new File(directory, MANIFEST);
+        this.logger = logger;
+    }
+
+    public synchronized void configure(int keepHourly, int keepDaily, boolean compress) {
+        this.keepHourly = Math.max(0, keepHourly);
+        this.keepDaily = Math.max(0, keepDaily);
+        this.compress = compress;
+    }
+
+    /**
+     * Lee el manifiesto, o en el primer uso importa las copias de versiones anteriores
+     */
+    private void ensureLoaded() {
+        if (manifest != null) return;
+
+        if (!objectsDir.exists()) {
+            objectsDir.mkdirs();
+        }
+
+        if (manifestFile.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(manifestFile), StandardCharsets.UTF_8)) {
+                manifest = MANIFEST_GSON.fromJson(reader, MANIFEST_TYPE);
+            } catch (Exception e) {
+                log(Level.WARNING, "El índice de copias de seguridad es ilegible, se reconstruye", e);
+            }
+        }
+
+        if (manifest == null) {
+            manifest = new HashMap<>();
+            importLegacyBackups();
+            saveManifest();
+        }
+    }
+
+    /**
+     * Copia el contenido actual de un archivo antes de sobrescribirlo, false si ya había una igual
+     */
+    public synchronized boolean backup(File file) throws IOException {
+        ensureLoaded();
+        List<Entry> entries = manifest.computeIfAbsent(file.getName(), k -> new ArrayList<>());
+        Entry latest = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+
+        // Mismo tamaño y fecha que la última copia, nadie lo escribió desde entonces
+        if (latest != null && latest.sourceModified == file.lastModified() && latest.size == file.length()) {
+            return false;
+        }
+
+        Entry entry = store(file, System.currentTimeMillis());
+        if (latest != null && latest.hash.equals(entry.hash)) {
+            latest.sourceModified = entry.sourceModified;
+            saveManifest();
+            return false;
+        }
+
+        entries.add(entry);
+        applyRetention(entries);
+        saveManifest();
+        return true;
+    }
+
+    /**
+     * Restaura la copia más nueva cuyo contenido coincide con su hash, devuelve su fecha o -1
+     */
+    public synchronized long restoreLatest(File target) {
+        ensureLoaded();
+        List<Entry> entries = manifest.get(target.getName());
+        if (entries == null) return -1;
+
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            File object = getObjectFile(entry);
+            if (!object.exists()) continue;
+
+            File tempFile = new File(target.getParentFile(), target.getName() + ".restore");
+            try {
+                String hash;
+                try (DigestInputStream in = new DigestInputStream(openObject(object, entry.compressed), newDigest());
+                     OutputStream out = new FileOutputStream(tempFile)) {
+                    copy(in, out);
+                    hash = toHex(in.getMessageDigest().digest());
+                }
+
+                if (!hash.equals(entry.hash)) {
+                    log(Level.WARNING, "La copia de seguridad " + object.getName() + " está dañada, se prueba una anterior", null);
+                    continue;
+                }
+                Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return entry.time;
+            } catch (IOException e) {
+                log(Level.WARNING, "No se pudo restaurar la copia de seguridad " + object.getName() + ": " + e.getMessage(), null);
+            } finally {
+                tempFile.delete();
+            }
+        }
+        return -1;
+    }
+
+    public synchronized int getBackupCount() {
+        ensureLoaded();
+        int count = 0;
+        for (List<Entry> entries : manifest.values()) {
+            count += entries.size();
+        }
+        return count;
+    }
+
+
+    /**
+     * Copia un archivo al almacén calculando su hash, un objeto con el mismo hash se reutiliza
+     */
+    private Entry store(File file, long time) throws IOException {
+        Entry entry = new Entry();
+        entry.time = time;
+        entry.size = file.length();
+        entry.sourceModified = file.lastModified();
+        entry.compressed = compress;
+
+        File tempFile = new File(objectsDir, "incoming-" + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (DigestInputStream in = new DigestInputStream(new FileInputStream(file), newDigest());
+                 OutputStream out = compress
+                     ? new GZIPOutputStream(new FileOutputStream(tempFile), COPY_BUFFER_SIZE)
+                     : new FileOutputStream(tempFile)) {
+                copy(in, out);
+                entry.hash = toHex(in.getMessageDigest().digest());
+            }
+
+            // Ya guardado: el mismo contenido existe, comprimido o no
+            Entry existing = new Entry();
+            existing.hash = entry.hash;
+            existing.compressed = !compress;
+            if (getObjectFile(existing).exists()) {
+                entry.compressed = !compress;
+                return entry;
+            }
+
+            File object = getObjectFile(entry);
+            if (!object.exists()) {
+                Files.move(tempFile.toPath(), object.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return entry;
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Conserva la copia más nueva de cada una de las últimas {@code keepHourly} horas y
+     * {@code keepDaily} días, y la más nueva de todas
+     */
+    private void applyRetention(List<Entry> entries) {
+        entries.sort(Comparator.comparingLong(e -> e.time));
+
+        Set<Long> hours = new HashSet<>();
+        Set<Long> days = new HashSet<>();
+        List<Entry> kept = new ArrayList<>();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            boolean keep = i == entries.size() - 1;
+            if (hours.size() < keepHourly && hours.add(Math.floorDiv(entry.time, HOUR))) keep = true;
+            if (days.size() < keepDaily && days.add(Math.floorDiv(entry.time, DAY))) keep = true;
+            if (keep) kept.add(0, entry);
+        }
+        if (kept.size() == entries.size()) return;
+
+        List<Entry> removed = new ArrayList<>(entries);
+        removed.removeAll(kept);
+        entries.clear();
+        entries.addAll(kept);
+
+        Set<String> referenced = new HashSet<>();
+        for (List<Entry> fileEntries : manifest.values()) {
+            for (Entry entry : fileEntries) {
+                referenced.add(getObjectFile(entry).getName());
+            }
+        }
+        for (Entry entry : removed) {
+            File object = getObjectFile(entry);
+            if (!referenced.contains(object.getName()) && object.exists() && !object.delete()) {
+                log(Level.WARNING, "No se pudo borrar la copia de seguridad antigua " + object.getName(), null);
+            }
+        }
+    }
+
+    private void importLegacyBackups() {
+        File[] files = directory.listFiles(File::isFile);
+        if (files == null) return;
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+        Map<String, List<File>> legacy = new HashMap<>();
+        for (File file : files) {
+            Matcher matcher = LEGACY_NAME.matcher(file.getName());
+            if (!matcher.matches()) continue;
+            try {
+                format.parse(matcher.group(2));
+            } catch (ParseException e) {
+                continue;
+            }
+            String extension = matcher.group(3) != null ? matcher.group(3) : "";
+            legacy.computeIfAbsent(matcher.group(1) + extension, k -> new ArrayList<>()).add(file);
+        }
+        if (legacy.isEmpty()) return;
+
+        int imported = 0;
+        int deleted = 0;
+        for (Map.Entry<String, List<File>> group : legacy.entrySet()) {
+            List<Entry> entries = new ArrayList<>();
+            manifest.put(group.getKey(), entries);
+
+            // Solo se calcula el hash de las que se conservarían, el resto se borra
+            List<File> copies = group.getValue();
+            copies.sort(Comparator.comparingLong(File::lastModified).reversed());
+            Set<Long> hours = new HashSet<>();
+            Set<Long> days = new HashSet<>();
+            for (int i = 0; i < copies.size(); i++) {
+                File copy = copies.get(i);
+                long modified = copy.lastModified();
+                boolean keep = i == 0;
+                if (hours.size() < keepHourly && hours.add(Math.floorDiv(modified, HOUR))) keep = true;
+                if (days.size() < keepDaily && days.add(Math.floorDiv(modified, DAY))) keep = true;
+
+                if (keep) {
+                    try {
+                        Entry entry = store(copy, modified);
+                        entry.sourceModified = 0;
+                        entries.add(0, entry);
+                        imported++;
+                    } catch (IOException e) {
+                        log(Level.WARNING, "No se pudo importar la copia de seguridad " + copy.getName(), e);
+                        continue;
+                    }
+                }
+                if (copy.delete()) deleted++;
+            }
+        }
+
+        log(Level.INFO, "Importadas " + imported + " copias de seguridad a " + directory.getName() + "/" + OBJECTS
+            + ", eliminadas " + deleted + " copias antiguas", null);
+    }
+
+    private void saveManifest() {
+        File tempFile = new File(directory, MANIFEST + ".tmp");
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+                MANIFEST_GSON.toJson(manifest, MANIFEST_TYPE, writer);
+            }
+            Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log(Level.WARNING, "No se pudo guardar el índice de copias de seguridad", e);
+        }
+    }
+
+    private File getObjectFile(Entry entry) {
+        return new File(objectsDir, entry.hash + (entry.compressed ? COMPRESSED_SUFFIX : ""));
+    }
+
+    private static InputStream openObject(File object, boolean compressed) throws IOException {
+        InputStream in = new FileInputStream(object);
+        return compressed ? new GZIPInputStream(in, COPY_BUFFER_SIZE) : in;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private void log(Level level, String message, Throwable error) {
+        if (logger != null) {
+            logger.log(level, message, error);
+        }
+    }
+
+    private static class Entry {
+        String hash;
+        long time;
+        long size;
+        long sourceModified;
+        boolean compressed;
+    }
+}
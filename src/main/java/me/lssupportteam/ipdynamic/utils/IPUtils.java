@@ -131,6 +131,51 @@ public class IPUtils {
         }
     }
 
+    /**
+     * IPv4 empaquetada en un int, o -1 si no es válida. 255.255.255.255 también da -1 y se trata como inválida
+     */
+    public static int toInt(String ip) {
+        if (ip == null) return -1;
+
+        // Misma validación que IP_PATTERN en una sola pasada, se llama por cada IP al cargar
+        int result = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || ++dots > 3) return -1;
+                result = (result << 8) | octet;
+                octet = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                octet = octet * 10 + (c - '0');
+                if (octet > 255) return -1;
+                digits++;
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0 || dots != 3) return -1;
+        return (result << 8) | octet;
+    }
+
+    /**
+     * Vuelve a la forma con puntos una IPv4 empaquetada
+     */
+    public static String fromInt(int ip) {
+        return ((ip >>> 24) & 0xFF) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+    }
+
+    /**
+     * Clave de la subred /24 (tres primeros octetos) de una IPv4, o -1 si no es válida
+     */
+    public static int subnet24(String ip) {
+        int packed = toInt(ip);
+        return packed == -1 ? -1 : packed >>> 8;
+    }
+
     public static String resolveHostname(String hostname) {
         try {
             InetAddress address = InetAddress.getByName(hostname);
@@ -4,35 +4,54 @@ import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
+import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 
 public class JsonUtils {
 
-    private static final Gson GSON = new GsonBuilder()
+    private static final Gson GSON = ModelTypeAdapters.register(new GsonBuilder())
             .setPrettyPrinting()
             .setDateFormat("yyyy-MM-dd HH:mm:ss")
             .registerTypeAdapter(UUID.class, new UUIDTypeAdapter())
             .disableHtmlEscaping()
             .create();
 
+    // Sin sangría los archivos ocupan un tercio menos y se escriben antes
+    private static volatile boolean compactOutput = false;
+
     private static final Map<String, ReadWriteLock> fileLocks = new HashMap<>();
+    private static final int STREAM_QUEUE_SIZE = 1024;
+    private static final Object[] END_OF_STREAM = new Object[0];
     private static final SimpleDateFormat BACKUP_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
 
+    private static final Map<String, BackupStore> backupStores = new HashMap<>();
+    private static volatile boolean backupsEnabled = true;
+    private static volatile int backupKeepHourly = 24;
+    private static volatile int backupKeepDaily = 7;
+    private static volatile boolean backupCompress = false;
+    private static volatile Logger backupLogger;
+
     private static ReadWriteLock getLock(File file) {
         synchronized (fileLocks) {
             return fileLocks.computeIfAbsent(file.getAbsolutePath(), k -> new ReentrantReadWriteLock());
@@ -40,50 +59,52 @@ public class JsonUtils {
     }
 
     /**
-     * Creates the backup directory structure inside data folder
+     * Almacén de copias de la carpeta data/backup junto a un archivo de datos
      */
-    private static File getBackupDir(File dataFile) {
-        File dataDir = dataFile.getParentFile();
-        File backupDir = new File(dataDir, "backup");
-        if (!backupDir.exists()) {
-            backupDir.mkdirs();
+    private static BackupStore getBackupStore(File dataFile) {
+        File backupDir = new File(dataFile.getParentFile(), "backup");
+        synchronized (backupStores) {
+            return backupStores.computeIfAbsent(backupDir.getAbsolutePath(), k -> {
+                BackupStore store = new BackupStore(backupDir, backupLogger);
+                store.configure(backupKeepHourly, backupKeepDaily, backupCompress);
+                return store;
+            });
         }
-        return backupDir;
     }
 
     /**
-     * Gets the backup file path with timestamp
+     * Copia un archivo de datos antes de sobrescribirlo, salvo que las copias estén desactivadas
      */
-    private static File getBackupFile(File originalFile) {
-        File backupDir = getBackupDir(originalFile);
-        String timestamp = BACKUP_DATE_FORMAT.format(new Date());
-        String backupName = originalFile.getName().replace(".json", "_" + timestamp + ".json");
-        return new File(backupDir, backupName);
+    private static void backupBeforeSave(File file) throws IOException {
+        if (backupsEnabled && file.exists()) {
+            getBackupStore(file).backup(file);
+        }
     }
 
     /**
-     * Gets the latest backup file for restoration
+     * Reemplaza un archivo roto por su última copia válida
      */
-    private static File getLatestBackupFile(File originalFile) {
-        File backupDir = getBackupDir(originalFile);
-        String baseName = originalFile.getName().replace(".json", "");
+    private static boolean restoreLatestBackup(File file, Logger logger) {
+        long backupTime = getBackupStore(file).restoreLatest(file);
+        if (backupTime < 0) return false;
 
-        File[] backupFiles = backupDir.listFiles((dir, name) ->
-            name.startsWith(baseName + "_") && name.endsWith(".json"));
-
-        if (backupFiles == null || backupFiles.length == 0) {
-            return null;
+        if (logger != null) {
+            logger.info("Restored " + file.getName() + " from backup of " + BACKUP_DATE_FORMAT.format(new Date(backupTime)));
         }
+        return true;
+    }
 
-        // Find the most recent backup
-        File latestBackup = backupFiles[0];
-        for (File backup : backupFiles) {
-            if (backup.lastModified() > latestBackup.lastModified()) {
-                latestBackup = backup;
+    public static void configureBackups(boolean enabled, int keepHourly, int keepDaily, boolean compress, Logger logger) {
+        backupsEnabled = enabled;
+        backupKeepHourly = keepHourly;
+        backupKeepDaily = keepDaily;
+        backupCompress = compress;
+        backupLogger = logger;
+        synchronized (backupStores) {
+            for (BackupStore store : backupStores.values()) {
+                store.configure(keepHourly, keepDaily, compress);
             }
         }
-
-        return latestBackup;
     }
 
     public static <T> T loadData(File file, Type type, Logger logger) {
@@ -112,19 +133,8 @@ public class JsonUtils {
 
 
             // Try to restore from latest backup in data/backup folder
-            File latestBackup = getLatestBackupFile(file);
-            if (latestBackup != null && latestBackup.exists()) {
-                try {
-                    Files.copy(latestBackup.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                    if (logger != null) {
-                        logger.info("Restored " + file.getName() + " from backup: " + latestBackup.getName());
-                    }
-                    return loadData(file, type, null);
-                } catch (IOException backupError) {
-                    if (logger != null) {
-                        logger.log(Level.SEVERE, "Failed to restore from backup", backupError);
-                    }
-                }
+            if (restoreLatestBackup(file, logger)) {
+                return loadData(file, type, null);
             }
             return null;
         } finally {
@@ -132,6 +142,139 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * Carga un objeto JSON de registros sin construir el mapa: un hilo lee, {@code workers} hilos
+     * construyen y el que llama los recibe sin orden. Un archivo roto se restaura y relee, puede repetir registros
+     */
+    public static <T> boolean loadMapStreaming(File file, Class<T> valueType, int workers,
+                                               BiConsumer<String, T> consumer, Logger logger) {
+        return loadMapStreaming(file, GSON, valueType, workers, consumer, logger);
+    }
+
+    /**
+     * Como {@link #loadMapStreaming(File, Class, int, BiConsumer, Logger)}, con el Gson dado
+     */
+    public static <T> boolean loadMapStreaming(File file, Gson gson, Class<T> valueType, int workers,
+                                               BiConsumer<String, T> consumer, Logger logger) {
+        if (!file.exists()) {
+            if (logger != null) {
+                logger.info("File " + file.getName() + " does not exist. Creating new file.");
+            }
+            return false;
+        }
+
+        Exception failure;
+        ReadWriteLock lock = getLock(file);
+        lock.readLock().lock();
+        try {
+            failure = streamRecords(file, gson, valueType, Math.max(1, workers), consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (failure == null) return true;
+
+        if (logger != null) {
+            logger.log(Level.SEVERE, "Error loading data from " + file.getName(), failure);
+        }
+
+        if (restoreLatestBackup(file, logger)) {
+            return loadMapStreaming(file, gson, valueType, workers, consumer, null);
+        }
+        return false;
+    }
+
+    private static <T> Exception streamRecords(File file, Gson gson, Class<T> valueType, int workers,
+                                               BiConsumer<String, T> consumer) {
+        BlockingQueue<Object[]> trees = new ArrayBlockingQueue<>(STREAM_QUEUE_SIZE);
+        BlockingQueue<Object[]> records = new ArrayBlockingQueue<>(STREAM_QUEUE_SIZE);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                JsonReader jsonReader = new JsonReader(in);
+                jsonReader.setLenient(true);
+                jsonReader.beginObject();
+                while (jsonReader.hasNext() && failure.get() == null) {
+                    String name = jsonReader.nextName();
+                    trees.put(new Object[]{name, JsonParser.parseReader(jsonReader)});
+                }
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    putUninterruptibly(trees, END_OF_STREAM);
+                }
+            }
+        }, "IPDynamic-JsonReader");
+        reader.setDaemon(true);
+        reader.start();
+
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    Object[] tree;
+                    while ((tree = trees.take()) != END_OF_STREAM) {
+                        // Se sigue vaciando tras un fallo para que el lector nunca se quede bloqueado
+                        if (failure.get() != null) continue;
+                        try {
+                            records.put(new Object[]{tree[0], gson.fromJson((JsonElement) tree[1], valueType)});
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    putUninterruptibly(records, END_OF_STREAM);
+                }
+            }, "IPDynamic-JsonParser-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        int finished = 0;
+        boolean interrupted = false;
+        while (finished < workers) {
+            Object[] record;
+            try {
+                record = records.take();
+            } catch (InterruptedException e) {
+                // Siempre se vacía hasta el final, la interrupción se restaura después
+                failure.compareAndSet(null, e);
+                interrupted = true;
+                continue;
+            }
+            if (record == END_OF_STREAM) {
+                finished++;
+            } else if (failure.get() == null && record[1] != null) {
+                try {
+                    consumer.accept((String) record[0], valueType.cast(record[1]));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return failure.get();
+    }
+
+    private static void putUninterruptibly(BlockingQueue<Object[]> queue, Object[] item) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(item);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public static <T> boolean saveData(File file, T data, Logger logger) {
         if (data == null) {
             if (logger != null) {
@@ -140,6 +283,13 @@ public class JsonUtils {
             return false;
         }
 
+        return saveStreaming(file, jsonWriter -> GSON.toJson(data, data.getClass(), jsonWriter), logger);
+    }
+
+    /**
+     * Guarda un archivo elemento a elemento, con la misma copia, temporal y movimiento que {@link #saveData}
+     */
+    public static boolean saveStreaming(File file, StreamWriter content, Logger logger) {
         ReadWriteLock lock = getLock(file);
         lock.writeLock().lock();
         try {
@@ -150,17 +300,14 @@ public class JsonUtils {
 
 
             // Create backup before saving to data/backup folder
-            if (file.exists()) {
-                File backupFile = getBackupFile(file);
-                Files.copy(file.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            }
+            backupBeforeSave(file);
 
 
             File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
             try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
                 JsonWriter jsonWriter = new JsonWriter(writer);
-                jsonWriter.setIndent("  ");
-                GSON.toJson(data, data.getClass(), jsonWriter);
+                jsonWriter.setIndent(compactOutput ? "" : "  ");
+                content.write(jsonWriter);
                 jsonWriter.flush();
             }
 
@@ -180,6 +327,122 @@ public class JsonUtils {
         }
     }
 
+    public interface StreamWriter {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * Lee un archivo token a token, restaurando la última copia y releyendo si está roto.
+     * El lector puede llamarse dos veces y debe empezar de cero cada vez
+     */
+    public static boolean loadStreaming(File file, StreamReader content, Logger logger) {
+        if (!file.exists()) {
+            if (logger != null) {
+                logger.info("File " + file.getName() + " does not exist. Creating new file.");
+            }
+            return false;
+        }
+
+        ReadWriteLock lock = getLock(file);
+        lock.readLock().lock();
+        try {
+            try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                JsonReader jsonReader = new JsonReader(reader);
+                jsonReader.setLenient(true);
+                content.read(jsonReader);
+                return true;
+            }
+        } catch (Exception e) {
+            if (logger != null) {
+                logger.log(Level.SEVERE, "Error loading data from " + file.getName(), e);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (restoreLatestBackup(file, logger)) {
+            return loadStreaming(file, content, null);
+        }
+        return false;
+    }
+
+    public interface StreamReader {
+        void read(JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Escribe un archivo binario por un canal, con la misma copia, bloqueo y reemplazo que los JSON
+     */
+    public static boolean saveBinary(File file, ChannelWriter content, Logger logger) {
+        ReadWriteLock lock = getLock(file);
+        lock.writeLock().lock();
+        try {
+            if (!file.getParentFile().exists()) {
+                file.getParentFile().mkdirs();
+            }
+
+            backupBeforeSave(file);
+
+            File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                content.write(channel);
+                channel.force(false);
+            }
+
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+
+        } catch (Exception e) {
+            if (logger != null) {
+                logger.log(Level.SEVERE, "Error saving data to " + file.getName(), e);
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public interface ChannelWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Lee un archivo binario por un canal, restaurando la última copia y releyendo si está roto.
+     * El lector puede llamarse dos veces y debe empezar de cero cada vez
+     */
+    public static boolean loadBinary(File file, ChannelReader content, Logger logger) {
+        if (!file.exists()) {
+            return false;
+        }
+
+        ReadWriteLock lock = getLock(file);
+        lock.readLock().lock();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            content.read(channel);
+            return true;
+        } catch (Exception e) {
+            if (logger != null) {
+                logger.log(Level.SEVERE, "Error loading data from " + file.getName(), e);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (restoreLatestBackup(file, logger)) {
+            return loadBinary(file, content, null);
+        }
+        return false;
+    }
+
+    public interface ChannelReader {
+        void read(FileChannel channel) throws IOException;
+    }
+
+    public static void setCompactOutput(boolean compact) {
+        compactOutput = compact;
+    }
+
     public static Type getTypeTokenMap(Class<?> keyClass, Class<?> valueClass) {
         return TypeToken.getParameterized(Map.class, keyClass, valueClass).getType();
     }
@@ -201,10 +464,25 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * Tamaño y fecha de un archivo, cambian al reescribirlo. Se comparan con los de la última
+     * carga o guardado para saber si otro lo cambió
+     */
+    public static String fileStamp(File file) {
+        return file.exists() ? file.length() + "@" + file.lastModified() : "-";
+    }
+
     public static Gson getGson() {
         return GSON;
     }
 
+    /**
+     * Gson como {@link #getGson()} que también lee jugadores, en la tabla dada
+     */
+    public static Gson getPlayerGson(IpMetadataTable ips) {
+        return ModelTypeAdapters.register(GSON.newBuilder(), ips).create();
+    }
+
     public static boolean validateJsonFile(File file) {
         if (!file.exists() || !file.canRead()) {
             return false;
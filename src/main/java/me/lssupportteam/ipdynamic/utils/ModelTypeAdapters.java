@@ -0,0 +1,450 @@
+package me.lssupportteam.ipdynamic.utils;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import me.lssupportteam.ipdynamic.models.BanEntry;
+import me.lssupportteam.ipdynamic.models.GeoLocation;
+import me.lssupportteam.ipdynamic.models.GeoLocationPool;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
+import me.lssupportteam.ipdynamic.models.IpStats;
+import me.lssupportteam.ipdynamic.models.PlayerData;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Adaptadores en flujo para los modelos guardados, sin reflexión ni árboles intermedios.
+ * Mismos nombres y orden que los reflexivos, así los archivos existentes cargan igual
+ */
+public final class ModelTypeAdapters {
+
+    private static final IpStatsAdapter IP_STATS = new IpStatsAdapter();
+
+    private ModelTypeAdapters() {
+    }
+
+    /**
+     * Registra los adaptadores. Los jugadores se escriben pero no se leen, leerlos necesita
+     * su tabla de IPs, ver {@link #register(GsonBuilder, IpMetadataTable)}
+     */
+    public static GsonBuilder register(GsonBuilder builder) {
+        return builder
+            .registerTypeAdapter(PlayerData.class, new PlayerDataAdapter(null).nullSafe())
+            .registerTypeAdapter(GeoLocation.class, new GeoLocationAdapter(null).nullSafe())
+            .registerTypeAdapter(IpStats.class, IP_STATS.nullSafe())
+            .registerTypeAdapter(BanEntry.class, new BanEntryAdapter().nullSafe());
+    }
+
+    /**
+     * Registra sobre los de {@link #register(GsonBuilder)} los que leen jugadores en la tabla dada
+     */
+    public static GsonBuilder register(GsonBuilder builder, IpMetadataTable ips) {
+        return builder
+            .registerTypeAdapter(PlayerData.class, new PlayerDataAdapter(ips).nullSafe())
+            .registerTypeAdapter(GeoLocation.class, new GeoLocationAdapter(ips.getLocations()).nullSafe());
+    }
+
+
+    private static class PlayerDataAdapter extends TypeAdapter<PlayerData> {
+
+        private final IpMetadataTable ips;
+        private final GeoLocationAdapter locations;
+
+        PlayerDataAdapter(IpMetadataTable ips) {
+            this.ips = ips;
+            this.locations = new GeoLocationAdapter(ips != null ? ips.getLocations() : null);
+        }
+
+        @Override
+        public void write(JsonWriter out, PlayerData player) throws IOException {
+            // Todos los campos de la misma versión del registro
+            PlayerData.Snapshot data = player.snapshot();
+            out.beginObject();
+            if (data.getUuid() != null) out.name("uuid").value(data.getUuid().toString());
+            if (data.getUsername() != null) out.name("username").value(data.getUsername());
+            if (data.getLastIp() != null) out.name("lastIp").value(data.getLastIp());
+            out.name("firstLogin").value(data.getFirstLogin());
+            out.name("lastLogin").value(data.getLastLogin());
+
+            if (data.getIpHistory() != null) {
+                out.name("ipHistory");
+                writeStrings(out, data.getIpHistory());
+            }
+
+            if (data.getIpTimestamps() != null) {
+                out.name("ipTimestamps").beginObject();
+                for (Map.Entry<String, Long> entry : data.getIpTimestamps().entrySet()) {
+                    if (entry.getValue() != null) {
+                        out.name(entry.getKey()).value(entry.getValue().longValue());
+                    }
+                }
+                out.endObject();
+            }
+
+            if (data.getIpStats() != null) {
+                out.name("ipStats").beginObject();
+                for (Map.Entry<String, IpStats> entry : data.getIpStats().entrySet()) {
+                    if (entry.getValue() != null) {
+                        out.name(entry.getKey());
+                        IP_STATS.write(out, entry.getValue());
+                    }
+                }
+                out.endObject();
+            }
+
+            if (data.getGeoLocation() != null) {
+                out.name("geoLocation");
+                locations.write(out, data.getGeoLocation());
+            }
+
+            out.name("totalConnections").value(data.getTotalConnections());
+            out.name("isAdmin").value(data.isAdmin());
+
+            if (data.getLinkedAccounts() != null) {
+                out.name("linkedAccounts");
+                writeStrings(out, data.getLinkedAccounts());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public PlayerData read(JsonReader in) throws IOException {
+            if (ips == null) {
+                throw new IllegalStateException("Los jugadores se leen con un Gson ligado a una tabla de IPs");
+            }
+
+            PlayerData.Builder data = PlayerData.builder(ips);
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "uuid":
+                        data.uuid(UUID.fromString(in.nextString()));
+                        break;
+                    case "username":
+                        data.username(in.nextString());
+                        break;
+                    case "lastIp":
+                        data.lastIp(in.nextString());
+                        break;
+                    case "firstLogin":
+                        data.firstLogin(in.nextLong());
+                        break;
+                    case "lastLogin":
+                        data.lastLogin(in.nextLong());
+                        break;
+                    case "ipHistory":
+                        data.ipHistory(readStrings(in));
+                        break;
+                    case "ipTimestamps":
+                        Map<String, Long> timestamps = new HashMap<>();
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String ip = in.nextName();
+                            if (in.peek() == JsonToken.NULL) {
+                                in.nextNull();
+                            } else {
+                                timestamps.put(ip, in.nextLong());
+                            }
+                        }
+                        in.endObject();
+                        data.ipTimestamps(timestamps);
+                        break;
+                    case "ipStats":
+                        Map<String, IpStats> stats = new HashMap<>();
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String ip = in.nextName();
+                            if (in.peek() == JsonToken.NULL) {
+                                in.nextNull();
+                            } else {
+                                stats.put(ip, IP_STATS.read(in));
+                            }
+                        }
+                        in.endObject();
+                        data.ipStats(stats);
+                        break;
+                    case "geoLocation":
+                        data.geoLocation(locations.read(in));
+                        break;
+                    case "totalConnections":
+                        data.totalConnections(in.nextInt());
+                        break;
+                    case "isAdmin":
+                        data.admin(in.nextBoolean());
+                        break;
+                    case "linkedAccounts":
+                        data.linkedAccounts(readStrings(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return data.build();
+        }
+    }
+
+
+    private static class IpStatsAdapter extends TypeAdapter<IpStats> {
+
+        @Override
+        public void write(JsonWriter out, IpStats stats) throws IOException {
+            out.beginObject();
+            out.name("connections").value(stats.getConnections());
+            out.name("firstSeen").value(stats.getFirstSeen());
+            out.name("lastSeen").value(stats.getLastSeen());
+            out.endObject();
+        }
+
+        @Override
+        public IpStats read(JsonReader in) throws IOException {
+            IpStats stats = new IpStats();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "connections":
+                        stats.setConnections(in.nextInt());
+                        break;
+                    case "firstSeen":
+                        stats.setFirstSeen(in.nextLong());
+                        break;
+                    case "lastSeen":
+                        stats.setLastSeen(in.nextLong());
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return stats;
+        }
+    }
+
+
+    private static class GeoLocationAdapter extends TypeAdapter<GeoLocation> {
+
+        private final GeoLocationPool strings; // Null para dejar los textos como se leen
+
+        GeoLocationAdapter(GeoLocationPool strings) {
+            this.strings = strings;
+        }
+
+        private String intern(String value) {
+            return strings != null ? strings.internString(value) : value;
+        }
+
+        @Override
+        public void write(JsonWriter out, GeoLocation location) throws IOException {
+            out.beginObject();
+            writeString(out, "country", location.getCountry());
+            writeString(out, "countryCode", location.getCountryCode());
+            writeString(out, "region", location.getRegion());
+            writeString(out, "regionName", location.getRegionName());
+            writeString(out, "city", location.getCity());
+            writeString(out, "zip", location.getZip());
+            out.name("latitude").value(location.getLatitude());
+            out.name("longitude").value(location.getLongitude());
+            writeString(out, "timezone", location.getTimezone());
+            writeString(out, "isp", location.getIsp());
+            writeString(out, "org", location.getOrg());
+            writeString(out, "as", location.getAs());
+            writeString(out, "query", location.getQuery());
+            out.name("proxy").value(location.isProxy());
+            out.name("hosting").value(location.isHosting());
+            out.name("mobile").value(location.isMobile());
+            out.endObject();
+        }
+
+        @Override
+        public GeoLocation read(JsonReader in) throws IOException {
+            GeoLocation location = new GeoLocation();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "country":
+                        location.setCountry(intern(in.nextString()));
+                        break;
+                    case "countryCode":
+                        location.setCountryCode(intern(in.nextString()));
+                        break;
+                    case "region":
+                        location.setRegion(intern(in.nextString()));
+                        break;
+                    case "regionName":
+                        location.setRegionName(intern(in.nextString()));
+                        break;
+                    case "city":
+                        location.setCity(intern(in.nextString()));
+                        break;
+                    case "zip":
+                        location.setZip(intern(in.nextString()));
+                        break;
+                    case "latitude":
+                        location.setLatitude(in.nextDouble());
+                        break;
+                    case "longitude":
+                        location.setLongitude(in.nextDouble());
+                        break;
+                    case "timezone":
+                        location.setTimezone(intern(in.nextString()));
+                        break;
+                    case "isp":
+                        location.setIsp(intern(in.nextString()));
+                        break;
+                    case "org":
+                        location.setOrg(intern(in.nextString()));
+                        break;
+                    case "as":
+                        location.setAs(intern(in.nextString()));
+                        break;
+                    case "query":
+                        location.setQuery(in.nextString());
+                        break;
+                    case "proxy":
+                        location.setProxy(in.nextBoolean());
+                        break;
+                    case "hosting":
+                        location.setHosting(in.nextBoolean());
+                        break;
+                    case "mobile":
+                        location.setMobile(in.nextBoolean());
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return location;
+        }
+    }
+
+
+    private static class BanEntryAdapter extends TypeAdapter<BanEntry> {
+
+        @Override
+        public void write(JsonWriter out, BanEntry entry) throws IOException {
+            out.beginObject();
+            writeString(out, "pattern", entry.getPattern());
+            writeString(out, "reason", entry.getReason());
+            writeString(out, "bannedBy", entry.getBannedBy());
+            out.name("bannedAt").value(entry.getBannedAt());
+            if (entry.getBanType() != null) out.name("banType").value(entry.getBanType().name());
+            out.name("isActive").value(entry.isActive());
+            out.name("expiresAt").value(entry.getExpiresAt());
+            out.name("affectedCount").value(entry.getAffectedCount());
+            out.endObject();
+        }
+
+        @Override
+        public BanEntry read(JsonReader in) throws IOException {
+            BanEntry entry = new BanEntry();
+            String pattern = null;
+            BanEntry.BanType banType = null;
+            int affectedCount = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "pattern":
+                        pattern = in.nextString();
+                        break;
+                    case "reason":
+                        entry.setReason(in.nextString());
+                        break;
+                    case "bannedBy":
+                        entry.setBannedBy(in.nextString());
+                        break;
+                    case "bannedAt":
+                        entry.setBannedAt(in.nextLong());
+                        break;
+                    case "banType":
+                        String type = in.nextString();
+                        try {
+                            banType = BanEntry.BanType.valueOf(type);
+                        } catch (IllegalArgumentException e) {
+                            // Los tipos desconocidos salen del patrón más abajo
+                        }
+                        break;
+                    case "isActive":
+                        entry.setActive(in.nextBoolean());
+                        break;
+                    case "expiresAt":
+                        entry.setExpiresAt(in.nextLong());
+                        break;
+                    case "affectedCount":
+                        affectedCount = in.nextInt();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            // setPattern saca el tipo y la cuenta, los valores guardados ganan si están
+            if (pattern != null) entry.setPattern(pattern);
+            if (banType != null) entry.setBanType(banType);
+            if (affectedCount != 0) entry.setAffectedCount(affectedCount);
+            return entry;
+        }
+    }
+
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeStrings(JsonWriter out, List<String> values) throws IOException {
+        out.beginArray();
+        for (String value : values) {
+            if (value != null) {
+                out.value(value);
+            } else {
+                out.nullValue();
+            }
+        }
+        out.endArray();
+    }
+
+    private static List<String> readStrings(JsonReader in) throws IOException {
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else {
+                values.add(in.nextString());
+            }
+        }
+        in.endArray();
+        return values;
+    }
+}
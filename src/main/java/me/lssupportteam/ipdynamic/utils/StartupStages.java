@@ -0,0 +1,135 @@
+package me.lssupportteam.ipdynamic.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Arranque del plugin en etapas con nombre, cada una empieza al acabar de las que depende.
+ * Se declaran solo desde el hilo del servidor
+ */
+public class StartupStages {
+
+    private final ExecutorService threads;
+    private final Logger logger;
+    private final long startedAt;
+    private final Map<String, CompletableFuture<Void>> stages;
+    private final Map<String, Long> durations;
+    private final Map<String, Boolean> background;
+
+    public StartupStages(int threadCount, Logger logger) {
+        AtomicInteger index = new AtomicInteger();
+        this.threads = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "IPDynamic-Startup-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.logger = logger;
+        this.startedAt = System.nanoTime();
+        this.stages = new LinkedHashMap<>();
+        this.durations = new ConcurrentHashMap<>();
+        this.background = new LinkedHashMap<>();
+    }
+
+    /**
+     * Ejecuta una etapa en el hilo que llama, para pasos del hilo del servidor
+     */
+    public void run(String name, Runnable body) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        stages.put(name, future);
+        try {
+            time(name, body);
+            future.complete(null);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Empieza una etapa al acabar las dadas, si una falló no se ejecuta y falla con el mismo error
+     */
+    public CompletableFuture<Void> start(String name, Runnable body, String... dependsOn) {
+        CompletableFuture<Void> future = CompletableFuture.allOf(futuresOf(dependsOn))
+            .thenRunAsync(() -> time(name, body), threads);
+        stages.put(name, future);
+        return future;
+    }
+
+    /**
+     * Como {@link #start}, para etapas que el servidor no espera, aparte en el desglose
+     */
+    public CompletableFuture<Void> startInBackground(String name, Runnable body, String... dependsOn) {
+        background.put(name, Boolean.TRUE);
+        return start(name, body, dependsOn);
+    }
+
+    /**
+     * Espera a que acaben las etapas dadas, relanzando el primer fallo
+     */
+    public void await(String... names) {
+        try {
+            CompletableFuture.allOf(futuresOf(names)).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException("Falló una etapa de arranque", cause);
+        }
+    }
+
+    /**
+     * Registra el desglose de tiempos al acabar las etapas declaradas y para los hilos de arranque
+     */
+    public CompletableFuture<Void> finish() {
+        List<String> names = new ArrayList<>(stages.keySet());
+        return CompletableFuture.allOf(futuresOf(names.toArray(new String[0])))
+            .handle((ignored, error) -> {
+                threads.shutdown();
+                logBreakdown(names);
+                return null;
+            });
+    }
+
+    private void time(String name, Runnable body) {
+        long start = System.nanoTime();
+        try {
+            body.run();
+        } finally {
+            durations.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private void logBreakdown(List<String> names) {
+        StringBuilder foreground = new StringBuilder();
+        StringBuilder deferred = new StringBuilder();
+        for (String name : names) {
+            StringBuilder target = background.containsKey(name) ? deferred : foreground;
+            Long duration = durations.get(name);
+            if (target.length() > 0) target.append(", ");
+            target.append(name).append(' ').append(duration != null ? duration + " ms" : "no ejecutada");
+        }
+
+        long total = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        logger.info("Arranque completado en " + total + " ms. Etapas: " + foreground
+            + (deferred.length() > 0 ? ". En segundo plano: " + deferred : ""));
+    }
+
+    private CompletableFuture<?>[] futuresOf(String... names) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[names.length];
+        for (int i = 0; i < names.length; i++) {
+            CompletableFuture<Void> future = stages.get(names[i]);
+            if (future == null) throw new IllegalArgumentException("Etapa de arranque desconocida: " + names[i]);
+            futures[i] = future;
+        }
+        return futures;
+    }
+}
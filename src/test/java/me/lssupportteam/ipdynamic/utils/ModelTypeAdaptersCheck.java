@@ -0,0 +1,131 @@
+package me.lssupportteam.ipdynamic.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import me.lssupportteam.ipdynamic.models.BanEntry;
+import me.lssupportteam.ipdynamic.models.GeoLocation;
+import me.lssupportteam.ipdynamic.models.GeoLocationPool;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
+import me.lssupportteam.ipdynamic.models.IpStats;
+import me.lssupportteam.ipdynamic.models.PlayerData;
+
+import java.util.*;
+
+/**
+ * Comprueba que los adaptadores escriben lo mismo que la reflexión y leen lo que escriben.
+ * Se ejecuta como main: java -cp target/classes:target/test-classes:gson.jar ...ModelTypeAdaptersCheck
+ */
+public final class ModelTypeAdaptersCheck {
+
+    private static final Gson REFLECTIVE = new GsonBuilder().create();
+
+    private static int checks;
+
+    public static void main(String[] args) {
+        IpMetadataTable table = new IpMetadataTable(new GeoLocationPool(1024, 1024));
+        Gson adapters = JsonUtils.getPlayerGson(table);
+
+        checkPlayer(adapters, table);
+        checkGeoLocation(adapters);
+        checkIpStats(adapters);
+        checkBanEntry(adapters);
+        checkLegacyInput(adapters);
+
+        System.out.println("ModelTypeAdaptersCheck: " + checks + " comprobaciones correctas");
+    }
+
+    private static void checkPlayer(Gson adapters, IpMetadataTable table) {
+        PlayerData player = PlayerBenchmarkData.player(table, 42);
+
+        String json = adapters.toJson(player, PlayerData.class);
+        // Mismos campos y valores que el formato reflexivo de siempre
+        String legacy = REFLECTIVE.toJson(PlayerBenchmarkData.legacy(42));
+        check(JsonParser.parseString(json).equals(JsonParser.parseString(legacy)), "PlayerData no coincide con la reflexión:\n" + json + "\n" + legacy);
+
+        PlayerData read = adapters.fromJson(json, PlayerData.class);
+        check(read.getUuid().equals(player.getUuid()), "uuid");
+        check(read.getUsername().equals(player.getUsername()), "username");
+        check(read.getLastIp().equals(player.getLastIp()), "lastIp");
+        check(read.getFirstLogin() == player.getFirstLogin(), "firstLogin");
+        check(read.getLastLogin() == player.getLastLogin(), "lastLogin");
+        check(read.getIpHistory().equals(player.getIpHistory()), "ipHistory");
+        check(read.getIpTimestamps().equals(player.getIpTimestamps()), "ipTimestamps");
+        check(sameStats(read.getIpStats(), player.getIpStats()), "ipStats");
+        check(Objects.equals(read.getGeoLocation(), player.getGeoLocation()), "geoLocation");
+        check(read.getTotalConnections() == player.getTotalConnections(), "totalConnections");
+        check(read.isAdmin() == player.isAdmin(), "isAdmin");
+        check(read.getLinkedAccounts().equals(player.getLinkedAccounts()), "linkedAccounts");
+        check(adapters.toJson(read, PlayerData.class).equals(json), "PlayerData no se reescribe igual");
+
+        // Sin tabla de IPs no se pueden leer jugadores
+        try {
+            JsonUtils.getGson().fromJson(json, PlayerData.class);
+            check(false, "getGson() leyó un PlayerData");
+        } catch (RuntimeException expected) {
+            check(true, "");
+        }
+    }
+
+    private static void checkGeoLocation(Gson adapters) {
+        GeoLocation location = PlayerBenchmarkData.location(7);
+        String json = adapters.toJson(location);
+        check(JsonParser.parseString(json).equals(REFLECTIVE.toJsonTree(location)), "GeoLocation no coincide con la reflexión");
+        check(adapters.fromJson(json, GeoLocation.class).equals(location), "GeoLocation no se lee igual");
+    }
+
+    private static void checkIpStats(Gson adapters) {
+        IpStats stats = new IpStats(12, 1_600_000_000_000L, 1_700_000_000_000L);
+        String json = adapters.toJson(stats);
+        check(JsonParser.parseString(json).equals(REFLECTIVE.toJsonTree(stats)), "IpStats no coincide con la reflexión");
+        IpStats read = adapters.fromJson(json, IpStats.class);
+        check(read.getConnections() == 12 && read.getFirstSeen() == stats.getFirstSeen()
+            && read.getLastSeen() == stats.getLastSeen(), "IpStats no se lee igual");
+    }
+
+    private static void checkBanEntry(Gson adapters) {
+        BanEntry entry = new BanEntry("10.0.*.*", "alts", "admin");
+        entry.setExpiresAt(1_800_000_000_000L);
+        String json = adapters.toJson(entry);
+        check(JsonParser.parseString(json).equals(REFLECTIVE.toJsonTree(entry)), "BanEntry no coincide con la reflexión");
+
+        BanEntry read = adapters.fromJson(json, BanEntry.class);
+        check(read.getPattern().equals(entry.getPattern()), "pattern");
+        check(read.getReason().equals(entry.getReason()), "reason");
+        check(read.getBannedBy().equals(entry.getBannedBy()), "bannedBy");
+        check(read.getBannedAt() == entry.getBannedAt(), "bannedAt");
+        check(read.getBanType() == entry.getBanType(), "banType");
+        check(read.isActive() == entry.isActive(), "isActive");
+        check(read.getExpiresAt() == entry.getExpiresAt(), "expiresAt");
+        check(read.getAffectedCount() == entry.getAffectedCount(), "affectedCount");
+    }
+
+    private static void checkLegacyInput(Gson adapters) {
+        // Campos nulos y desconocidos de archivos antiguos
+        JsonElement legacy = REFLECTIVE.toJsonTree(PlayerBenchmarkData.legacy(3));
+        legacy.getAsJsonObject().addProperty("oldField", "x");
+        legacy.getAsJsonObject().add("geoLocation", null);
+        String json = new GsonBuilder().serializeNulls().create().toJson(legacy);
+
+        PlayerData read = adapters.fromJson(json, PlayerData.class);
+        check(read.getUsername().equals("player3"), "archivo antiguo mal leído");
+        check(!adapters.toJson(read, PlayerData.class).contains("oldField"), "se reescribió un campo desconocido");
+    }
+
+    private static boolean sameStats(Map<String, IpStats> a, Map<String, IpStats> b) {
+        if (!a.keySet().equals(b.keySet())) return false;
+        for (Map.Entry<String, IpStats> entry : a.entrySet()) {
+            IpStats other = b.get(entry.getKey());
+            IpStats stats = entry.getValue();
+            if (stats.getConnections() != other.getConnections() || stats.getFirstSeen() != other.getFirstSeen()
+                || stats.getLastSeen() != other.getLastSeen()) return false;
+        }
+        return true;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+        checks++;
+    }
+}
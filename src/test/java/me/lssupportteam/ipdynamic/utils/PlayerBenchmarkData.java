@@ -0,0 +1,105 @@
+package me.lssupportteam.ipdynamic.utils;
+
+import me.lssupportteam.ipdynamic.models.GeoLocation;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
+import me.lssupportteam.ipdynamic.models.IpStats;
+import me.lssupportteam.ipdynamic.models.PlayerData;
+
+import java.util.*;
+
+/**
+ * Jugadores de prueba deterministas, el mismo índice da siempre el mismo jugador
+ */
+final class PlayerBenchmarkData {
+
+    private static final long BASE_TIME = 1_700_000_000_000L;
+    private static final int IPS_PER_PLAYER = 3;
+
+    private PlayerBenchmarkData() {
+    }
+
+    static PlayerData player(IpMetadataTable table, int index) {
+        LegacyPlayerRecord legacy = legacy(index);
+        return PlayerData.builder(table)
+            .uuid(legacy.uuid)
+            .username(legacy.username)
+            .lastIp(legacy.lastIp)
+            .firstLogin(legacy.firstLogin)
+            .lastLogin(legacy.lastLogin)
+            .ipHistory(legacy.ipHistory)
+            .ipTimestamps(legacy.ipTimestamps)
+            .ipStats(legacy.ipStats)
+            .geoLocation(legacy.geoLocation)
+            .totalConnections(legacy.totalConnections)
+            .admin(legacy.isAdmin)
+            .linkedAccounts(legacy.linkedAccounts)
+            .build();
+    }
+
+    static LegacyPlayerRecord legacy(int index) {
+        LegacyPlayerRecord record = new LegacyPlayerRecord();
+        record.uuid = new UUID(0x1F0L ^ index, index);
+        record.username = "player" + index;
+        record.firstLogin = BASE_TIME + index * 1000L;
+        record.lastLogin = record.firstLogin + 86_400_000L;
+        record.ipHistory = new ArrayList<>();
+        record.ipTimestamps = new LinkedHashMap<>();
+        record.ipStats = new LinkedHashMap<>();
+        for (int i = 0; i < IPS_PER_PLAYER; i++) {
+            String ip = ip(index * IPS_PER_PLAYER + i);
+            long seen = record.firstLogin + i * 3_600_000L;
+            record.ipHistory.add(ip);
+            record.ipTimestamps.put(ip, seen);
+            record.ipStats.put(ip, new IpStats(i + 1, seen, seen + 60_000L * i));
+        }
+        record.lastIp = record.ipHistory.get(IPS_PER_PLAYER - 1);
+        // Sin query, los jugadores guardan la ubicación de su última IP desde la tabla de IPs
+        record.geoLocation = location(index);
+        record.geoLocation.setQuery(null);
+        record.totalConnections = 6;
+        record.isAdmin = index % 100 == 0;
+        record.linkedAccounts = index % 10 == 0
+            ? Collections.singletonList(new UUID(0x1F0L ^ (index + 1), index + 1).toString())
+            : new ArrayList<>();
+        return record;
+    }
+
+    static GeoLocation location(int index) {
+        String[][] countries = {{"Spain", "ES", "Madrid"}, {"Mexico", "MX", "Monterrey"}, {"Argentina", "AR", "Córdoba"}};
+        String[] country = countries[index % countries.length];
+        GeoLocation location = new GeoLocation(country[0], country[1], country[2], country[2]);
+        location.setRegionName(country[2]);
+        location.setZip(String.valueOf(10_000 + index % 90_000));
+        location.setLatitude(40.4 + (index % 100) / 100.0);
+        location.setLongitude(-3.7 - (index % 100) / 100.0);
+        location.setTimezone("Europe/Madrid");
+        location.setIsp("ISP " + index % 50);
+        location.setOrg("Org " + index % 50);
+        location.setAs("AS" + (1000 + index % 50));
+        location.setQuery(ip(index));
+        return location;
+    }
+
+    private static String ip(int n) {
+        return "10." + ((n >>> 16) & 0xFF) + "." + ((n >>> 8) & 0xFF) + "." + (n & 0xFF);
+    }
+
+    /**
+     * Los campos que guardaba PlayerData antes de los adaptadores, en el mismo orden, para
+     * comparar con Gson por reflexión
+     */
+    static final class LegacyPlayerRecord {
+        UUID uuid;
+        String username;
+        String lastIp;
+        long firstLogin;
+        long lastLogin;
+        List<String> ipHistory;
+        Map<String, Long> ipTimestamps;
+        Map<String, IpStats> ipStats;
+        GeoLocation geoLocation;
+        int totalConnections;
+        boolean isAdmin;
+        List<String> linkedAccounts;
+    }
+}
@@ -0,0 +1,127 @@
+package me.lssupportteam.ipdynamic.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import me.lssupportteam.ipdynamic.models.GeoLocationPool;
+import me.lssupportteam.ipdynamic.models.IpMetadataTable;
+import me.lssupportteam.ipdynamic.models.PlayerData;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara escribir y leer un archivo de jugadores con los adaptadores y con Gson por reflexión.
+ * Se ejecuta como main, por defecto con 1M de jugadores y 3 rondas:
+ * java -Xmx4g -cp target/classes:target/test-classes:gson.jar ...PlayerJsonBenchmark [jugadores] [rondas]
+ */
+public final class PlayerJsonBenchmark {
+
+    // Jugadores generados de una vez, fuera del tiempo medido
+    private static final int BATCH = 10_000;
+
+    private final int players;
+    private final File directory;
+
+    private PlayerJsonBenchmark(int players, File directory) {
+        this.players = players;
+        this.directory = directory;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        File directory = Files.createTempDirectory("ipdynamic-bench").toFile();
+        PlayerJsonBenchmark benchmark = new PlayerJsonBenchmark(players, directory);
+        try {
+            for (int round = 1; round <= rounds; round++) {
+                System.out.println("Ronda " + round + " de " + rounds + ", " + players + " jugadores");
+                benchmark.run("reflexión", false, false);
+                benchmark.run("adaptadores", true, false);
+                benchmark.run("adaptadores compacto", true, true);
+            }
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private void run(String name, boolean adapters, boolean compact) throws IOException {
+        IpMetadataTable table = new IpMetadataTable(new GeoLocationPool(65_536, 65_536));
+        Gson gson = adapters ? JsonUtils.getPlayerGson(table) : new GsonBuilder().create();
+        Type type = adapters ? PlayerData.class : PlayerBenchmarkData.LegacyPlayerRecord.class;
+        File file = new File(directory, "players.json");
+
+        System.gc();
+        long writeNanos = write(file, gson, type, table, adapters, compact);
+        System.gc();
+        long readNanos = read(file, gson, type, table);
+
+        double megabytes = file.length() / (1024.0 * 1024.0);
+        System.out.printf("  %-22s escritura %6d ms (%6.1f MB/s)  lectura %6d ms (%6.1f MB/s)  %7.1f MB%n",
+            name, TimeUnit.NANOSECONDS.toMillis(writeNanos), megabytes / (writeNanos / 1e9),
+            TimeUnit.NANOSECONDS.toMillis(readNanos), megabytes / (readNanos / 1e9), megabytes);
+    }
+
+    private long write(File file, Gson gson, Type type, IpMetadataTable table, boolean adapters, boolean compact)
+            throws IOException {
+        long nanos = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 65_536)) {
+            JsonWriter writer = new JsonWriter(out);
+            writer.setIndent(compact ? "" : "  ");
+            writer.beginObject();
+
+            Object[] batch = new Object[BATCH];
+            String[] keys = new String[BATCH];
+            for (int start = 0; start < players; start += BATCH) {
+                int size = Math.min(BATCH, players - start);
+                // La tabla se vacía por lote para que 1M de jugadores quepa en memoria
+                table.clear();
+                for (int i = 0; i < size; i++) {
+                    PlayerBenchmarkData.LegacyPlayerRecord legacy = PlayerBenchmarkData.legacy(start + i);
+                    keys[i] = legacy.uuid.toString();
+                    batch[i] = adapters ? PlayerBenchmarkData.player(table, start + i) : legacy;
+                }
+
+                long begin = System.nanoTime();
+                for (int i = 0; i < size; i++) {
+                    writer.name(keys[i]);
+                    gson.toJson(batch[i], type, writer);
+                }
+                nanos += System.nanoTime() - begin;
+            }
+
+            long begin = System.nanoTime();
+            writer.endObject();
+            writer.flush();
+            nanos += System.nanoTime() - begin;
+        }
+        return nanos;
+    }
+
+    private long read(File file, Gson gson, Type type, IpMetadataTable table) throws IOException {
+        long begin = System.nanoTime();
+        int count = 0;
+        try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 65_536)) {
+            JsonReader reader = new JsonReader(in);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.nextName();
+                Object record = gson.fromJson(reader, type);
+                if (record == null) throw new IllegalStateException("Registro nulo en " + count);
+                if (++count % BATCH == 0) table.clear();
+            }
+            reader.endObject();
+        }
+        if (count != players) throw new IllegalStateException("Leídos " + count + " de " + players);
+        return System.nanoTime() - begin;
+    }
+}